@@ -0,0 +1,88 @@
+package com.greatdroid.reactnative.media.drm;
+
+import android.test.InstrumentationTestCase;
+
+import com.google.android.exoplayer.drm.StreamingDrmSessionManager;
+import com.greatdroid.reactnative.media.harness.EmulatedOrigin;
+import com.greatdroid.reactnative.media.player.drm.DrmConfiguration;
+import com.greatdroid.reactnative.media.player.drm.LicenseServerDrmCallback;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Key requests against a local stand-in license server served by {@link EmulatedOrigin}.
+ */
+public class LicenseServerDrmCallbackTest extends InstrumentationTestCase {
+  private static final String LICENSE_PATH = "license";
+  private static final byte[] CHALLENGE = "challenge".getBytes();
+  private static final byte[] LICENSE = "license".getBytes();
+
+  private final AtomicInteger licenseRequests = new AtomicInteger();
+  private volatile String lastToken;
+  private volatile byte[] lastChallenge;
+
+  private EmulatedOrigin origin;
+  private LicenseServerDrmCallback callback;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    origin = new EmulatedOrigin(0);
+    origin.setHandler(LICENSE_PATH, new EmulatedOrigin.RequestHandler() {
+      @Override
+      public byte[] handle(String method, Map<String, String> headers, byte[] body) {
+        if (!"POST".equals(method)) {
+          return null;
+        }
+        licenseRequests.incrementAndGet();
+        lastToken = headers.get("x-token");
+        lastChallenge = body;
+        return LICENSE;
+      }
+    });
+    origin.start();
+
+    callback = new LicenseServerDrmCallback();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    origin.shutdown();
+    super.tearDown();
+  }
+
+  public void testForwardsChallengeAndHeaders() throws Exception {
+    callback.setConfiguration(configuration());
+
+    byte[] license = callback.executeKeyRequest(CHALLENGE, null);
+
+    assertTrue(Arrays.equals(LICENSE, license));
+    assertTrue(Arrays.equals(CHALLENGE, lastChallenge));
+    assertEquals("secret", lastToken);
+  }
+
+  public void testFallsBackToDefaultUrl() throws Exception {
+    callback.setConfiguration(null);
+
+    callback.executeKeyRequest(CHALLENGE, origin.url(LICENSE_PATH));
+
+    assertEquals(1, licenseRequests.get());
+  }
+
+  public void testRequestsEveryLicense() throws Exception {
+    callback.setConfiguration(configuration());
+
+    callback.executeKeyRequest(CHALLENGE, null);
+    callback.executeKeyRequest(CHALLENGE, null);
+
+    assertEquals(2, licenseRequests.get());
+  }
+
+  private DrmConfiguration configuration() {
+    return new DrmConfiguration(StreamingDrmSessionManager.WIDEVINE_UUID, origin.url(LICENSE_PATH),
+      Collections.singletonMap("X-Token", "secret"));
+  }
+}
@@ -0,0 +1,449 @@
+package com.greatdroid.reactnative.media.harness;
+
+import android.content.res.AssetManager;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A minimal in-process HTTP/1.1 origin serving fixture files from the test APK's assets, with
+ * latency, jitter, a shared bandwidth cap and random failures applied per {@link NetworkProfile}.
+ * <p>
+ * Random decisions are derived from the seed, the request path and how many times that path has
+ * been requested, so a scenario sees the same failures and delays on every run regardless of how
+ * the player interleaves its connections.
+ * <p>
+ * Paths registered with {@link #setHandler(String, RequestHandler)} are answered by the handler
+ * instead, which lets tests stand in for license servers and other POST endpoints.
+ */
+public class EmulatedOrigin {
+  private static final String TAG = "EmulatedOrigin";
+
+  private static final int WRITE_CHUNK_SIZE = 8 * 1024;
+
+  private final AssetManager assets;
+  private final String root;
+  private final long seed;
+
+  private final Map<String, byte[]> files = new HashMap<>();
+  private final Map<String, RequestHandler> handlers = new HashMap<>();
+  private final Map<String, Integer> requestCounts = new HashMap<>();
+  private final AtomicLong bytesTransferred = new AtomicLong();
+  private final AtomicInteger requests = new AtomicInteger();
+  private final AtomicInteger failures = new AtomicInteger();
+
+  private volatile NetworkProfile profile = NetworkProfile.UNCONSTRAINED;
+  private long linkFreeAtNs;
+
+  private ServerSocket serverSocket;
+  private ExecutorService executor;
+
+  /**
+   * An origin that only answers paths registered with {@link #setHandler(String, RequestHandler)}
+   * and 404s everything else.
+   */
+  public EmulatedOrigin(long seed) {
+    this(null, null, seed);
+  }
+
+  public EmulatedOrigin(AssetManager assets, String root, long seed) {
+    this.assets = assets;
+    this.root = root;
+    this.seed = seed;
+  }
+
+  public void start() throws IOException {
+    serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+    executor = Executors.newCachedThreadPool();
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        while (!serverSocket.isClosed()) {
+          try {
+            final Socket socket = serverSocket.accept();
+            executor.execute(new Runnable() {
+              @Override
+              public void run() {
+                serve(socket);
+              }
+            });
+          } catch (IOException e) {
+            if (!serverSocket.isClosed()) {
+              Log.w(TAG, "accept...failed", e);
+            }
+          }
+        }
+      }
+    });
+  }
+
+  public void shutdown() {
+    try {
+      if (serverSocket != null) {
+        serverSocket.close();
+      }
+    } catch (IOException e) {
+      Log.w(TAG, "shutdown...failed to close server socket", e);
+    }
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+  }
+
+  public interface RequestHandler {
+    /**
+     * Returns the response body for a request, or null to answer with a 500.
+     */
+    byte[] handle(String method, Map<String, String> headers, byte[] body);
+  }
+
+  public void setHandler(String path, RequestHandler handler) {
+    synchronized (handlers) {
+      handlers.put(path, handler);
+    }
+  }
+
+  public void setProfile(NetworkProfile profile) {
+    this.profile = profile;
+  }
+
+  /**
+   * @return Whether {@code path} is among the fixture assets.
+   */
+  public boolean hasFixture(String path) {
+    if (assets == null) {
+      return false;
+    }
+    try {
+      assets.open(root + "/" + path).close();
+      return true;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  public String url(String path) {
+    return "http://127.0.0.1:" + serverSocket.getLocalPort() + "/" + path;
+  }
+
+  public synchronized void resetStats() {
+    requestCounts.clear();
+    bytesTransferred.set(0);
+    requests.set(0);
+    failures.set(0);
+  }
+
+  public long getBytesTransferred() {
+    return bytesTransferred.get();
+  }
+
+  public int getRequestCount() {
+    return requests.get();
+  }
+
+  public int getFailureCount() {
+    return failures.get();
+  }
+
+  private void serve(Socket socket) {
+    try {
+      socket.setTcpNoDelay(true);
+      InputStream in = socket.getInputStream();
+      String requestLine = readLine(in);
+      if (requestLine == null) {
+        return;
+      }
+      Map<String, String> headers = new HashMap<>();
+      String line;
+      while ((line = readLine(in)) != null && line.length() > 0) {
+        int separator = line.indexOf(':');
+        if (separator > 0) {
+          headers.put(line.substring(0, separator).trim().toLowerCase(Locale.US), line.substring(separator + 1).trim());
+        }
+      }
+
+      String[] parts = requestLine.split(" ");
+      String method = parts[0];
+      String path = parts.length > 1 ? parts[1] : "/";
+      int query = path.indexOf('?');
+      if (query >= 0) {
+        path = path.substring(0, query);
+      }
+      while (path.startsWith("/")) {
+        path = path.substring(1);
+      }
+
+      RequestHandler handler;
+      synchronized (handlers) {
+        handler = handlers.get(path);
+      }
+      if (handler != null) {
+        String contentLength = headers.get("content-length");
+        byte[] body = readFully(in, contentLength == null ? 0 : Integer.parseInt(contentLength));
+        handle(socket.getOutputStream(), handler, method, headers, body);
+        return;
+      }
+      respond(socket.getOutputStream(), method, path, headers.get("range"));
+    } catch (SocketException e) {
+      // The player closed the connection early, e.g. after a seek.
+    } catch (IOException e) {
+      Log.w(TAG, "serve...failed", e);
+    } finally {
+      try {
+        socket.close();
+      } catch (IOException e) {
+        // Ignore.
+      }
+    }
+  }
+
+  private void handle(OutputStream out, RequestHandler handler, String method, Map<String, String> headers, byte[] body) throws IOException {
+    requests.incrementAndGet();
+    byte[] response = handler.handle(method, headers, body);
+    if (response == null) {
+      writeHead(out, "500 Internal Server Error", null, 0, null);
+      return;
+    }
+    writeHead(out, "200 OK", "application/octet-stream", response.length, null);
+    out.write(response);
+    bytesTransferred.addAndGet(response.length);
+    out.flush();
+  }
+
+  private void respond(OutputStream out, String method, String path, String range) throws IOException {
+    requests.incrementAndGet();
+    Random random = randomFor(path);
+    NetworkProfile profile = this.profile;
+
+    sleep(profile.latencyMs + (profile.jitterMs == 0 ? 0 : random.nextInt(2 * profile.jitterMs + 1) - profile.jitterMs));
+
+    if (random.nextFloat() < profile.failureRate) {
+      failures.incrementAndGet();
+      writeHead(out, "503 Service Unavailable", null, 0, null);
+      return;
+    }
+
+    byte[] content;
+    try {
+      content = load(path);
+    } catch (FileNotFoundException e) {
+      writeHead(out, "404 Not Found", null, 0, null);
+      return;
+    }
+
+    int start = 0;
+    int end = content.length - 1;
+    String status = "200 OK";
+    String contentRange = null;
+    if (range != null) {
+      int[] bounds = parseRange(range, content.length);
+      if (bounds == null) {
+        writeHead(out, "416 Range Not Satisfiable", null, 0, "bytes */" + content.length);
+        return;
+      }
+      start = bounds[0];
+      end = bounds[1];
+      status = "206 Partial Content";
+      contentRange = "bytes " + start + "-" + end + "/" + content.length;
+    }
+
+    int length = end - start + 1;
+    writeHead(out, status, contentType(path), length, contentRange);
+    if ("HEAD".equals(method)) {
+      return;
+    }
+    int position = start;
+    while (position <= end) {
+      int chunk = Math.min(WRITE_CHUNK_SIZE, end - position + 1);
+      throttle(profile, chunk);
+      out.write(content, position, chunk);
+      bytesTransferred.addAndGet(chunk);
+      position += chunk;
+    }
+    out.flush();
+  }
+
+  private void writeHead(OutputStream out, String status, String contentType, int length, String contentRange) throws IOException {
+    StringBuilder head = new StringBuilder();
+    head.append("HTTP/1.1 ").append(status).append("\r\n");
+    if (contentType != null) {
+      head.append("Content-Type: ").append(contentType).append("\r\n");
+    }
+    if (contentRange != null) {
+      head.append("Content-Range: ").append(contentRange).append("\r\n");
+    }
+    head.append("Accept-Ranges: bytes\r\n");
+    head.append("Content-Length: ").append(length).append("\r\n");
+    head.append("Connection: close\r\n\r\n");
+    out.write(head.toString().getBytes("US-ASCII"));
+    out.flush();
+  }
+
+  /**
+   * Blocks until the shared link has capacity for {@code bytes} more bytes.
+   */
+  private void throttle(NetworkProfile profile, int bytes) {
+    if (profile.bytesPerSecond <= 0) {
+      return;
+    }
+    long waitNs;
+    synchronized (this) {
+      long now = System.nanoTime();
+      linkFreeAtNs = Math.max(linkFreeAtNs, now) + bytes * 1000000000L / profile.bytesPerSecond;
+      waitNs = linkFreeAtNs - now;
+    }
+    sleep(waitNs / 1000000);
+  }
+
+  private synchronized Random randomFor(String path) {
+    Integer count = requestCounts.get(path);
+    count = count == null ? 0 : count + 1;
+    requestCounts.put(path, count);
+    return new Random(seed * 31 + path.hashCode() * 31L + count);
+  }
+
+  private byte[] load(String path) throws IOException {
+    synchronized (files) {
+      byte[] content = files.get(path);
+      if (content != null) {
+        return content;
+      }
+    }
+    if (assets == null) {
+      throw new FileNotFoundException(path);
+    }
+    InputStream in = assets.open(root + "/" + path);
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[WRITE_CHUNK_SIZE];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+      }
+      byte[] content = out.toByteArray();
+      synchronized (files) {
+        files.put(path, content);
+      }
+      return content;
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Reads a CRLF terminated header line byte by byte, so that a request body following the headers
+   * is left unread in the stream.
+   */
+  private static String readLine(InputStream in) throws IOException {
+    ByteArrayOutputStream line = new ByteArrayOutputStream();
+    int b;
+    while ((b = in.read()) != -1) {
+      if (b == '\n') {
+        break;
+      }
+      if (b != '\r') {
+        line.write(b);
+      }
+    }
+    if (b == -1 && line.size() == 0) {
+      return null;
+    }
+    return line.toString("US-ASCII");
+  }
+
+  /**
+   * Parses a single range, {@code bytes=a-b}, {@code bytes=a-} or the suffix form {@code bytes=-n}
+   * for the last n bytes.
+   *
+   * @return The first and last byte of the range within {@code length}, or null if the header is
+   * malformed, asks for several ranges or cannot be satisfied.
+   */
+  private static int[] parseRange(String range, int length) {
+    if (!range.startsWith("bytes=") || range.indexOf(',') >= 0) {
+      return null;
+    }
+    String[] bounds = range.substring("bytes=".length()).trim().split("-", -1);
+    if (bounds.length != 2) {
+      return null;
+    }
+    try {
+      long start;
+      long end;
+      if (bounds[0].length() == 0) {
+        long suffixLength = Long.parseLong(bounds[1]);
+        if (suffixLength <= 0) {
+          return null;
+        }
+        start = Math.max(0, length - suffixLength);
+        end = length - 1;
+      } else {
+        start = Long.parseLong(bounds[0]);
+        end = bounds[1].length() == 0 ? length - 1 : Math.min(length - 1, Long.parseLong(bounds[1]));
+      }
+      if (start < 0 || start >= length || start > end) {
+        return null;
+      }
+      return new int[] {(int) start, (int) end};
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  private static byte[] readFully(InputStream in, int length) throws IOException {
+    byte[] data = new byte[length];
+    int offset = 0;
+    while (offset < length) {
+      int read = in.read(data, offset, length - offset);
+      if (read == -1) {
+        throw new EOFException();
+      }
+      offset += read;
+    }
+    return data;
+  }
+
+  private static String contentType(String path) {
+    if (path.endsWith(".mpd")) {
+      return "application/dash+xml";
+    } else if (path.endsWith(".m3u8")) {
+      return "application/vnd.apple.mpegurl";
+    } else if (path.endsWith(".ts")) {
+      return "video/mp2t";
+    } else if (path.endsWith(".mp4") || path.endsWith(".m4s")) {
+      return "video/mp4";
+    } else if (path.endsWith(".vtt")) {
+      return "text/vtt";
+    } else if (path.endsWith("Manifest") || path.endsWith("manifest")) {
+      return "application/vnd.ms-sstr+xml";
+    }
+    return "application/octet-stream";
+  }
+
+  private static void sleep(long ms) {
+    if (ms <= 0) {
+      return;
+    }
+    try {
+      Thread.sleep(ms);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
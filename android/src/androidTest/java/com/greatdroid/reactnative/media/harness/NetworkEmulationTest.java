@@ -0,0 +1,72 @@
+package com.greatdroid.reactnative.media.harness;
+
+import android.test.InstrumentationTestCase;
+import android.util.Log;
+
+/**
+ * Startup and rebuffering of each content type under emulated network conditions.
+ * <p>
+ * Fixture media is served from {@code src/androidTest/assets/fixtures}: {@code dash/manifest.mpd},
+ * {@code hls/master.m3u8}, {@code ss/Manifest} and {@code progressive/video.mp4}, each with the
+ * segments it references. The media is too large to keep in the repository, so it has to be dropped
+ * into the assets before running; a scenario whose fixture is missing fails rather than passing
+ * without playing anything. Results are logged as one JSON object per scenario under the
+ * {@code ScenarioRunner} tag, e.g. {@code adb logcat -s ScenarioRunner}.
+ */
+public class NetworkEmulationTest extends InstrumentationTestCase {
+  private static final String TAG = "NetworkEmulationTest";
+
+  private static final long SEED = 0x6d6b;
+  private static final long READY_TIMEOUT_MS = 30000;
+  private static final long OBSERVE_MS = 10000;
+
+  private static final NetworkProfile[] PROFILES = {
+    NetworkProfile.UNCONSTRAINED, NetworkProfile.LTE, NetworkProfile.THREE_G, NetworkProfile.LOSSY_3G
+  };
+
+  private EmulatedOrigin origin;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    origin = new EmulatedOrigin(getInstrumentation().getContext().getAssets(), "fixtures", SEED);
+    origin.start();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    origin.shutdown();
+    super.tearDown();
+  }
+
+  public void testDash() throws Exception {
+    runAll("dash", "dash/manifest.mpd");
+  }
+
+  public void testHls() throws Exception {
+    runAll("hls", "hls/master.m3u8");
+  }
+
+  public void testSmoothStreaming() throws Exception {
+    runAll("ss", "ss/Manifest");
+  }
+
+  public void testProgressive() throws Exception {
+    runAll("progressive", "progressive/video.mp4");
+  }
+
+  private void runAll(String scenario, String path) throws Exception {
+    assertTrue(scenario + ": no fixture at src/androidTest/assets/fixtures/" + path,
+      origin.hasFixture(path));
+    for (NetworkProfile profile : PROFILES) {
+      ScenarioResult result = new ScenarioRunner(getInstrumentation(), origin)
+        .run(scenario, path, profile, READY_TIMEOUT_MS, OBSERVE_MS);
+      if (profile.failureRate == 0) {
+        assertNull(scenario + "/" + profile + " failed: " + result.error, result.error);
+        assertTrue(scenario + "/" + profile + " never got ready", result.timeToReadyMs >= 0);
+      } else {
+        Log.i(TAG, scenario + "/" + profile + " with failures: " + result);
+      }
+    }
+  }
+}
@@ -0,0 +1,44 @@
+package com.greatdroid.reactnative.media.harness;
+
+/**
+ * Network conditions applied by {@link EmulatedOrigin} to every response it serves.
+ */
+public class NetworkProfile {
+
+  public static final NetworkProfile UNCONSTRAINED = new NetworkProfile("unconstrained", 0, 0, 0, 0f);
+  public static final NetworkProfile WIFI = new NetworkProfile("wifi", 20, 5, 2500 * 1024, 0f);
+  public static final NetworkProfile LTE = new NetworkProfile("lte", 70, 20, 1200 * 1024, 0f);
+  public static final NetworkProfile THREE_G = new NetworkProfile("3g", 200, 80, 200 * 1024, 0f);
+  public static final NetworkProfile LOSSY_3G = new NetworkProfile("lossy-3g", 200, 80, 200 * 1024, 0.1f);
+
+  public final String name;
+  /**
+   * Delay before the first byte of every response.
+   */
+  public final int latencyMs;
+  /**
+   * Maximum deviation, in either direction, applied to {@link #latencyMs}.
+   */
+  public final int jitterMs;
+  /**
+   * Link capacity shared by all connections, or 0 for no cap.
+   */
+  public final int bytesPerSecond;
+  /**
+   * Probability that a request is answered with a 503 instead of content.
+   */
+  public final float failureRate;
+
+  public NetworkProfile(String name, int latencyMs, int jitterMs, int bytesPerSecond, float failureRate) {
+    this.name = name;
+    this.latencyMs = latencyMs;
+    this.jitterMs = jitterMs;
+    this.bytesPerSecond = bytesPerSecond;
+    this.failureRate = failureRate;
+  }
+
+  @Override
+  public String toString() {
+    return name;
+  }
+}
@@ -0,0 +1,57 @@
+package com.greatdroid.reactnative.media.harness;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * What a {@link ScenarioRunner} observed for one piece of content under one network profile.
+ */
+public class ScenarioResult {
+  public final String scenario;
+  public final String profile;
+  /**
+   * Time from {@code play()} to the first {@code STATE_READY}, or -1 if playback never got ready.
+   */
+  public final long timeToReadyMs;
+  /**
+   * Number of times playback fell back from ready to buffering while it was supposed to play.
+   */
+  public final int rebufferCount;
+  public final long bytesTransferred;
+  public final int requestCount;
+  public final int failedRequestCount;
+  public final Exception error;
+
+  public ScenarioResult(String scenario, String profile, long timeToReadyMs, int rebufferCount, long bytesTransferred, int requestCount, int failedRequestCount, Exception error) {
+    this.scenario = scenario;
+    this.profile = profile;
+    this.timeToReadyMs = timeToReadyMs;
+    this.rebufferCount = rebufferCount;
+    this.bytesTransferred = bytesTransferred;
+    this.requestCount = requestCount;
+    this.failedRequestCount = failedRequestCount;
+    this.error = error;
+  }
+
+  public JSONObject toJson() {
+    JSONObject json = new JSONObject();
+    try {
+      json.put("scenario", scenario);
+      json.put("profile", profile);
+      json.put("timeToReadyMs", timeToReadyMs);
+      json.put("rebufferCount", rebufferCount);
+      json.put("bytesTransferred", bytesTransferred);
+      json.put("requestCount", requestCount);
+      json.put("failedRequestCount", failedRequestCount);
+      json.put("error", error == null ? JSONObject.NULL : String.valueOf(error));
+    } catch (JSONException e) {
+      throw new IllegalStateException(e);
+    }
+    return json;
+  }
+
+  @Override
+  public String toString() {
+    return toJson().toString();
+  }
+}
@@ -0,0 +1,93 @@
+package com.greatdroid.reactnative.media.harness;
+
+import android.app.Instrumentation;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.google.android.exoplayer.ExoPlayer;
+import com.greatdroid.reactnative.media.player.MediaPlayerController;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Plays one fixture from an {@link EmulatedOrigin} through {@link MediaPlayerController} and the
+ * renderers builders, and records startup and rebuffering behaviour.
+ */
+public class ScenarioRunner {
+  private static final String TAG = "ScenarioRunner";
+
+  private final Instrumentation instrumentation;
+  private final EmulatedOrigin origin;
+
+  private MediaPlayerController controller;
+  private final CountDownLatch readyOrFailed = new CountDownLatch(1);
+  private volatile long startedAt;
+  private volatile long readyAt = -1;
+  private volatile int rebufferCount;
+  private volatile Exception error;
+
+  public ScenarioRunner(Instrumentation instrumentation, EmulatedOrigin origin) {
+    this.instrumentation = instrumentation;
+    this.origin = origin;
+  }
+
+  /**
+   * @param scenario  A name for the report.
+   * @param path      The fixture path on the origin.
+   * @param profile   The network conditions to apply.
+   * @param timeoutMs How long to wait for playback to get ready.
+   * @param observeMs How long to keep playing after it got ready, to count rebuffers.
+   */
+  public ScenarioResult run(String scenario, final String path, NetworkProfile profile, long timeoutMs, long observeMs) throws InterruptedException {
+    origin.setProfile(profile);
+    origin.resetStats();
+
+    instrumentation.runOnMainSync(new Runnable() {
+      @Override
+      public void run() {
+        controller = new MediaPlayerController(instrumentation.getTargetContext());
+        controller.addEventListener(listener);
+        controller.setContentUri(origin.url(path));
+        startedAt = SystemClock.elapsedRealtime();
+        controller.play();
+      }
+    });
+
+    if (readyOrFailed.await(timeoutMs, TimeUnit.MILLISECONDS) && error == null) {
+      Thread.sleep(observeMs);
+    }
+
+    instrumentation.runOnMainSync(new Runnable() {
+      @Override
+      public void run() {
+        controller.removeEventListener(listener);
+        controller.release();
+      }
+    });
+
+    ScenarioResult result = new ScenarioResult(scenario, profile.name,
+      readyAt < 0 ? -1 : readyAt - startedAt, rebufferCount,
+      origin.getBytesTransferred(), origin.getRequestCount(), origin.getFailureCount(), error);
+    Log.i(TAG, "result=" + result);
+    return result;
+  }
+
+  private final MediaPlayerController.EventListener listener = new MediaPlayerController.BaseEventListener() {
+    @Override
+    public void onPlayerStateChanged(boolean playWhenReady, int playbackState) {
+      if (playbackState == ExoPlayer.STATE_READY && readyAt < 0) {
+        readyAt = SystemClock.elapsedRealtime();
+        readyOrFailed.countDown();
+      } else if (playbackState == ExoPlayer.STATE_BUFFERING && playWhenReady && readyAt >= 0) {
+        rebufferCount++;
+      }
+    }
+
+    @Override
+    public void onError(Exception e) {
+      error = e;
+      readyOrFailed.countDown();
+    }
+  };
+}
@@ -0,0 +1,219 @@
+package com.greatdroid.reactnative.media;
+
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.facebook.react.bridge.Promise;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactContextBaseJavaModule;
+import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableType;
+import com.facebook.react.bridge.UiThreadUtil;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.bridge.WritableNativeMap;
+import com.google.android.exoplayer.ExoPlayer;
+import com.greatdroid.reactnative.media.player.MediaPlayerController;
+import com.greatdroid.reactnative.media.player.MediaPlayerViewRegistry;
+import com.greatdroid.reactnative.media.player.PlaybackSnapshot;
+import com.greatdroid.reactnative.media.player.ReactMediaPlayerView;
+import com.greatdroid.reactnative.media.player.poster.PosterFrameCache;
+import com.greatdroid.reactnative.media.player.upstream.HlsKeyCache;
+
+import java.io.File;
+
+/**
+ * Player independent entry points, exposed to JS as <code>NativeModules.MediaKit</code>.
+ */
+public class MediaKitModule extends ReactContextBaseJavaModule {
+  private static final String TAG = "MediaKitModule";
+
+  private static final String COMMAND_PLAY = "play";
+  private static final String COMMAND_PAUSE = "pause";
+  private static final String COMMAND_STOP = "stop";
+  private static final String COMMAND_SEEK_TO = "seekTo";
+  private static final String COMMAND_PAUSE_ALL_EXCEPT = "pauseAllExcept";
+
+  public MediaKitModule(ReactApplicationContext reactContext) {
+    super(reactContext);
+  }
+
+  @Override
+  public String getName() {
+    return "MediaKit";
+  }
+
+  /**
+   * Extracts the keyframe closest to a position without creating a player, and resolves with
+   * <code>{uri, width, height}</code>, where uri is a cached JPEG file.
+   */
+  @ReactMethod
+  public void getPosterFrame(String src, ReadableMap options, final Promise promise) {
+    Log.d(TAG, "getPosterFrame...src=" + src);
+    long positionMs = options != null && options.hasKey("position") ? (long) options.getDouble("position") : 0;
+    int width = options != null && options.hasKey("width") ? options.getInt("width") : 0;
+    int height = options != null && options.hasKey("height") ? options.getInt("height") : 0;
+    PosterFrameCache.getInstance(getReactApplicationContext()).load(src, positionMs, width, height, new PosterFrameCache.Callback() {
+      @Override
+      public void onLoaded(Bitmap frame, File file) {
+        WritableMap result = new WritableNativeMap();
+        result.putString("uri", Uri.fromFile(file).toString());
+        result.putInt("width", frame.getWidth());
+        result.putInt("height", frame.getHeight());
+        promise.resolve(result);
+      }
+
+      @Override
+      public void onError(Exception e) {
+        promise.reject(e);
+      }
+    });
+  }
+
+  /**
+   * Makes HLS AES-128 keys outlive the app process by also keeping them in the app's private
+   * storage. Off by default.
+   */
+  @ReactMethod
+  public void setHlsKeyPersistence(boolean persistent) {
+    Log.d(TAG, "setHlsKeyPersistence...persistent=" + persistent);
+    HlsKeyCache.getInstance().setPersistent(getReactApplicationContext(), persistent);
+  }
+
+  /**
+   * Resolves with the latest playback snapshot of the player view with the given tag, read without
+   * a hop to the main thread.
+   */
+  @ReactMethod
+  public void getPlaybackState(int tag, Promise promise) {
+    ReactMediaPlayerView view = MediaPlayerViewRegistry.get(tag);
+    if (view == null) {
+      promise.reject(new IllegalArgumentException("No player view with tag " + tag));
+      return;
+    }
+    promise.resolve(toMap(view.getPlaybackSnapshot()));
+  }
+
+  /**
+   * Runs a list of commands, each <code>{tag, command, position}</code> where command is one of
+   * play, pause, stop, seekTo and pauseAllExcept, in order and in a single main thread hop. Nothing
+   * is run if any command is invalid.
+   */
+  @ReactMethod
+  public void execute(final ReadableArray commands, final Promise promise) {
+    UiThreadUtil.runOnUiThread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          for (int i = 0; i < commands.size(); i++) {
+            if (commands.getType(i) != ReadableType.Map) {
+              throw new IllegalArgumentException("Command " + i + " is not an object");
+            }
+            validate(commands.getMap(i));
+          }
+        } catch (IllegalArgumentException e) {
+          promise.reject(e);
+          return;
+        }
+        for (int i = 0; i < commands.size(); i++) {
+          run(commands.getMap(i));
+        }
+        promise.resolve(null);
+      }
+    });
+  }
+
+  private static void validate(ReadableMap command) {
+    // Reading a key as the wrong type throws something other than IllegalArgumentException, so
+    // check the types before anything is read.
+    requireType(command, "command", ReadableType.String);
+    requireType(command, "tag", ReadableType.Number);
+    if (command.hasKey("position")) {
+      requireType(command, "position", ReadableType.Number);
+    }
+    String name = command.getString("command");
+    if (!COMMAND_PLAY.equals(name) && !COMMAND_PAUSE.equals(name) && !COMMAND_STOP.equals(name)
+      && !COMMAND_SEEK_TO.equals(name) && !COMMAND_PAUSE_ALL_EXCEPT.equals(name)) {
+      throw new IllegalArgumentException("Unknown command: " + name);
+    }
+    if (!COMMAND_PAUSE_ALL_EXCEPT.equals(name) && MediaPlayerViewRegistry.get(command.getInt("tag")) == null) {
+      throw new IllegalArgumentException("No player view with tag " + command.getInt("tag"));
+    }
+    if (COMMAND_SEEK_TO.equals(name) && !command.hasKey("position")) {
+      throw new IllegalArgumentException("Missing position for seekTo");
+    }
+  }
+
+  private static void requireType(ReadableMap command, String key, ReadableType type) {
+    if (!command.hasKey(key) || command.isNull(key)) {
+      throw new IllegalArgumentException("Missing " + key);
+    }
+    if (command.getType(key) != type) {
+      throw new IllegalArgumentException(key + " must be a " + type + ", not a " + command.getType(key));
+    }
+  }
+
+  private static void run(ReadableMap command) {
+    String name = command.getString("command");
+    int tag = command.getInt("tag");
+    Log.d(TAG, "run..." + name + ", tag=" + tag);
+    if (COMMAND_PAUSE_ALL_EXCEPT.equals(name)) {
+      for (ReactMediaPlayerView view : MediaPlayerViewRegistry.getAll()) {
+        MediaPlayerController controller = view.getOwnedMediaPlayerController();
+        if (view.getId() != tag && controller != null) {
+          controller.pause();
+        }
+      }
+      return;
+    }
+    ReactMediaPlayerView view = MediaPlayerViewRegistry.get(tag);
+    if (COMMAND_PAUSE.equals(name)) {
+      // Pausing a view that does not play needs no controller; don't take it from the view that does.
+      MediaPlayerController controller = view.getOwnedMediaPlayerController();
+      if (controller != null) {
+        controller.pause();
+      }
+    } else if (COMMAND_PLAY.equals(name)) {
+      view.getMediaPlayerController().play();
+    } else if (COMMAND_STOP.equals(name)) {
+      view.getMediaPlayerController().stop();
+    } else if (COMMAND_SEEK_TO.equals(name)) {
+      view.getMediaPlayerController().seekTo((long) command.getDouble("position"));
+    }
+  }
+
+  private static WritableMap toMap(PlaybackSnapshot snapshot) {
+    WritableMap map = new WritableNativeMap();
+    map.putString("state", describeState(snapshot.playbackState));
+    map.putBoolean("playWhenReady", snapshot.playWhenReady);
+    map.putBoolean("playing", snapshot.isPlaying());
+    map.putDouble("current", snapshot.positionMs);
+    map.putDouble("total", snapshot.durationMs == ExoPlayer.UNKNOWN_TIME ? -1 : snapshot.durationMs);
+    map.putDouble("buffered", snapshot.bufferedPositionMs);
+    map.putInt("bitrate", snapshot.bitrate);
+    map.putInt("videoWidth", snapshot.videoWidth);
+    map.putInt("videoHeight", snapshot.videoHeight);
+    // How old the snapshot is, so JS can extrapolate the position while playing.
+    map.putDouble("age", SystemClock.elapsedRealtime() - snapshot.elapsedRealtimeMs);
+    return map;
+  }
+
+  private static String describeState(int playbackState) {
+    switch (playbackState) {
+      case ExoPlayer.STATE_PREPARING:
+        return "preparing";
+      case ExoPlayer.STATE_BUFFERING:
+        return "buffering";
+      case ExoPlayer.STATE_READY:
+        return "ready";
+      case ExoPlayer.STATE_ENDED:
+        return "ended";
+      case ExoPlayer.STATE_IDLE:
+      default:
+        return "idle";
+    }
+  }
+}
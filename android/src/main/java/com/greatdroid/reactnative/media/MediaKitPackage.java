@@ -15,7 +15,7 @@ public class MediaKitPackage implements ReactPackage {
 
   @Override
   public List<NativeModule> createNativeModules(ReactApplicationContext reactContext) {
-    return Collections.emptyList();
+    return Arrays.<NativeModule>asList(new MediaKitModule(reactContext));
   }
 
 
@@ -0,0 +1,24 @@
+package com.greatdroid.reactnative.media.player;
+
+/**
+ * How far ahead of the playback position media may be loaded, shared with the renderers builders
+ * so that it can be lowered and raised during playback. Set on the main thread and read from the
+ * playback thread.
+ */
+public class BufferLimit {
+  public static final long NO_LIMIT = Long.MAX_VALUE;
+
+  private volatile long maxBufferMs = NO_LIMIT;
+
+  /**
+   * @param maxBufferMs The buffer ahead of playback to stop loading at, or {@link #NO_LIMIT} to
+   *                    leave it to the load control.
+   */
+  public void setMaxBufferMs(long maxBufferMs) {
+    this.maxBufferMs = maxBufferMs;
+  }
+
+  public long getMaxBufferMs() {
+    return maxBufferMs;
+  }
+}
@@ -0,0 +1,166 @@
+package com.greatdroid.reactnative.media.player;
+
+import android.net.Uri;
+import android.util.Log;
+import android.util.LruCache;
+
+import com.google.android.exoplayer.C;
+import com.google.android.exoplayer.upstream.DataSpec;
+import com.google.android.exoplayer.upstream.DefaultHttpDataSource;
+import com.google.android.exoplayer.upstream.HttpDataSource;
+import com.google.android.exoplayer.util.Util;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Tells HLS, DASH and SmoothStreaming manifests from progressive media for uris whose path does not
+ * say, e.g. signed or extensionless API endpoints, from the first bytes of the response and its
+ * Content-Type. Results are cached per uri pattern, the uri without its query and with runs of
+ * digits collapsed, so that other items of the same endpoint are not sniffed again.
+ */
+final class ContentTypeSniffer {
+  private static final String TAG = "ContentTypeSniffer";
+
+  private static final int SNIFF_BYTES = 1024;
+  private static final String[] PROGRESSIVE_EXTENSIONS = {
+    ".mp4", ".m4v", ".m4a", ".mov", ".3gp", ".webm", ".mkv", ".ts", ".flv", ".mp3", ".aac", ".ogg",
+    ".oga", ".opus", ".wav", ".flac"};
+
+  private static final LruCache<String, Integer> cache = new LruCache<>(256);
+
+  private static final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, "MediaKitSniffer");
+      thread.setDaemon(true);
+      return thread;
+    }
+  });
+
+  private ContentTypeSniffer() {
+  }
+
+  /**
+   * @return Whether {@code uri} may be a manifest that its path does not identify as one.
+   */
+  static boolean needsSniffing(Uri uri) {
+    String scheme = uri.getScheme();
+    if (!"http".equals(scheme) && !"https".equals(scheme)) {
+      return false;
+    }
+    String path = uri.getPath();
+    if (path == null) {
+      return true;
+    }
+    path = path.toLowerCase(Locale.US);
+    for (String extension : PROGRESSIVE_EXTENSIONS) {
+      if (path.endsWith(extension)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return The {@code Util.TYPE_*} constant sniffed earlier for a uri like {@code uri}, or null.
+   */
+  static Integer getCached(Uri uri) {
+    return cache.get(patternOf(uri));
+  }
+
+  /**
+   * Runs {@code runnable}, which sniffs, on a thread of its own, so that a slow server does not hold
+   * up the builds of other players on the shared prepare thread.
+   */
+  static void execute(Runnable runnable) {
+    executor.execute(runnable);
+  }
+
+  /**
+   * Requests the start of {@code uri} and sniffs its type. Blocks; must not be called on the main
+   * thread.
+   *
+   * @return One of the {@code Util.TYPE_*} constants.
+   */
+  static int sniff(Uri uri, String userAgent) throws IOException {
+    HttpDataSource dataSource = new DefaultHttpDataSource(userAgent, null);
+    byte[] head = new byte[SNIFF_BYTES];
+    int length = 0;
+    String contentType = null;
+    try {
+      dataSource.open(new DataSpec(uri, 0, SNIFF_BYTES, null));
+      contentType = getContentType(dataSource.getResponseHeaders());
+      int read = 0;
+      while (length < head.length && read != C.RESULT_END_OF_INPUT) {
+        read = dataSource.read(head, length, head.length - length);
+        if (read > 0) {
+          length += read;
+        }
+      }
+    } finally {
+      dataSource.close();
+    }
+
+    int type = sniffBytes(head, length);
+    if (type == Util.TYPE_OTHER) {
+      type = sniffContentType(contentType);
+    }
+    Log.d(TAG, "sniff...type=" + type + ", contentType=" + contentType + ", uri=" + uri);
+    cache.put(patternOf(uri), type);
+    return type;
+  }
+
+  private static int sniffBytes(byte[] head, int length) {
+    String text = new String(head, 0, length, Charset.forName(C.UTF8_NAME)).trim();
+    if (text.startsWith("\uFEFF")) {
+      text = text.substring(1).trim();
+    }
+    if (text.startsWith("#EXTM3U")) {
+      return Util.TYPE_HLS;
+    } else if (text.startsWith("<")) {
+      if (text.contains("<MPD")) {
+        return Util.TYPE_DASH;
+      } else if (text.contains("<SmoothStreamingMedia")) {
+        return Util.TYPE_SS;
+      }
+    }
+    return Util.TYPE_OTHER;
+  }
+
+  private static int sniffContentType(String contentType) {
+    if (contentType == null) {
+      return Util.TYPE_OTHER;
+    }
+    contentType = contentType.toLowerCase(Locale.US);
+    if (contentType.contains("mpegurl")) {
+      // application/vnd.apple.mpegurl, application/x-mpegurl, audio/mpegurl.
+      return Util.TYPE_HLS;
+    } else if (contentType.startsWith("application/dash+xml")) {
+      return Util.TYPE_DASH;
+    } else if (contentType.startsWith("application/vnd.ms-sstr+xml")) {
+      return Util.TYPE_SS;
+    }
+    return Util.TYPE_OTHER;
+  }
+
+  private static String getContentType(Map<String, List<String>> headers) {
+    for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+      if ("Content-Type".equalsIgnoreCase(header.getKey()) && !header.getValue().isEmpty()) {
+        return header.getValue().get(0);
+      }
+    }
+    return null;
+  }
+
+  private static String patternOf(Uri uri) {
+    String path = uri.getPath() == null ? "" : uri.getPath().replaceAll("[0-9]+", "#");
+    return uri.getScheme() + "://" + uri.getAuthority() + path;
+  }
+}
@@ -0,0 +1,178 @@
+package com.greatdroid.reactnative.media.player;
+
+import android.annotation.TargetApi;
+import android.media.MediaCodec;
+import android.media.MediaDrmException;
+
+import com.google.android.exoplayer.BehindLiveWindowException;
+import com.google.android.exoplayer.MediaCodecTrackRenderer;
+import com.google.android.exoplayer.ParserException;
+import com.google.android.exoplayer.audio.AudioTrack;
+import com.google.android.exoplayer.drm.UnsupportedDrmException;
+import com.google.android.exoplayer.upstream.HttpDataSource;
+import com.google.android.exoplayer.util.Util;
+
+import java.io.IOException;
+
+/**
+ * Decides whether and when a failed player is prepared again. Errors are classified by walking
+ * their causes; each category gets a number of attempts and a backoff, and attempts are only
+ * forgotten once playback has run for {@link #STABLE_PLAYBACK_MS} after a recovery.
+ */
+final class ErrorRecoveryPolicy {
+  /**
+   * Loading failed, e.g. a CDN error or a dropped connection. Retried with exponential backoff.
+   */
+  static final int CATEGORY_NETWORK = 0;
+  /**
+   * A decoder failed to initialize or decode. Retried once as is, then at a lower resolution.
+   */
+  static final int CATEGORY_DECODER = 1;
+  static final int CATEGORY_DRM = 2;
+  /**
+   * A live stream fell behind the window. Retried right away from the live edge.
+   */
+  static final int CATEGORY_BEHIND_LIVE_WINDOW = 3;
+  static final int CATEGORY_AUDIO_OUTPUT = 4;
+  /**
+   * Malformed or unsupported content, or a 4xx response, which a retry will not fix.
+   */
+  static final int CATEGORY_FATAL = 5;
+
+  static final long NO_RETRY = -1;
+  /**
+   * A recovery position not known ahead, e.g. the live edge. Playback has to run for
+   * {@link #STABLE_PLAYBACK_MS} past the first progress after the recovery instead.
+   */
+  static final long UNKNOWN_POSITION = -1;
+
+  private static final long STABLE_PLAYBACK_MS = 10000;
+  private static final long MAX_BACKOFF_MS = 30000;
+
+  private int category = -1;
+  private int attempt;
+  private long recoveryPositionMs;
+
+  static int classify(Throwable error) {
+    for (Throwable e = error; e != null; e = e.getCause()) {
+      if (e instanceof BehindLiveWindowException) {
+        return CATEGORY_BEHIND_LIVE_WINDOW;
+      } else if (e instanceof ParserException || e instanceof UnsupportedDrmException || isClientError(e)) {
+        return CATEGORY_FATAL;
+      } else if (e instanceof MediaCodec.CryptoException || isMediaDrmException(e)) {
+        return CATEGORY_DRM;
+      } else if (e instanceof MediaCodecTrackRenderer.DecoderInitializationException) {
+        return CATEGORY_DECODER;
+      } else if (e instanceof AudioTrack.InitializationException || e instanceof AudioTrack.WriteException) {
+        return CATEGORY_AUDIO_OUTPUT;
+      }
+    }
+    for (Throwable e = error; e != null; e = e.getCause()) {
+      if (e instanceof IOException) {
+        return CATEGORY_NETWORK;
+      } else if (e instanceof IllegalStateException) {
+        // How MediaCodec reports decoding errors.
+        return CATEGORY_DECODER;
+      }
+    }
+    return CATEGORY_FATAL;
+  }
+
+  /**
+   * @return Whether {@code e} is a 4xx response, which asking again will not change. Timeouts and
+   * rate limiting are retried like other network errors.
+   */
+  private static boolean isClientError(Throwable e) {
+    if (!(e instanceof HttpDataSource.InvalidResponseCodeException)) {
+      return false;
+    }
+    int responseCode = ((HttpDataSource.InvalidResponseCodeException) e).responseCode;
+    return responseCode >= 400 && responseCode < 500 && responseCode != 408 && responseCode != 429;
+  }
+
+  private static boolean isMediaDrmException(Throwable e) {
+    return Util.SDK_INT >= 18 && isMediaDrmExceptionV18(e);
+  }
+
+  @TargetApi(18)
+  private static boolean isMediaDrmExceptionV18(Throwable e) {
+    return e instanceof MediaDrmException;
+  }
+
+  /**
+   * Counts an attempt at recovering from an error of {@code category}.
+   *
+   * @param positionMs The position playback is resumed from, or {@link #UNKNOWN_POSITION}.
+   * @return How long to wait before preparing again, or {@link #NO_RETRY} to give up.
+   */
+  long onError(int category, long positionMs) {
+    if (category != this.category) {
+      this.category = category;
+      attempt = 0;
+    }
+    attempt++;
+    recoveryPositionMs = positionMs;
+    switch (category) {
+      case CATEGORY_NETWORK:
+        return attempt > 6 ? NO_RETRY : Math.min(1000L << (attempt - 1), MAX_BACKOFF_MS);
+      case CATEGORY_BEHIND_LIVE_WINDOW:
+        return attempt > 3 ? NO_RETRY : 0;
+      case CATEGORY_DECODER:
+        return attempt > 3 ? NO_RETRY : 500;
+      case CATEGORY_DRM:
+        return attempt > 2 ? NO_RETRY : 2000L * attempt;
+      case CATEGORY_AUDIO_OUTPUT:
+        return attempt > 2 ? NO_RETRY : 500;
+      case CATEGORY_FATAL:
+      default:
+        return NO_RETRY;
+    }
+  }
+
+  int getAttempt() {
+    return attempt;
+  }
+
+  /**
+   * @return Whether the next decoder retry should go to a lower resolution.
+   */
+  boolean shouldLowerResolution() {
+    return category == CATEGORY_DECODER && attempt > 1;
+  }
+
+  /**
+   * Forgets past attempts once playback has been going for a while since the last recovery.
+   */
+  void onPlaybackProgress(long positionMs) {
+    if (attempt == 0) {
+      return;
+    }
+    if (recoveryPositionMs == UNKNOWN_POSITION) {
+      recoveryPositionMs = positionMs;
+    } else if (positionMs - recoveryPositionMs >= STABLE_PLAYBACK_MS) {
+      reset();
+    }
+  }
+
+  void reset() {
+    category = -1;
+    attempt = 0;
+  }
+
+  static String describe(int category) {
+    switch (category) {
+      case CATEGORY_NETWORK:
+        return "network";
+      case CATEGORY_DECODER:
+        return "decoder";
+      case CATEGORY_DRM:
+        return "drm";
+      case CATEGORY_BEHIND_LIVE_WINDOW:
+        return "behindLiveWindow";
+      case CATEGORY_AUDIO_OUTPUT:
+        return "audioOutput";
+      default:
+        return "fatal";
+    }
+  }
+}
@@ -1,14 +1,17 @@
 package com.greatdroid.reactnative.media.player;
 
 import android.content.Context;
+import android.graphics.Matrix;
 import android.graphics.SurfaceTexture;
 import android.media.MediaCodec;
-import android.media.MediaDrm;
 import android.net.Uri;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.Surface;
+import android.view.SurfaceHolder;
+import android.view.SurfaceView;
 import android.view.TextureView;
 import android.view.View;
 import android.view.ViewGroup;
@@ -23,25 +26,80 @@ import com.google.android.exoplayer.MediaCodecTrackRenderer;
 import com.google.android.exoplayer.MediaCodecVideoTrackRenderer;
 import com.google.android.exoplayer.TrackRenderer;
 import com.google.android.exoplayer.audio.AudioTrack;
-import com.google.android.exoplayer.drm.MediaDrmCallback;
+import com.google.android.exoplayer.chunk.ChunkSampleSource;
+import com.google.android.exoplayer.chunk.Format;
+import com.google.android.exoplayer.hls.HlsSampleSource;
 import com.google.android.exoplayer.metadata.MetadataTrackRenderer;
 import com.google.android.exoplayer.metadata.id3.Id3Frame;
 import com.google.android.exoplayer.text.Cue;
 import com.google.android.exoplayer.text.TextRenderer;
+import com.google.android.exoplayer.upstream.Allocator;
 import com.google.android.exoplayer.upstream.BandwidthMeter;
+import com.google.android.exoplayer.upstream.DefaultAllocator;
 import com.google.android.exoplayer.util.Util;
+import com.greatdroid.reactnative.media.player.drm.DrmConfiguration;
+import com.greatdroid.reactnative.media.player.drm.DrmSessionManagerProvider;
+import com.greatdroid.reactnative.media.player.drm.LicenseServerDrmCallback;
+import com.greatdroid.reactnative.media.player.metadata.MetadataEventFilter;
+import com.greatdroid.reactnative.media.player.text.CueChange;
+import com.greatdroid.reactnative.media.player.text.CueDiffer;
+import com.greatdroid.reactnative.media.player.text.SubtitleCueIndex;
+import com.greatdroid.reactnative.media.player.text.SubtitleLoader;
+import com.greatdroid.reactnative.media.player.text.SubtitleTracker;
 import com.greatdroid.reactnative.media.player.trackrenderer.DashRenderersBuilder;
 import com.greatdroid.reactnative.media.player.trackrenderer.ExtractorRenderersBuilder;
 import com.greatdroid.reactnative.media.player.trackrenderer.HlsRenderersBuilder;
 import com.greatdroid.reactnative.media.player.trackrenderer.SmoothStreamingRenderersBuilder;
+import com.greatdroid.reactnative.media.player.upstream.BackBuffer;
+import com.greatdroid.reactnative.media.player.upstream.OriginSet;
+import com.greatdroid.reactnative.media.player.upstream.PrefetchCache;
 
+import java.io.IOException;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.UUID;
+import java.util.Set;
 
 public class MediaPlayerController {
   private static final String TAG = "MediaPlayerController";
 
+  /**
+   * Renders into a {@link TextureView}, which composes like any other view: it follows alpha and
+   * transforms, at the cost of an extra GPU composition pass and a frame of latency.
+   */
+  public static final int RENDER_TARGET_TEXTURE_VIEW = 0;
+  /**
+   * Renders into a {@link SurfaceView}, which the display composes directly. Cheaper and lower
+   * latency, but it ignores the alpha and transforms of the views above it.
+   */
+  public static final int RENDER_TARGET_SURFACE_VIEW = 1;
+
+  /**
+   * Scales the video to fit within the view, keeping its aspect ratio.
+   */
+  public static final int RESIZE_MODE_CONTAIN = 0;
+  /**
+   * Scales the video to fill the view, keeping its aspect ratio and cropping what does not fit.
+   */
+  public static final int RESIZE_MODE_COVER = 1;
+  /**
+   * Stretches the video to the view.
+   */
+  public static final int RESIZE_MODE_STRETCH = 2;
+  /**
+   * Shows the video at its own pixel size, centered.
+   */
+  public static final int RESIZE_MODE_NONE = 3;
+
+  /**
+   * Picks the pipeline from the uri's path, sniffing the response when the path does not tell.
+   * Otherwise one of the {@code Util.TYPE_*} constants forces a pipeline.
+   */
+  public static final int CONTENT_TYPE_AUTO = -1;
+
+  private static final long PROGRESS_INTERVAL_MS = 500;
+  private static final int BUFFER_SEGMENT_SIZE = 64 * 1024;
+
   private final Context context;
   private final ExoPlayer exoPlayer;
   private final Handler mainHandler;
@@ -51,17 +109,105 @@ public class MediaPlayerController {
   private final InternalEventListener internalEventListener = new InternalEventListener();
   private final List<EventListener> eventListeners = new LinkedList<>();
 
+  private final LicenseServerDrmCallback drmCallback;
+  private final DrmSessionManagerProvider drmSessionManagerProvider;
+
+  private final CueDiffer cueDiffer = new CueDiffer();
+  private final MetadataEventFilter metadataEventFilter;
+  private final SubtitleTracker subtitleTracker;
+  private SubtitleLoader subtitleLoader;
+  private String subtitleUri;
+
   private TrackRenderersBuilder trackRenderersBuilder;
+  /**
+   * The HLS builder of the current source, also when reached through sniffing, or null.
+   */
+  private HlsRenderersBuilder hlsRenderersBuilder;
   private TrackRenderer videoTrackRenderer;
   private TrackRenderer audioTrackRenderer;
 
+  private final VideoViewport viewport = new VideoViewport();
+  private final BufferLimit bufferLimit = new BufferLimit();
+  private final QualityGovernor qualityGovernor;
+  private final BackBuffer backBuffer;
+  /**
+   * Shared by the renderers builds of the player, so that a recovery reuses the buffers the failed
+   * attempt left pooled.
+   */
+  private final Allocator allocator = new DefaultAllocator(BUFFER_SEGMENT_SIZE);
+  /**
+   * The {@link PrefetchCache} scope of the current source. It outlives a recovery, so the rebuild
+   * picks up loads the failed attempt prefetched but never used.
+   */
+  private Object prefetchScope = new Object();
+  private OriginSet originSet;
+  private int contentType = CONTENT_TYPE_AUTO;
+  private String container;
   private final AspectRatioFrameLayout aspectRatioFrameLayout;
+  private int renderTarget = RENDER_TARGET_TEXTURE_VIEW;
   private TextureView textureView;
   private SurfaceTexture surfaceTexture;
+  private SurfaceView surfaceView;
+  private boolean surfaceViewReady;
+  private final Matrix videoTransform = new Matrix();
+  private int resizeMode = RESIZE_MODE_CONTAIN;
+  private int videoWidth;
+  private int videoHeight;
+  private int videoRotationDegrees;
+  private float videoPixelRatio = 1;
+
+  private volatile boolean ended = false;
+  private volatile boolean loop = false;
+  private volatile boolean muted = false;
+  private boolean audioOnly = false;
+  private boolean hasVideoRenderer = false;
+  private long startPositionMs = 0;
+  private int bitrate = -1;
+  private volatile PlaybackSnapshot playbackSnapshot = PlaybackSnapshot.IDLE;
+
+  private final ErrorRecoveryPolicy errorRecoveryPolicy = new ErrorRecoveryPolicy();
+  private boolean recovering = false;
+  private long recoveryPositionMs;
+
+  private final Runnable recovery = new Runnable() {
+    @Override
+    public void run() {
+      recovering = false;
+      if (uri == null) {
+        return;
+      }
+      Log.d(TAG, "recover...position=" + recoveryPositionMs);
+      // Keeps the allocator and the prefetch scope, and the back buffer if enabled.
+      stopRenderers();
+      startPositionMs = recoveryPositionMs;
+      renderTracks(uri);
+    }
+  };
 
-  private boolean ended = false;
-  private boolean loop = false;
-  private boolean muted = false;
+  private final Runnable progressTicker = new Runnable() {
+    @Override
+    public void run() {
+      publishPlaybackSnapshot();
+      PlaybackSnapshot snapshot = playbackSnapshot;
+      if (snapshot.isPlaying()) {
+        errorRecoveryPolicy.onPlaybackProgress(snapshot.positionMs);
+        qualityGovernor.onPlaybackProgress(SystemClock.elapsedRealtime());
+        notifyPlaybackProgress(snapshot);
+      }
+      if (needsProgressTicks(snapshot)) {
+        mainHandler.postDelayed(this, PROGRESS_INTERVAL_MS);
+      }
+    }
+  };
+
+  /**
+   * Ticks run while playing, and while buffering to play so that the buffered position of the
+   * snapshot keeps up with the data arriving.
+   */
+  private static boolean needsProgressTicks(PlaybackSnapshot snapshot) {
+    return snapshot.playWhenReady
+      && (snapshot.playbackState == ExoPlayer.STATE_READY || snapshot.playbackState == ExoPlayer.STATE_BUFFERING);
+  }
 
 
   public MediaPlayerController(Context context) {
@@ -70,11 +216,55 @@ public class MediaPlayerController {
     this.exoPlayer.addListener(internalEventListener);
     this.exoPlayer.setPlayWhenReady(false);
     this.mainHandler = new Handler(Looper.getMainLooper());
-
+    this.backBuffer = new BackBuffer(new BackBuffer.Clock() {
+      @Override
+      public long getPlaybackPositionMs() {
+        return exoPlayer.getCurrentPosition();
+      }
+    });
+    this.drmCallback = new LicenseServerDrmCallback();
+    this.drmSessionManagerProvider = new DrmSessionManagerProvider(exoPlayer.getPlaybackLooper(), mainHandler, drmCallback);
+    this.metadataEventFilter = new MetadataEventFilter(mainHandler, new MetadataEventFilter.Output() {
+      @Override
+      public void onMetadata(List<Id3Frame> frames) {
+        notifyMetadata(frames);
+      }
+    });
+    this.subtitleTracker = new SubtitleTracker(exoPlayer, mainHandler, new TextRenderer() {
+      @Override
+      public void onCues(List<Cue> cues) {
+        notifyCues(cues);
+      }
+    });
+    this.qualityGovernor = QualityGovernor.create(context, new QualityGovernor.Listener() {
+      @Override
+      public void onLevelChanged(int level, String reason) {
+        applyQualityLevel(level, reason);
+      }
+    });
 
     this.aspectRatioFrameLayout = new AspectRatioFrameLayout(context);
-    this.textureView = new TextureView(aspectRatioFrameLayout.getContext());
-    this.textureView.setSurfaceTextureListener(new TextureView.SurfaceTextureListener() {
+    this.aspectRatioFrameLayout.addOnLayoutChangeListener(new View.OnLayoutChangeListener() {
+      @Override
+      public void onLayoutChange(View v, int left, int top, int right, int bottom, int oldLeft, int oldTop, int oldRight, int oldBottom) {
+        if (surfaceView != null) {
+          // A SurfaceView is fitted by sizing the frame to the video's aspect ratio, so this is the
+          // size video is shown at. A TextureView fills the frame; updateVideoTransform() sizes the
+          // viewport for it.
+          viewport.setSize(right - left, bottom - top);
+        }
+        if (right - left != oldRight - oldLeft || bottom - top != oldBottom - oldTop) {
+          updateVideoTransform();
+        }
+      }
+    });
+    this.textureView = createTextureView();
+    this.aspectRatioFrameLayout.addView(textureView, new FrameLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+  }
+
+  private TextureView createTextureView() {
+    final TextureView textureView = new TextureView(aspectRatioFrameLayout.getContext());
+    textureView.setSurfaceTextureListener(new TextureView.SurfaceTextureListener() {
       @Override
       public void onSurfaceTextureAvailable(SurfaceTexture surface, int width, int height) {
         Log.d(TAG, "onSurfaceTextureAvailable...w=" + width + ", h=" + height + ", surface=" + surface);
@@ -84,6 +274,7 @@ public class MediaPlayerController {
           return;
         }
         setSurfaceTexture(surface);
+        updateVideoTransform();
       }
 
       @Override
@@ -101,16 +292,207 @@ public class MediaPlayerController {
       public void onSurfaceTextureUpdated(SurfaceTexture surface) {
       }
     });
-    this.aspectRatioFrameLayout.addView(textureView, new FrameLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+    return textureView;
+  }
+
+  private SurfaceView createSurfaceView() {
+    SurfaceView surfaceView = new SurfaceView(aspectRatioFrameLayout.getContext());
+    surfaceView.getHolder().addCallback(new SurfaceHolder.Callback() {
+      @Override
+      public void surfaceCreated(SurfaceHolder holder) {
+        Log.d(TAG, "surfaceCreated...");
+        surfaceViewReady = true;
+        if (!audioOnly) {
+          setSurface(holder.getSurface());
+        }
+      }
+
+      @Override
+      public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+        Log.d(TAG, "surfaceChanged...w=" + width + ", h=" + height);
+      }
+
+      @Override
+      public void surfaceDestroyed(SurfaceHolder holder) {
+        Log.d(TAG, "surfaceDestroyed...");
+        surfaceViewReady = false;
+        // Blocks until the renderer has let go of the surface, which is invalid once this returns.
+        setSurface(null);
+      }
+    });
+    return surfaceView;
   }
 
   public void setContentUri(String uri) {
     if(uri != null && uri.equals(this.uri))
       return;
     this.uri = uri;
+    mainHandler.removeCallbacks(recovery);
+    recovering = false;
+    errorRecoveryPolicy.reset();
+    viewport.setMaxPixels(Long.MAX_VALUE);
     resetPlayerForReuse();
   }
 
+  /**
+   * Sets the equivalent origins requests may be sent to instead of the source's own, applied from
+   * the next source on.
+   *
+   * @param originSet The origins, or null to only use the source's.
+   */
+  public void setOrigins(OriginSet originSet) {
+    this.originSet = originSet;
+  }
+
+  /**
+   * Sets the pipeline used for sources, applied from the next source on.
+   *
+   * @param contentType {@link #CONTENT_TYPE_AUTO} or one of the {@code Util.TYPE_*} constants.
+   */
+  public void setContentType(int contentType) {
+    this.contentType = contentType;
+  }
+
+  /**
+   * Sets the container progressive sources are expected in, e.g. "mp4", so that its extractor is
+   * tried first; applied from the next source on.
+   *
+   * @param container The container, or null to go by the file extension.
+   */
+  public void setContainer(String container) {
+    this.container = container;
+  }
+
+  /**
+   * Sets the license server used for protected content, applied from the next source on.
+   */
+  public void setDrmConfiguration(DrmConfiguration drmConfiguration) {
+    drmCallback.setConfiguration(drmConfiguration);
+  }
+
+  /**
+   * Renders cues from a sideloaded WebVTT, SubRip or TTML file instead of the in-stream text track.
+   *
+   * @param uri  The subtitle file, or null to go back to in-stream text.
+   * @param type One of "vtt", "srt" or "ttml", or null to infer it from the uri.
+   */
+  public void setSubtitles(String uri, String type) {
+    if (uri == null ? subtitleUri == null : uri.equals(subtitleUri)) {
+      return;
+    }
+    subtitleUri = uri;
+    if (subtitleLoader != null) {
+      subtitleLoader.cancel();
+      subtitleLoader = null;
+    }
+    if (subtitleTracker.isActive()) {
+      subtitleTracker.setIndex(null);
+      notifyCues(Collections.<Cue>emptyList());
+    }
+    if (uri == null) {
+      return;
+    }
+    subtitleLoader = new SubtitleLoader(context, Util.getUserAgent(context, "react-native-media-kit"), uri, type, mainHandler);
+    subtitleLoader.load(new SubtitleLoader.Callback() {
+      @Override
+      public void onLoaded(SubtitleCueIndex index) {
+        subtitleLoader = null;
+        notifyCues(Collections.<Cue>emptyList());
+        subtitleTracker.setIndex(index);
+      }
+
+      @Override
+      public void onError(Exception e) {
+        // Playback goes on with in-stream text, if any.
+        Log.w(TAG, "setSubtitles...failed to load " + subtitleUri, e);
+        subtitleLoader = null;
+        notifySubtitleError(e);
+      }
+    });
+  }
+
+  /**
+   * @param coalesceWindowMs Metadata frames arriving within this window are delivered together.
+   * @param frameIds         The ID3 frame ids to deliver, or null for all.
+   */
+  public void setMetadataOptions(long coalesceWindowMs, Set<String> frameIds) {
+    metadataEventFilter.setOptions(coalesceWindowMs, frameIds);
+  }
+
+  /**
+   * Plays audio only: the video renderer is disabled, which stops video segment loading for DASH
+   * and SmoothStreaming, and the surface is released. HLS muxes video into the same segments, so an
+   * HLS source whose master playlist has audio-only variants is rebuilt from the current position
+   * to stream those, both when entering and when leaving the mode; other HLS sources only stop
+   * decoding video. Every other case switches in place.
+   */
+  public void setAudioOnly(boolean audioOnly) {
+    if (this.audioOnly == audioOnly) {
+      return;
+    }
+    Log.d(TAG, "setAudioOnly..." + audioOnly);
+    this.audioOnly = audioOnly;
+    if (trackRenderersBuilder == null || videoTrackRenderer == null) {
+      // Applied when the renderers are built.
+      return;
+    }
+    if (audioOnly && hlsRenderersBuilder != null && hlsRenderersBuilder.hasAudioOnlyVariants()) {
+      rebuildAtCurrentPosition();
+    } else if (audioOnly) {
+      exoPlayer.setSelectedTrack(TrackRenderersBuilder.TRACK_VIDEO_INDEX, ExoPlayer.TRACK_DISABLED);
+      setSurface(null);
+    } else if (hasVideoRenderer) {
+      exoPlayer.setSelectedTrack(TrackRenderersBuilder.TRACK_VIDEO_INDEX, ExoPlayer.TRACK_DEFAULT);
+      Surface surface = getOutputSurface();
+      if (surface != null) {
+        setSurface(surface);
+      }
+    } else {
+      rebuildAtCurrentPosition();
+    }
+  }
+
+  private void rebuildAtCurrentPosition() {
+    long position = exoPlayer.getCurrentPosition();
+    resetPlayerForReuse();
+    startPositionMs = position;
+    renderTracks(uri);
+  }
+
+  /**
+   * Sets the position the current source is prepared at, so that loading starts there instead of
+   * at 0. Ignored once the source has been prepared; use {@link #seekTo(long)} then.
+   */
+  public void setStartPosition(long positionMs) {
+    if (videoTrackRenderer != null) {
+      return;
+    }
+    startPositionMs = positionMs;
+  }
+
+  /**
+   * @param scale How far above the displayed pixel size adaptive streams may go; 0 removes the cap.
+   */
+  public void setResolutionScale(float scale) {
+    viewport.setScale(scale);
+  }
+
+  /**
+   * Lets {@link QualityGovernor} lower the resolution, frame rate and buffer of adaptive streams
+   * while the device is hot, low on battery or dropping frames. Disabling restores full quality.
+   */
+  public void setQualityGovernorEnabled(boolean enabled) {
+    qualityGovernor.setEnabled(enabled);
+  }
+
+  /**
+   * Keeps up to {@code durationMs} of already played media, within {@code maxBytes}, so that
+   * seeking back inside that window or looping does not download it again. 0 disables it.
+   */
+  public void setBackBuffer(long durationMs, long maxBytes) {
+    backBuffer.setRetention(durationMs, maxBytes);
+  }
+
   public void setMuted(boolean muted) {
     this.muted = muted;
     if(audioTrackRenderer != null) {
@@ -129,12 +511,25 @@ public class MediaPlayerController {
   }
 
   private void resetPlayerForReuse() {
+    stopRenderers();
+    this.metadataEventFilter.reset();
+    this.backBuffer.clear();
+    PrefetchCache.discardAll(prefetchScope);
+    this.prefetchScope = new Object();
+  }
+
+  private void stopRenderers() {
     this.exoPlayer.stop();
     this.exoPlayer.seekTo(0);
+    this.startPositionMs = 0;
+    this.bitrate = -1;
     if (this.trackRenderersBuilder != null) {
       this.trackRenderersBuilder.cancel();
       this.trackRenderersBuilder = null;
     }
+    this.hlsRenderersBuilder = null;
+    this.videoTrackRenderer = null;
+    this.audioTrackRenderer = null;
   }
 
   private void renderTracks(String uri) {
@@ -143,6 +538,7 @@ public class MediaPlayerController {
       @Override
       public void onFinish(TrackRenderer[] trackRenderers) {
         Log.d(TAG, "renderTracks...track renderers built");
+        hasVideoRenderer = trackRenderers[TrackRenderersBuilder.TRACK_VIDEO_INDEX] != null;
         for (int i = 0; i < TrackRenderersBuilder.TRACK_RENDER_COUNT; i++) {
           if (trackRenderers[i] == null) {
             // Convert a null renderer to a dummy renderer.
@@ -151,10 +547,19 @@ public class MediaPlayerController {
         }
         videoTrackRenderer = trackRenderers[TrackRenderersBuilder.TRACK_VIDEO_INDEX];
         audioTrackRenderer = trackRenderers[TrackRenderersBuilder.TRACK_AUDIO_INDEX];
+        exoPlayer.setSelectedTrack(TrackRenderersBuilder.TRACK_VIDEO_INDEX, audioOnly ? ExoPlayer.TRACK_DISABLED : ExoPlayer.TRACK_DEFAULT);
+        if (startPositionMs > 0) {
+          // Seeking while idle moves the position the renderers are enabled at, so the first
+          // chunks requested are the ones at the start position.
+          Log.d(TAG, "renderTracks...start at " + startPositionMs);
+          exoPlayer.seekTo(startPositionMs);
+          startPositionMs = 0;
+        }
         exoPlayer.prepare(trackRenderers);
 
-        if (surfaceTexture != null) {
-          setSurface(new Surface(surfaceTexture));
+        Surface surface = getOutputSurface();
+        if (surface != null && !audioOnly) {
+          setSurface(surface);
         }
 
         if (muted) {
@@ -165,25 +570,42 @@ public class MediaPlayerController {
       @Override
       public void onError(Exception e) {
         Log.e(TAG, "renderTracks...failed to build track renderers", e);
-        notifyError(e);
+        handleError(e);
       }
     });
   }
 
   private TrackRenderersBuilder createTrackRenderersBuilder(Context context, String uriString) {
+    if (contentType != CONTENT_TYPE_AUTO) {
+      return createTrackRenderersBuilder(context, uriString, contentType);
+    }
+    Uri uri = Uri.parse(uriString);
+    int inferredType = Util.inferContentType(uri.getLastPathSegment());
+    if (inferredType == Util.TYPE_OTHER && ContentTypeSniffer.needsSniffing(uri)) {
+      Integer sniffedType = ContentTypeSniffer.getCached(uri);
+      if (sniffedType == null) {
+        return new SniffingRenderersBuilder(uriString);
+      }
+      inferredType = sniffedType;
+    }
+    return createTrackRenderersBuilder(context, uriString, inferredType);
+  }
+
+  private TrackRenderersBuilder createTrackRenderersBuilder(Context context, String uriString, int contentType) {
     final Uri uri = Uri.parse(uriString);
-    final int contentType = Util.inferContentType(uri.getLastPathSegment());
     final String userAgent = Util.getUserAgent(context, "react-native-media-kit");
+    final Handler buildHandler = PrepareThread.getHandler();
 
     switch (contentType) {
       case Util.TYPE_DASH:
-        return new DashRenderersBuilder(context, userAgent, uriString, mainHandler, mediaDrmCallback, internalEventListener, internalEventListener, internalEventListener, bandwidthMeterListener, exoPlayer.getPlaybackLooper());
+        return new DashRenderersBuilder(context, userAgent, uriString, mainHandler, buildHandler, drmSessionManagerProvider, internalEventListener, internalEventListener, internalEventListener, internalEventListener, bandwidthMeterListener, viewport, backBuffer, originSet, bufferLimit, allocator, prefetchScope);
       case Util.TYPE_HLS:
-        return new HlsRenderersBuilder(context, userAgent, uriString, mainHandler, internalEventListener, internalEventListener, internalEventListener, internalEventListener, bandwidthMeterListener);
+        hlsRenderersBuilder = new HlsRenderersBuilder(context, userAgent, uriString, mainHandler, buildHandler, internalEventListener, internalEventListener, internalEventListener, internalEventListener, internalEventListener, bandwidthMeterListener, viewport, backBuffer, originSet, bufferLimit, audioOnly, allocator, prefetchScope, startPositionMs);
+        return hlsRenderersBuilder;
       case Util.TYPE_SS:
-        return new SmoothStreamingRenderersBuilder(context, userAgent, uriString, mainHandler, mediaDrmCallback, internalEventListener, internalEventListener, internalEventListener, bandwidthMeterListener, exoPlayer.getPlaybackLooper());
+        return new SmoothStreamingRenderersBuilder(context, userAgent, uriString, mainHandler, buildHandler, drmSessionManagerProvider, internalEventListener, internalEventListener, internalEventListener, internalEventListener, bandwidthMeterListener, viewport, backBuffer, originSet, bufferLimit, allocator);
       case Util.TYPE_OTHER:
-        return new ExtractorRenderersBuilder(context, userAgent, uri, mainHandler, internalEventListener, internalEventListener, internalEventListener, bandwidthMeterListener);
+        return new ExtractorRenderersBuilder(context, userAgent, uri, mainHandler, buildHandler, internalEventListener, internalEventListener, internalEventListener, internalEventListener, bandwidthMeterListener, backBuffer, originSet, container, allocator);
       default:
         throw new IllegalStateException("Unsupported content type: " + contentType);
     }
@@ -221,6 +643,8 @@ public class MediaPlayerController {
   public void seekTo(long positionMs) {
     Log.d(TAG, "seekTo..." + positionMs);
     exoPlayer.seekTo(positionMs);
+    subtitleTracker.update();
+    publishPlaybackSnapshot();
   }
 
   public void stop() {
@@ -240,16 +664,44 @@ public class MediaPlayerController {
     return exoPlayer.getBufferedPosition();
   }
 
+  /**
+   * Returns the latest snapshot. Safe to call from any thread; the snapshot is refreshed on every
+   * state change, seek and format change, every 500ms while playing or buffering to play, and when
+   * a chunk of a DASH, SmoothStreaming or HLS source finishes loading. Progressive sources report no
+   * loads, so while paused their buffered position is only as fresh as the last of the other events.
+   */
+  public PlaybackSnapshot getPlaybackSnapshot() {
+    return playbackSnapshot;
+  }
+
+  private void publishPlaybackSnapshot() {
+    playbackSnapshot = new PlaybackSnapshot(exoPlayer.getPlaybackState(), exoPlayer.getPlayWhenReady(),
+      exoPlayer.getCurrentPosition(), exoPlayer.getDuration(), exoPlayer.getBufferedPosition(),
+      bitrate, videoWidth, videoHeight, SystemClock.elapsedRealtime());
+  }
+
   public void release() {
+    mainHandler.removeCallbacks(progressTicker);
+    mainHandler.removeCallbacks(recovery);
+    metadataEventFilter.reset();
+    if (subtitleLoader != null) {
+      subtitleLoader.cancel();
+      subtitleLoader = null;
+    }
+    subtitleTracker.setIndex(null);
     if (trackRenderersBuilder != null) {
       trackRenderersBuilder.cancel();
       trackRenderersBuilder = null;
     }
+    hlsRenderersBuilder = null;
+    PrefetchCache.discardAll(prefetchScope);
     if (surfaceTexture != null) {
       surfaceTexture.release();
       surfaceTexture = null;
     }
     exoPlayer.release();
+    // The renderers have closed their DRM sessions by the time release returns.
+    drmSessionManagerProvider.release();
   }
 
   private void setSurface(Surface surface) {
@@ -264,15 +716,144 @@ public class MediaPlayerController {
     }
   }
 
+  /**
+   * Switches between {@link #RENDER_TARGET_TEXTURE_VIEW} and {@link #RENDER_TARGET_SURFACE_VIEW}.
+   * Playback goes on; the video decoder is reconfigured for the new surface.
+   */
+  public void setRenderTarget(int renderTarget) {
+    if (this.renderTarget == renderTarget) {
+      return;
+    }
+    Log.d(TAG, "setRenderTarget..." + renderTarget);
+    this.renderTarget = renderTarget;
+    setSurface(null);
+    if (renderTarget == RENDER_TARGET_SURFACE_VIEW) {
+      aspectRatioFrameLayout.removeView(textureView);
+      textureView = null;
+      if (surfaceTexture != null) {
+        surfaceTexture.release();
+        surfaceTexture = null;
+      }
+      surfaceView = createSurfaceView();
+      aspectRatioFrameLayout.addView(surfaceView, new FrameLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+      updateVideoTransform();
+    } else {
+      // Removing the view destroys its surface, which detaches it from the renderer.
+      aspectRatioFrameLayout.removeView(surfaceView);
+      surfaceView = null;
+      textureView = createTextureView();
+      aspectRatioFrameLayout.addView(textureView, new FrameLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+      updateVideoTransform();
+    }
+  }
+
+  /**
+   * Sets how video is fitted into the view. A {@link SurfaceView} cannot be transformed, so with
+   * {@link #RENDER_TARGET_SURFACE_VIEW} only {@link #RESIZE_MODE_CONTAIN} and
+   * {@link #RESIZE_MODE_STRETCH} apply, through the frame's aspect ratio; other modes behave like
+   * contain.
+   */
+  public void setResizeMode(int resizeMode) {
+    if (this.resizeMode == resizeMode) {
+      return;
+    }
+    this.resizeMode = resizeMode;
+    updateVideoTransform();
+  }
+
+  /**
+   * Fits the video into the view. A {@link TextureView} fills the frame and the fit is done with its
+   * transform matrix, which only invalidates the view, so resolution switches cause no layout; the
+   * matrix also applies the rotation older platforms leave to the app. A {@link SurfaceView} can
+   * only be fitted by resizing the frame, which lays out again when the aspect ratio changes.
+   */
+  private void updateVideoTransform() {
+    if (surfaceView != null) {
+      boolean stretch = resizeMode == RESIZE_MODE_STRETCH || videoHeight == 0;
+      aspectRatioFrameLayout.setAspectRatio(stretch ? 0 : (videoWidth * videoPixelRatio) / videoHeight);
+      return;
+    }
+    aspectRatioFrameLayout.setAspectRatio(0);
+    int viewWidth = textureView.getWidth();
+    int viewHeight = textureView.getHeight();
+    videoTransform.reset();
+    if (viewWidth == 0 || viewHeight == 0 || videoWidth == 0 || videoHeight == 0) {
+      // Whatever the video turns out to be, it is not shown larger than the view until it is known.
+      viewport.setSize(viewWidth, viewHeight);
+      textureView.setTransform(videoTransform);
+      return;
+    }
+    boolean quarterTurn = videoRotationDegrees % 180 != 0;
+    // The size of the video as shown, after rotation.
+    float contentWidth = quarterTurn ? videoHeight : videoWidth * videoPixelRatio;
+    float contentHeight = quarterTurn ? videoWidth * videoPixelRatio : videoHeight;
+    float width;
+    float height;
+    switch (resizeMode) {
+      case RESIZE_MODE_STRETCH:
+        width = viewWidth;
+        height = viewHeight;
+        break;
+      case RESIZE_MODE_NONE:
+        width = contentWidth;
+        height = contentHeight;
+        break;
+      case RESIZE_MODE_COVER:
+      case RESIZE_MODE_CONTAIN:
+      default:
+        float scaleX = viewWidth / contentWidth;
+        float scaleY = viewHeight / contentHeight;
+        float scale = resizeMode == RESIZE_MODE_COVER ? Math.max(scaleX, scaleY) : Math.min(scaleX, scaleY);
+        width = contentWidth * scale;
+        height = contentHeight * scale;
+        break;
+    }
+    // The texture is stretched to the view to begin with; scale it to the unrotated box and rotate
+    // it into place around the center.
+    float centerX = viewWidth / 2f;
+    float centerY = viewHeight / 2f;
+    videoTransform.setScale((quarterTurn ? height : width) / viewWidth, (quarterTurn ? width : height) / viewHeight, centerX, centerY);
+    videoTransform.postRotate(videoRotationDegrees, centerX, centerY);
+    textureView.setTransform(videoTransform);
+    // The size video is shown at, in the unrotated orientation formats are described in. Cover
+    // crops a box larger than the view, which still needs the resolution of the whole box. Without
+    // resizing, each format is shown at its own size, so only the view bounds what is visible.
+    if (resizeMode == RESIZE_MODE_NONE) {
+      viewport.setSize(quarterTurn ? viewHeight : viewWidth, quarterTurn ? viewWidth : viewHeight);
+    } else {
+      viewport.setSize(Math.round(quarterTurn ? height : width), Math.round(quarterTurn ? width : height));
+    }
+  }
+
+  /**
+   * @return The surface of the current render target, or null if it has none yet.
+   */
+  private Surface getOutputSurface() {
+    if (surfaceView != null) {
+      return surfaceViewReady ? surfaceView.getHolder().getSurface() : null;
+    }
+    return surfaceTexture == null ? null : new Surface(surfaceTexture);
+  }
+
   public void setSurfaceTexture(SurfaceTexture surfaceTexture) {
     this.surfaceTexture = surfaceTexture;
-    setSurface(surfaceTexture == null ? null : new Surface(surfaceTexture));
+    if (surfaceTexture == null || !audioOnly) {
+      setSurface(surfaceTexture == null ? null : new Surface(surfaceTexture));
+    }
   }
 
   public final View getView() {
     return aspectRatioFrameLayout;
   }
 
+  /**
+   * The listener the player and renderers report to, so that benchmarks can raise events without
+   * playing anything. Package-private for the benchmarks under src/test.
+   */
+  InternalEventListener getInternalEventListener() {
+    return internalEventListener;
+  }
+
   public void addEventListener(EventListener listener) {
     synchronized (eventListeners) {
       eventListeners.add(listener);
@@ -290,7 +871,62 @@ public class MediaPlayerController {
 
 
 
-  private class InternalEventListener implements MediaCodecVideoTrackRenderer.EventListener, MediaCodecAudioTrackRenderer.EventListener, TextRenderer, ExoPlayer.Listener, MetadataTrackRenderer.MetadataRenderer<List<Id3Frame>> {
+  /**
+   * Sniffs the content type of a uri whose path does not tell, on a sniffer thread rather than the
+   * shared {@link PrepareThread}, then builds with the pipeline for that type. A sniff that fails in
+   * any way falls back to the extractor pipeline.
+   */
+  private class SniffingRenderersBuilder implements TrackRenderersBuilder {
+    private final String uri;
+    private TrackRenderersBuilder delegate;
+    private volatile boolean cancelled;
+
+    SniffingRenderersBuilder(String uri) {
+      this.uri = uri;
+    }
+
+    @Override
+    public void build(final Callback callback) {
+      ContentTypeSniffer.execute(new Runnable() {
+        @Override
+        public void run() {
+          if (cancelled) {
+            return;
+          }
+          int sniffedType;
+          try {
+            sniffedType = ContentTypeSniffer.sniff(Uri.parse(uri), Util.getUserAgent(context, "react-native-media-kit"));
+          } catch (IOException | RuntimeException e) {
+            // Let the extractor pipeline report the failure.
+            Log.w(TAG, "sniff...failed for " + uri, e);
+            sniffedType = Util.TYPE_OTHER;
+          }
+          final int type = sniffedType;
+          mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+              if (cancelled) {
+                return;
+              }
+              delegate = createTrackRenderersBuilder(context, uri, type);
+              delegate.build(callback);
+            }
+          });
+        }
+      });
+    }
+
+    @Override
+    public void cancel() {
+      cancelled = true;
+      if (delegate != null) {
+        delegate.cancel();
+      }
+    }
+  }
+
+  class InternalEventListener implements MediaCodecVideoTrackRenderer.EventListener, MediaCodecAudioTrackRenderer.EventListener, TextRenderer, ExoPlayer.Listener, MetadataTrackRenderer.MetadataRenderer<List<Id3Frame>>,
+    ChunkSampleSource.EventListener, HlsSampleSource.EventListener {
 
     @Override
     public void onAudioTrackInitializationError(AudioTrack.InitializationException e) {
@@ -299,7 +935,7 @@ public class MediaPlayerController {
 
     @Override
     public void onAudioTrackWriteError(AudioTrack.WriteException e) {
-      notifyError(e);
+      handleError(e);
     }
 
     @Override
@@ -310,6 +946,7 @@ public class MediaPlayerController {
     @Override
     public void onDroppedFrames(int count, long elapsed) {
       Log.d(TAG, "onDroppedFrames...count=" + count + ", elapsed=" + elapsed);
+      qualityGovernor.onDroppedFrames(count, elapsed, SystemClock.elapsedRealtime());
     }
 
     @Override
@@ -325,12 +962,12 @@ public class MediaPlayerController {
 
     @Override
     public void onDecoderInitializationError(MediaCodecTrackRenderer.DecoderInitializationException e) {
-      notifyError(e);
+      handleError(e);
     }
 
     @Override
     public void onCryptoError(MediaCodec.CryptoException e) {
-      notifyError(e);
+      handleError(e);
     }
 
     @Override
@@ -340,7 +977,9 @@ public class MediaPlayerController {
 
     @Override
     public void onCues(List<Cue> cues) {
-      notifyCues(cues);
+      if (!subtitleTracker.isActive()) {
+        notifyCues(cues);
+      }
     }
 
     @Override
@@ -355,12 +994,124 @@ public class MediaPlayerController {
 
     @Override
     public void onPlayerError(ExoPlaybackException error) {
-      notifyError(error);
+      handleError(error);
     }
 
     @Override
     public void onMetadata(List<Id3Frame> metadata) {
+      metadataEventFilter.onMetadata(metadata);
+    }
+
+    @Override
+    public void onLoadStarted(int sourceId, long length, int type, int trigger, Format format, long mediaStartTimeMs, long mediaEndTimeMs) {
+
+    }
+
+    @Override
+    public void onLoadCompleted(int sourceId, long bytesLoaded, int type, int trigger, Format format, long mediaStartTimeMs, long mediaEndTimeMs, long elapsedRealtimeMs, long loadDurationMs) {
+      // The buffered position moved; the ticks do not run while paused.
+      if (!needsProgressTicks(playbackSnapshot)) {
+        publishPlaybackSnapshot();
+      }
+    }
+
+    @Override
+    public void onLoadCanceled(int sourceId, long bytesLoaded) {
+
+    }
+
+    @Override
+    public void onLoadError(int sourceId, IOException e) {
+
+    }
+
+    @Override
+    public void onUpstreamDiscarded(int sourceId, long mediaStartTimeMs, long mediaEndTimeMs) {
+
+    }
+
+    @Override
+    public void onDownstreamFormatChanged(int sourceId, Format format, int trigger, long mediaTimeMs) {
+      // HLS reports its muxed variants on the video source id too.
+      if (sourceId == TrackRenderersBuilder.TRACK_VIDEO_INDEX && format != null) {
+        bitrate = format.bitrate;
+        publishPlaybackSnapshot();
+      }
+    }
+  }
+
+  /**
+   * Prepares the source again from where it failed if {@link ErrorRecoveryPolicy} allows another
+   * attempt, and reports the error as final otherwise.
+   */
+  private void handleError(Exception e) {
+    if (recovering) {
+      // A renderer and the player often both report the same failure.
+      Log.d(TAG, "handleError...already recovering, ignoring " + e);
+      return;
+    }
+    int category = ErrorRecoveryPolicy.classify(e);
+    long positionMs;
+    if (category == ErrorRecoveryPolicy.CATEGORY_BEHIND_LIVE_WINDOW) {
+      // Prepared at 0, a live stream starts from the live edge.
+      positionMs = 0;
+    } else {
+      positionMs = videoTrackRenderer == null ? startPositionMs : exoPlayer.getCurrentPosition();
+    }
+    // Where the live edge will be is not known until playback resumes there.
+    long policyPositionMs = category == ErrorRecoveryPolicy.CATEGORY_BEHIND_LIVE_WINDOW
+      ? ErrorRecoveryPolicy.UNKNOWN_POSITION : positionMs;
+    long delayMs = uri == null ? ErrorRecoveryPolicy.NO_RETRY : errorRecoveryPolicy.onError(category, policyPositionMs);
+    String categoryName = ErrorRecoveryPolicy.describe(category);
+    if (delayMs == ErrorRecoveryPolicy.NO_RETRY) {
+      Log.e(TAG, "handleError...giving up, category=" + categoryName + ", attempts=" + errorRecoveryPolicy.getAttempt(), e);
+      notifyError(e);
+      return;
+    }
+
+    int attempt = errorRecoveryPolicy.getAttempt();
+    Log.w(TAG, "handleError...category=" + categoryName + ", attempt=" + attempt + ", delay=" + delayMs + ", position=" + positionMs, e);
+    if (errorRecoveryPolicy.shouldLowerResolution() && videoWidth > 0 && videoHeight > 0) {
+      // The decoder keeps failing at this size; adaptive streams retry with a smaller variant.
+      viewport.setMaxPixels((long) videoWidth * videoHeight / 2);
+    }
+    recovering = true;
+    recoveryPositionMs = positionMs;
+    notifyRecovering(e, categoryName, attempt, delayMs);
+    mainHandler.postDelayed(recovery, delayMs);
+  }
+
+  private void applyQualityLevel(int level, String reason) {
+    long maxPixels = QualityGovernor.getMaxPixels(level);
+    float maxFrameRate = QualityGovernor.getMaxFrameRate(level);
+    long maxBufferMs = QualityGovernor.getMaxBufferMs(level);
+    // Adaptive streams switch from the next chunk on; loading resumes or holds back at the next update.
+    viewport.setQualityCap(maxPixels, maxFrameRate);
+    bufferLimit.setMaxBufferMs(maxBufferMs);
+    notifyQualityChanged(QualityGovernor.describe(level), reason, maxPixels, maxFrameRate, maxBufferMs);
+  }
+
+  private void notifyQualityChanged(String level, String reason, long maxPixels, float maxFrameRate, long maxBufferMs) {
+    synchronized (eventListeners) {
+      for (EventListener listener : eventListeners) {
+        listener.onQualityChanged(level, reason, maxPixels, maxFrameRate, maxBufferMs);
+      }
+    }
+  }
 
+  private void notifySubtitleError(Exception e) {
+    synchronized (eventListeners) {
+      for (EventListener listener : eventListeners) {
+        listener.onSubtitleError(e);
+      }
+    }
+  }
+
+  private void notifyRecovering(Exception e, String category, int attempt, long retryDelayMs) {
+    synchronized (eventListeners) {
+      for (EventListener listener : eventListeners) {
+        listener.onRecovering(e, category, attempt, retryDelayMs);
+      }
     }
   }
 
@@ -375,7 +1126,14 @@ public class MediaPlayerController {
   private void notifyVideoSizeChanged(int width, int height, int unappliedRotationDegrees, float pixelWidthHeightRatio) {
     Log.d(TAG, "videoSize...w=" + width + ", h=" + height);
 
-    aspectRatioFrameLayout.setAspectRatio(height == 0 ? 0 : (width * pixelWidthHeightRatio) / height);
+    if (width != videoWidth || height != videoHeight || unappliedRotationDegrees != videoRotationDegrees || pixelWidthHeightRatio != videoPixelRatio) {
+      videoWidth = width;
+      videoHeight = height;
+      videoRotationDegrees = unappliedRotationDegrees;
+      videoPixelRatio = pixelWidthHeightRatio;
+      updateVideoTransform();
+      publishPlaybackSnapshot();
+    }
 
     synchronized (eventListeners) {
       for (EventListener listener : eventListeners) {
@@ -393,6 +1151,12 @@ public class MediaPlayerController {
     } else {
       ended = false;
     }
+    subtitleTracker.update();
+    publishPlaybackSnapshot();
+    mainHandler.removeCallbacks(progressTicker);
+    if (needsProgressTicks(playbackSnapshot)) {
+      mainHandler.postDelayed(progressTicker, PROGRESS_INTERVAL_MS);
+    }
     synchronized (eventListeners) {
       for (EventListener listener : eventListeners) {
         listener.onPlayerStateChanged(playWhenReady, playbackState);
@@ -400,18 +1164,67 @@ public class MediaPlayerController {
     }
   }
 
+  private void notifyPlaybackProgress(PlaybackSnapshot snapshot) {
+    synchronized (eventListeners) {
+      for (EventListener listener : eventListeners) {
+        listener.onPlaybackProgress(snapshot);
+      }
+    }
+  }
+
+  private void notifyMetadata(List<Id3Frame> metadata) {
+    synchronized (eventListeners) {
+      for (EventListener listener : eventListeners) {
+        listener.onMetadata(metadata);
+      }
+    }
+  }
+
   private void notifyCues(List<Cue> cues) {
+    CueChange change = cueDiffer.update(cues);
+    if (change == null) {
+      return;
+    }
     synchronized (eventListeners) {
       for (EventListener listener : eventListeners) {
         listener.onCues(cues);
+        listener.onCuesChanged(change);
       }
     }
   }
 
 
   public interface EventListener {
+    /**
+     * Invoked when playback failed and will not be retried.
+     */
     void onError(Exception e);
 
+    /**
+     * Invoked when playback failed and the source is prepared again after {@code retryDelayMs},
+     * from the position it failed at.
+     *
+     * @param category One of "network", "decoder", "drm", "behindLiveWindow" or "audioOutput".
+     * @param attempt  The number of consecutive attempts for this category, starting at 1.
+     */
+    void onRecovering(Exception e, String category, int attempt, long retryDelayMs);
+
+    /**
+     * Invoked when a sideloaded subtitle file could not be loaded or parsed. Playback goes on.
+     */
+    void onSubtitleError(Exception e);
+
+    /**
+     * Invoked when the quality governor lowers or restores quality.
+     *
+     * @param level        One of "full", "reduced", "low" or "minimum".
+     * @param reason       One of "thermal", "battery", "droppedFrames", "recovered" or "disabled".
+     * @param maxPixels    The largest video size allowed, or {@link Long#MAX_VALUE}.
+     * @param maxFrameRate The highest frame rate allowed, or {@link Float#MAX_VALUE}.
+     * @param maxBufferMs  How far ahead media is loaded at most, or {@link BufferLimit#NO_LIMIT}.
+     */
+    void onQualityChanged(String level, String reason, long maxPixels, float maxFrameRate, long maxBufferMs);
+
     /**
      * Invoked each time there's a change in the size of the video being rendered.
      *
@@ -432,6 +1245,13 @@ public class MediaPlayerController {
 
     void onPlayerStateChanged(boolean playWhenReady, int playbackState);
 
+    /**
+     * Invoked every 500ms while playing.
+     *
+     * @param snapshot The snapshot just published, also returned by {@link #getPlaybackSnapshot()}.
+     */
+    void onPlaybackProgress(PlaybackSnapshot snapshot);
+
     /**
      * Invoked each time there is a change in the {@link Cue}s to be rendered.
      *
@@ -440,9 +1260,16 @@ public class MediaPlayerController {
     void onCues(List<Cue> cues);
 
     /**
-     * Invoked each time there is a metadata associated with current playback time.
+     * Invoked along with {@link #onCues(List)} with the cues that appeared and disappeared since
+     * the previous call.
+     */
+    void onCuesChanged(CueChange change);
+
+    /**
+     * Invoked with the timed metadata frames reached by playback, after de-duplication, frame id
+     * filtering and coalescing.
      *
-     * @param metadata
+     * @param metadata The frames, in arrival order.
      */
     void onMetadata(List<Id3Frame> metadata);
   }
@@ -454,6 +1281,21 @@ public class MediaPlayerController {
 
     }
 
+    @Override
+    public void onRecovering(Exception e, String category, int attempt, long retryDelayMs) {
+
+    }
+
+    @Override
+    public void onSubtitleError(Exception e) {
+
+    }
+
+    @Override
+    public void onQualityChanged(String level, String reason, long maxPixels, float maxFrameRate, long maxBufferMs) {
+
+    }
+
     @Override
     public void onVideoSizeChanged(int width, int height, int unappliedRotationDegrees, float pixelWidthHeightRatio) {
 
@@ -465,27 +1307,25 @@ public class MediaPlayerController {
     }
 
     @Override
-    public void onCues(List<Cue> cues) {
+    public void onPlaybackProgress(PlaybackSnapshot snapshot) {
 
     }
 
     @Override
-    public void onMetadata(List<Id3Frame> metadata) {
+    public void onCues(List<Cue> cues) {
 
     }
-  }
 
-  private final MediaDrmCallback mediaDrmCallback = new MediaDrmCallback() {
     @Override
-    public byte[] executeProvisionRequest(UUID uuid, MediaDrm.ProvisionRequest request) throws Exception {
-      return new byte[0];
+    public void onCuesChanged(CueChange change) {
+
     }
 
     @Override
-    public byte[] executeKeyRequest(UUID uuid, MediaDrm.KeyRequest request) throws Exception {
-      return new byte[0];
+    public void onMetadata(List<Id3Frame> metadata) {
+
     }
-  };
+  }
 
   private final BandwidthMeter.EventListener bandwidthMeterListener = new BandwidthMeter.EventListener() {
     @Override
@@ -0,0 +1,35 @@
+package com.greatdroid.reactnative.media.player;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The attached player views by React tag, so that native modules can address them directly. Safe
+ * to read from any thread; views register on the main thread.
+ */
+public final class MediaPlayerViewRegistry {
+  private static final ConcurrentHashMap<Integer, ReactMediaPlayerView> views = new ConcurrentHashMap<>();
+
+  private MediaPlayerViewRegistry() {
+  }
+
+  static void register(ReactMediaPlayerView view) {
+    views.put(view.getId(), view);
+  }
+
+  static void unregister(ReactMediaPlayerView view) {
+    views.remove(view.getId(), view);
+  }
+
+  /**
+   * @return The view, or null if no player view with this tag is attached.
+   */
+  public static ReactMediaPlayerView get(int tag) {
+    return views.get(tag);
+  }
+
+  public static List<ReactMediaPlayerView> getAll() {
+    return new ArrayList<>(views.values());
+  }
+}
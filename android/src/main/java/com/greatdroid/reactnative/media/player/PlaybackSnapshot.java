@@ -0,0 +1,60 @@
+package com.greatdroid.reactnative.media.player;
+
+import com.google.android.exoplayer.ExoPlayer;
+
+/**
+ * An immutable view of a player at one instant: the values are read together on the main thread,
+ * so they are consistent with each other, and the snapshot is published through a volatile field,
+ * so any thread can read the latest one without locks.
+ */
+public final class PlaybackSnapshot {
+  public static final PlaybackSnapshot IDLE = new PlaybackSnapshot(ExoPlayer.STATE_IDLE, false,
+    0, ExoPlayer.UNKNOWN_TIME, 0, -1, 0, 0, 0);
+
+  /**
+   * One of the {@code ExoPlayer.STATE_*} constants.
+   */
+  public final int playbackState;
+  public final boolean playWhenReady;
+  public final long positionMs;
+  /**
+   * The duration, or {@link ExoPlayer#UNKNOWN_TIME}.
+   */
+  public final long durationMs;
+  public final long bufferedPositionMs;
+  /**
+   * The bitrate of the video (or muxed) format being played, or -1 if unknown, e.g. for progressive
+   * sources.
+   */
+  public final int bitrate;
+  public final int videoWidth;
+  public final int videoHeight;
+  /**
+   * When the snapshot was taken, in {@link android.os.SystemClock#elapsedRealtime()} time, so that
+   * readers can extrapolate the position while playing.
+   */
+  public final long elapsedRealtimeMs;
+
+  public PlaybackSnapshot(int playbackState, boolean playWhenReady, long positionMs, long durationMs, long bufferedPositionMs, int bitrate, int videoWidth, int videoHeight, long elapsedRealtimeMs) {
+    this.playbackState = playbackState;
+    this.playWhenReady = playWhenReady;
+    this.positionMs = positionMs;
+    this.durationMs = durationMs;
+    this.bufferedPositionMs = bufferedPositionMs;
+    this.bitrate = bitrate;
+    this.videoWidth = videoWidth;
+    this.videoHeight = videoHeight;
+    this.elapsedRealtimeMs = elapsedRealtimeMs;
+  }
+
+  public boolean isPlaying() {
+    return playWhenReady && playbackState == ExoPlayer.STATE_READY;
+  }
+
+  @Override
+  public String toString() {
+    return "PlaybackSnapshot[state=" + playbackState + ", playWhenReady=" + playWhenReady + ", position=" + positionMs
+      + ", duration=" + durationMs + ", buffered=" + bufferedPositionMs + ", bitrate=" + bitrate
+      + ", video=" + videoWidth + "x" + videoHeight + "]";
+  }
+}
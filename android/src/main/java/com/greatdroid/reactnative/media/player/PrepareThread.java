@@ -0,0 +1,29 @@
+package com.greatdroid.reactnative.media.player;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+
+/**
+ * A single background looper shared by all players for the prepare pipeline: manifest callbacks,
+ * DRM session creation and track renderer construction run here, so that only view attachment and
+ * surface binding are left for the UI thread.
+ */
+public final class PrepareThread {
+  private static final String NAME = "MediaKitPrepare";
+
+  private static HandlerThread thread;
+  private static Handler handler;
+
+  private PrepareThread() {
+  }
+
+  public static synchronized Handler getHandler() {
+    if (handler == null) {
+      thread = new HandlerThread(NAME, Process.THREAD_PRIORITY_BACKGROUND);
+      thread.start();
+      handler = new Handler(thread.getLooper());
+    }
+    return handler;
+  }
+}
@@ -0,0 +1,310 @@
+package com.greatdroid.reactnative.media.player;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+import android.util.Log;
+
+/**
+ * Trades quality for steady playback when the device is under pressure. Heat, a low battery and
+ * bursts of dropped frames, which is how the OS throttling the decoder shows, each call for a
+ * {@code LEVEL_*}; the strongest call wins and applies at once. Quality comes back one level at a
+ * time, and only after {@link #RECOVERY_MS} without pressure, so that a device cooling down does
+ * not bounce between resolutions.
+ * <p>
+ * Each level caps the video resolution and frame rate adaptive streams may pick, and how far ahead
+ * of the playback position media is loaded.
+ */
+final class QualityGovernor {
+  private static final String TAG = "QualityGovernor";
+
+  static final int LEVEL_FULL = 0;
+  static final int LEVEL_REDUCED = 1;
+  static final int LEVEL_LOW = 2;
+  static final int LEVEL_MINIMUM = 3;
+
+  /**
+   * Thermal status values, in the order of {@code PowerManager.THERMAL_STATUS_*}.
+   */
+  static final int THERMAL_NONE = 0;
+  static final int THERMAL_LIGHT = 1;
+  static final int THERMAL_MODERATE = 2;
+  static final int THERMAL_SEVERE = 3;
+  static final int THERMAL_CRITICAL = 4;
+
+  static final String REASON_THERMAL = "thermal";
+  static final String REASON_BATTERY = "battery";
+  static final String REASON_DROPPED_FRAMES = "droppedFrames";
+  static final String REASON_RECOVERED = "recovered";
+  static final String REASON_DISABLED = "disabled";
+
+  static final long NO_PIXEL_LIMIT = Long.MAX_VALUE;
+  static final float NO_FRAME_RATE_LIMIT = Float.MAX_VALUE;
+
+  private static final long[] MAX_PIXELS = {NO_PIXEL_LIMIT, 1280L * 720, 854L * 480, 640L * 360};
+  private static final float[] MAX_FRAME_RATES = {NO_FRAME_RATE_LIMIT, NO_FRAME_RATE_LIMIT, 30, 30};
+  private static final long[] MAX_BUFFER_MS = {BufferLimit.NO_LIMIT, 20000, 12000, 8000};
+
+  private static final long EVALUATION_INTERVAL_MS = 5000;
+  private static final long RECOVERY_MS = 60000;
+  /**
+   * Gives a lower format time to arrive before dropped frames may lower quality again.
+   */
+  private static final long DROPPED_FRAMES_STEP_MS = 10000;
+  private static final float MAX_DROPPED_FRAMES_PER_SECOND = 2;
+  private static final int LOW_BATTERY_PERCENT = 15;
+  private static final int CRITICAL_BATTERY_PERCENT = 5;
+
+  interface DeviceStatusSource {
+    /**
+     * Called once per evaluation.
+     */
+    DeviceStatus getDeviceStatus();
+  }
+
+  static final class DeviceStatus {
+    static final DeviceStatus UNKNOWN = new DeviceStatus(THERMAL_NONE, -1, false);
+
+    /**
+     * One of the {@code THERMAL_*} constants.
+     */
+    final int thermalStatus;
+    /**
+     * The battery level in percent, or -1 if unknown.
+     */
+    final int batteryPercent;
+    final boolean charging;
+
+    DeviceStatus(int thermalStatus, int batteryPercent, boolean charging) {
+      this.thermalStatus = thermalStatus;
+      this.batteryPercent = batteryPercent;
+      this.charging = charging;
+    }
+  }
+
+  interface Listener {
+    void onLevelChanged(int level, String reason);
+  }
+
+  private final DeviceStatusSource deviceStatusSource;
+  private final Listener listener;
+
+  private boolean enabled = true;
+  private int level = LEVEL_FULL;
+  private long levelChangedAtMs;
+  private int droppedFramesLevel = LEVEL_FULL;
+  private long droppedFramesAtMs;
+  private long evaluatedAtMs = -EVALUATION_INTERVAL_MS;
+
+  QualityGovernor(DeviceStatusSource deviceStatusSource, Listener listener) {
+    this.deviceStatusSource = deviceStatusSource;
+    this.listener = listener;
+  }
+
+  /**
+   * @param context Null, e.g. for a controller built off device, leaves only dropped frames to go
+   *                by.
+   * @return A governor reading the battery's temperature, level and charging state from the sticky
+   * battery broadcast.
+   */
+  static QualityGovernor create(Context context, Listener listener) {
+    if (context == null) {
+      return new QualityGovernor(new DeviceStatusSource() {
+        @Override
+        public DeviceStatus getDeviceStatus() {
+          return DeviceStatus.UNKNOWN;
+        }
+      }, listener);
+    }
+    return new QualityGovernor(new BatteryStatus(context.getApplicationContext()), listener);
+  }
+
+  /**
+   * Disabling goes back to full quality at once.
+   */
+  void setEnabled(boolean enabled) {
+    if (this.enabled == enabled) {
+      return;
+    }
+    this.enabled = enabled;
+    droppedFramesLevel = LEVEL_FULL;
+    if (!enabled && level != LEVEL_FULL) {
+      setLevel(LEVEL_FULL, REASON_DISABLED, levelChangedAtMs);
+    }
+  }
+
+  int getLevel() {
+    return level;
+  }
+
+  /**
+   * @param count     The number of frames dropped since the last report.
+   * @param elapsedMs The time the frames were dropped over.
+   */
+  void onDroppedFrames(int count, long elapsedMs, long nowMs) {
+    if (!enabled || elapsedMs <= 0) {
+      return;
+    }
+    float perSecond = count * 1000f / elapsedMs;
+    if (perSecond < MAX_DROPPED_FRAMES_PER_SECOND) {
+      return;
+    }
+    if (droppedFramesLevel < LEVEL_MINIMUM && nowMs - droppedFramesAtMs >= DROPPED_FRAMES_STEP_MS) {
+      droppedFramesLevel = Math.min(Math.max(droppedFramesLevel, level) + 1, LEVEL_MINIMUM);
+      Log.d(TAG, "onDroppedFrames...perSecond=" + perSecond + ", droppedFramesLevel=" + droppedFramesLevel);
+    }
+    droppedFramesAtMs = nowMs;
+    evaluate(nowMs);
+  }
+
+  /**
+   * Called while playing; evaluates at most every {@link #EVALUATION_INTERVAL_MS}.
+   */
+  void onPlaybackProgress(long nowMs) {
+    if (nowMs - evaluatedAtMs >= EVALUATION_INTERVAL_MS) {
+      evaluate(nowMs);
+    }
+  }
+
+  void evaluate(long nowMs) {
+    evaluatedAtMs = nowMs;
+    if (!enabled) {
+      return;
+    }
+    if (droppedFramesLevel > LEVEL_FULL && nowMs - droppedFramesAtMs >= RECOVERY_MS) {
+      // Restart the clock so the next step back takes another quiet period.
+      droppedFramesLevel--;
+      droppedFramesAtMs = nowMs;
+    }
+
+    int target = droppedFramesLevel;
+    String reason = REASON_DROPPED_FRAMES;
+    DeviceStatus status = deviceStatusSource.getDeviceStatus();
+    int thermalLevel = getThermalLevel(status.thermalStatus);
+    if (thermalLevel > target) {
+      target = thermalLevel;
+      reason = REASON_THERMAL;
+    }
+    int batteryLevel = getBatteryLevel(status.batteryPercent, status.charging);
+    if (batteryLevel > target) {
+      target = batteryLevel;
+      reason = REASON_BATTERY;
+    }
+
+    if (target > level) {
+      setLevel(target, reason, nowMs);
+    } else if (target < level && nowMs - levelChangedAtMs >= RECOVERY_MS) {
+      setLevel(level - 1, REASON_RECOVERED, nowMs);
+    }
+  }
+
+  private void setLevel(int level, String reason, long nowMs) {
+    Log.d(TAG, "setLevel...level=" + describe(level) + ", reason=" + reason);
+    this.level = level;
+    this.levelChangedAtMs = nowMs;
+    listener.onLevelChanged(level, reason);
+  }
+
+  private static int getThermalLevel(int thermalStatus) {
+    if (thermalStatus >= THERMAL_CRITICAL) {
+      return LEVEL_MINIMUM;
+    } else if (thermalStatus >= THERMAL_SEVERE) {
+      return LEVEL_LOW;
+    } else if (thermalStatus >= THERMAL_MODERATE) {
+      return LEVEL_REDUCED;
+    }
+    return LEVEL_FULL;
+  }
+
+  private static int getBatteryLevel(int percent, boolean charging) {
+    if (charging || percent < 0) {
+      return LEVEL_FULL;
+    } else if (percent <= CRITICAL_BATTERY_PERCENT) {
+      return LEVEL_LOW;
+    } else if (percent <= LOW_BATTERY_PERCENT) {
+      return LEVEL_REDUCED;
+    }
+    return LEVEL_FULL;
+  }
+
+  /**
+   * @return The largest video size in pixels allowed at {@code level}, or {@link #NO_PIXEL_LIMIT}.
+   */
+  static long getMaxPixels(int level) {
+    return MAX_PIXELS[level];
+  }
+
+  /**
+   * @return The highest frame rate allowed at {@code level}, or {@link #NO_FRAME_RATE_LIMIT}.
+   */
+  static float getMaxFrameRate(int level) {
+    return MAX_FRAME_RATES[level];
+  }
+
+  /**
+   * @return How far ahead of playback media may be loaded at {@code level}, or
+   * {@link BufferLimit#NO_LIMIT}.
+   */
+  static long getMaxBufferMs(int level) {
+    return MAX_BUFFER_MS[level];
+  }
+
+  static String describe(int level) {
+    switch (level) {
+      case LEVEL_FULL:
+        return "full";
+      case LEVEL_REDUCED:
+        return "reduced";
+      case LEVEL_LOW:
+        return "low";
+      case LEVEL_MINIMUM:
+        return "minimum";
+      default:
+        return "unknown";
+    }
+  }
+
+  /**
+   * Reads the sticky {@link Intent#ACTION_BATTERY_CHANGED} broadcast, once per evaluation. The
+   * thermal status API needs a newer platform than this library builds against, so the battery
+   * temperature, which follows the SoC's closely enough over a session, stands in for it.
+   */
+  private static final class BatteryStatus implements DeviceStatusSource {
+    private static final IntentFilter FILTER = new IntentFilter(Intent.ACTION_BATTERY_CHANGED);
+
+    private final Context context;
+
+    BatteryStatus(Context context) {
+      this.context = context;
+    }
+
+    @Override
+    public DeviceStatus getDeviceStatus() {
+      Intent battery = context.registerReceiver(null, FILTER);
+      if (battery == null) {
+        return DeviceStatus.UNKNOWN;
+      }
+      int level = battery.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+      int scale = battery.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+      int percent = level < 0 || scale <= 0 ? -1 : level * 100 / scale;
+      boolean charging = battery.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0;
+      // Tenths of a degree Celsius.
+      int temperature = battery.getIntExtra(BatteryManager.EXTRA_TEMPERATURE, 0);
+      return new DeviceStatus(getThermalStatus(temperature), percent, charging);
+    }
+
+    private static int getThermalStatus(int temperature) {
+      if (temperature >= 480) {
+        return THERMAL_CRITICAL;
+      } else if (temperature >= 450) {
+        return THERMAL_SEVERE;
+      } else if (temperature >= 420) {
+        return THERMAL_MODERATE;
+      } else if (temperature >= 400) {
+        return THERMAL_LIGHT;
+      }
+      return THERMAL_NONE;
+    }
+  }
+}
@@ -9,6 +9,14 @@ import android.widget.FrameLayout;
 import com.facebook.react.bridge.LifecycleEventListener;
 import com.facebook.react.bridge.ReactContext;
 import com.google.android.exoplayer.ExoPlayer;
+import com.google.android.exoplayer.metadata.id3.Id3Frame;
+import com.greatdroid.reactnative.media.player.drm.DrmConfiguration;
+import com.greatdroid.reactnative.media.player.text.CueChange;
+import com.greatdroid.reactnative.media.player.upstream.OriginSet;
+import com.greatdroid.reactnative.media.player.upstream.OriginStats;
+
+import java.util.List;
+import java.util.Set;
 
 public class ReactMediaPlayerView extends FrameLayout implements LifecycleEventListener {
   private static final String TAG = "ReactMediaPlayerView";
@@ -27,24 +35,56 @@ public class ReactMediaPlayerView extends FrameLayout implements LifecycleEventL
   };
 
   private MediaPlayerControllerOwner mediaPlayerControllerOwner;
-  private MediaPlayerController mediaPlayerController;
+  private volatile MediaPlayerController mediaPlayerController;
 
   private String uri;
+  private OriginSet originSet;
+  private int contentType = MediaPlayerController.CONTENT_TYPE_AUTO;
+  private String container;
   private boolean loop;
   private boolean autoplay;
   private boolean muted;
+  private boolean audioOnly;
+  private float resolutionScale = VideoViewport.DEFAULT_SCALE;
+  private boolean qualityGovernorEnabled = true;
+  private long backBufferMs;
+  private long backBufferBytes;
   private String preload;
+  private DrmConfiguration drmConfiguration;
+  private String subtitlesUri;
+  private String subtitlesType;
+  private boolean metadataEnabled;
+  private long metadataCoalesceMs;
+  private Set<String> metadataFrameIds;
+  private long startPosition = -1;
+  private String resumeKey;
+  /**
+   * The saved position of {@link #resumeKey}, or a negative value while it is being looked up.
+   */
+  private long resumePosition = -1;
+  private int renderTarget = MediaPlayerController.RENDER_TARGET_TEXTURE_VIEW;
+  private int resizeMode = MediaPlayerController.RESIZE_MODE_CONTAIN;
 
   private boolean playWhenReadySnapshot;
   private long playPositionSnapshot = 0;
+  private boolean positionKnown;
 
   private MediaPlayerListener mediaPlayerListener;
 
   private final MediaPlayerController.BaseEventListener l = new MediaPlayerController.BaseEventListener() {
 
     @Override
-    public void onVideoSizeChanged(int width, int height, int unappliedRotationDegrees, float pixelWidthHeightRatio) {
-      measureAndLayout.run();
+    public void onMetadata(List<Id3Frame> metadata) {
+      if (metadataEnabled && mediaPlayerListener != null) {
+        mediaPlayerListener.onPlayerMetadata(metadata);
+      }
+    }
+
+    @Override
+    public void onCuesChanged(CueChange change) {
+      if (mediaPlayerListener != null) {
+        mediaPlayerListener.onPlayerCuesChanged(change);
+      }
     }
 
     @Override
@@ -61,6 +101,9 @@ public class ReactMediaPlayerView extends FrameLayout implements LifecycleEventL
             break;
           case ExoPlayer.STATE_ENDED:
             notifyProgress();
+            if (resumeKey != null) {
+              ResumePositionStore.getInstance(getContext()).remove(resumeKey);
+            }
             mediaPlayerListener.onPlayerFinished();
             break;
           case ExoPlayer.STATE_IDLE:
@@ -79,12 +122,44 @@ public class ReactMediaPlayerView extends FrameLayout implements LifecycleEventL
       }
 
       if (playbackState == ExoPlayer.STATE_READY) {
+        positionKnown = true;
         notifyProgress();
       }
-      if (playbackState == ExoPlayer.STATE_READY && mediaPlayerController != null && mediaPlayerController.getPlayWhenReady()) {
-        startProgressTimer();
-      } else {
-        stopProgressTimer();
+    }
+
+    @Override
+    public void onPlaybackProgress(PlaybackSnapshot snapshot) {
+      notifyProgress(snapshot);
+      saveResumePosition(false);
+    }
+
+    @Override
+    public void onRecovering(Exception e, String category, int attempt, long retryDelayMs) {
+      if (mediaPlayerListener != null) {
+        mediaPlayerListener.onPlayerError(category, String.valueOf(e.getMessage()), false, attempt, retryDelayMs);
+      }
+    }
+
+    @Override
+    public void onSubtitleError(Exception e) {
+      if (mediaPlayerListener != null) {
+        mediaPlayerListener.onPlayerError("subtitles", String.valueOf(e.getMessage()), false, 0, -1);
+      }
+    }
+
+    @Override
+    public void onQualityChanged(String level, String reason, long maxPixels, float maxFrameRate, long maxBufferMs) {
+      if (mediaPlayerListener != null) {
+        mediaPlayerListener.onPlayerQualityChange(level, reason, maxPixels, maxFrameRate, maxBufferMs);
+      }
+    }
+
+    @Override
+    public void onError(Exception e) {
+      Log.d(TAG, "onError...e=" + e);
+      if (mediaPlayerListener != null) {
+        String category = ErrorRecoveryPolicy.describe(ErrorRecoveryPolicy.classify(e));
+        mediaPlayerListener.onPlayerError(category, String.valueOf(e.getMessage()), true, 0, -1);
       }
     }
   };
@@ -101,21 +176,21 @@ public class ReactMediaPlayerView extends FrameLayout implements LifecycleEventL
           controller.addEventListener(l);
           mediaPlayerController = controller;
           addView(controller.getView(), new LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT, Gravity.CENTER));
+          positionKnown = false;
           updateProps(controller);
-          if(playPositionSnapshot > 0) {
-            controller.seekTo(playPositionSnapshot);
-          }
         } else {
           Log.d(TAG, "onOwnershipChanged...remove view");
           if(mediaPlayerController != null) {
-            playPositionSnapshot = mediaPlayerController.getCurrentPosition();
+            if (positionKnown) {
+              playPositionSnapshot = mediaPlayerController.getCurrentPosition();
+              saveResumePosition(true);
+            }
             mediaPlayerController.removeEventListener(l);
             mediaPlayerController.setSurfaceTexture(null);
             mediaPlayerController.setContentUri(null);
             removeView(mediaPlayerController.getView());
           }
 
-          stopProgressTimer();
           if (mediaPlayerListener != null) {
             mediaPlayerListener.onPlayerFinished();
           }
@@ -129,6 +204,22 @@ public class ReactMediaPlayerView extends FrameLayout implements LifecycleEventL
     return mediaPlayerControllerOwner.requestOwnership(getContext());
   }
 
+  /**
+   * @return The controller if this view currently owns it, or null; unlike
+   * {@link #getMediaPlayerController()} this never takes the controller over from another view.
+   */
+  public MediaPlayerController getOwnedMediaPlayerController() {
+    return mediaPlayerController;
+  }
+
+  /**
+   * Returns the latest snapshot of this view's playback. Safe to call from any thread.
+   */
+  public PlaybackSnapshot getPlaybackSnapshot() {
+    MediaPlayerController controller = mediaPlayerController;
+    return controller == null ? PlaybackSnapshot.IDLE : controller.getPlaybackSnapshot();
+  }
+
   //for debug info
   private String descPlaybackState(int state) {
     switch (state) {
@@ -148,10 +239,41 @@ public class ReactMediaPlayerView extends FrameLayout implements LifecycleEventL
   }
 
   public void setUri(String uri) {
+    if (uri == null ? this.uri != null : !uri.equals(this.uri)) {
+      playPositionSnapshot = 0;
+      positionKnown = false;
+      loadResumePosition();
+    }
     this.uri = uri;
     updateProps(mediaPlayerController);
   }
 
+  /**
+   * Sets equivalent copies of the source on other origins, e.g. other CDNs, to race the first
+   * request across and fail over to.
+   *
+   * @param uris    The source at each origin, or null.
+   * @param weights The relative preference for each origin, or null.
+   */
+  public void setSources(List<String> uris, List<Float> weights) {
+    this.originSet = uris == null || uris.size() < 2 ? null : OriginSet.create(OriginStats.getInstance(getContext()), uris, weights);
+    updateProps(mediaPlayerController);
+  }
+
+  /**
+   * @param contentType {@link MediaPlayerController#CONTENT_TYPE_AUTO} or one of the
+   *                    {@code Util.TYPE_*} constants.
+   */
+  public void setContentType(int contentType) {
+    this.contentType = contentType;
+    updateProps(mediaPlayerController);
+  }
+
+  public void setContainer(String container) {
+    this.container = container;
+    updateProps(mediaPlayerController);
+  }
+
   public void setLoop(boolean loop) {
     this.loop = loop;
     updateProps(mediaPlayerController);
@@ -172,14 +294,231 @@ public class ReactMediaPlayerView extends FrameLayout implements LifecycleEventL
     updateProps(mediaPlayerController);
   }
 
+  public void setDrmConfiguration(DrmConfiguration drmConfiguration) {
+    this.drmConfiguration = drmConfiguration;
+    updateProps(mediaPlayerController);
+  }
+
+  /**
+   * Reports a problem found outside of playback, such as an unusable prop, as a fatal player error.
+   */
+  void reportError(int category, Exception e) {
+    Log.d(TAG, "reportError...e=" + e);
+    if (mediaPlayerListener != null) {
+      mediaPlayerListener.onPlayerError(ErrorRecoveryPolicy.describe(category), String.valueOf(e.getMessage()), true, 0, -1);
+    }
+  }
+
+  public void setSubtitles(String uri, String type) {
+    this.subtitlesUri = uri;
+    this.subtitlesType = type;
+    updateProps(mediaPlayerController);
+  }
+
+  /**
+   * Enables {@link MediaPlayerListener#onPlayerMetadata(List)}; metadata is not sent to JS otherwise.
+   */
+  public void setMetadataOptions(boolean enabled, long coalesceMs, Set<String> frameIds) {
+    this.metadataEnabled = enabled;
+    this.metadataCoalesceMs = coalesceMs;
+    this.metadataFrameIds = frameIds;
+    updateProps(mediaPlayerController);
+  }
+
+  public void setAudioOnly(boolean audioOnly) {
+    this.audioOnly = audioOnly;
+    updateProps(mediaPlayerController);
+  }
+
+  public void setResolutionScale(float resolutionScale) {
+    this.resolutionScale = resolutionScale;
+    updateProps(mediaPlayerController);
+  }
+
+  public void setQualityGovernorEnabled(boolean qualityGovernorEnabled) {
+    this.qualityGovernorEnabled = qualityGovernorEnabled;
+    updateProps(mediaPlayerController);
+  }
+
+  public void setBackBuffer(long durationMs, long maxBytes) {
+    this.backBufferMs = durationMs;
+    this.backBufferBytes = maxBytes;
+    updateProps(mediaPlayerController);
+  }
+
+  /**
+   * @param startPosition Where playback of the source starts, in ms, or a negative value to start
+   *                      from the resume position, if any.
+   */
+  public void setStartPosition(long startPosition) {
+    this.startPosition = startPosition;
+    updateProps(mediaPlayerController);
+  }
+
+  /**
+   * Enables saving the playback position under {@code resumeKey}, and starting from the saved
+   * position next time unless a start position is set.
+   */
+  public void setResumeKey(String resumeKey) {
+    boolean changed = resumeKey == null ? this.resumeKey != null : !resumeKey.equals(this.resumeKey);
+    this.resumeKey = resumeKey;
+    if (changed) {
+      loadResumePosition();
+    }
+    updateProps(mediaPlayerController);
+  }
+
+  private void loadResumePosition() {
+    resumePosition = -1;
+    if (resumeKey == null) {
+      return;
+    }
+    final String key = resumeKey;
+    ResumePositionStore.getInstance(getContext()).get(key, new ResumePositionStore.Callback() {
+      @Override
+      public void onPosition(long positionMs) {
+        if (!key.equals(resumeKey) || resumePosition >= 0) {
+          return;
+        }
+        Log.d(TAG, "loadResumePosition...key=" + key + ", position=" + positionMs);
+        resumePosition = positionMs;
+        updateProps(mediaPlayerController);
+      }
+    });
+  }
+
+  /**
+   * @return Whether the start position is still unknown because the resume position is being looked
+   * up; the source is neither prepared nor played until it is known.
+   */
+  private boolean isResolvingStartPosition() {
+    return playPositionSnapshot <= 0 && startPosition < 0 && resumeKey != null && resumePosition < 0;
+  }
+
+  private long resolveStartPosition() {
+    if (playPositionSnapshot > 0) {
+      // Taken when another view borrowed the player.
+      return playPositionSnapshot;
+    } else if (startPosition >= 0) {
+      return startPosition;
+    } else if (resumeKey != null && resumePosition > 0) {
+      return resumePosition;
+    }
+    return 0;
+  }
+
+  private void saveResumePosition(boolean flush) {
+    if (resumeKey == null || mediaPlayerController == null || !positionKnown) {
+      return;
+    }
+    ResumePositionStore store = ResumePositionStore.getInstance(getContext());
+    PlaybackSnapshot snapshot = mediaPlayerController.getPlaybackSnapshot();
+    store.put(resumeKey, snapshot.positionMs, snapshot.durationMs);
+    if (flush) {
+      store.flush();
+    }
+  }
+
+  public void setResizeMode(int resizeMode) {
+    this.resizeMode = resizeMode;
+    if (mediaPlayerController != null) {
+      mediaPlayerController.setResizeMode(resizeMode);
+    }
+    updateRenderTarget();
+  }
+
+  public void setRenderTarget(int renderTarget) {
+    this.renderTarget = renderTarget;
+    updateRenderTarget();
+  }
+
+  /**
+   * The player is added by native code, and React Native does not lay out views on behalf of
+   * native children, so layout requests from below are carried out here. Only view bounds and, for
+   * a SurfaceView, aspect ratio changes get here; video size changes are applied as a transform.
+   */
+  @Override
+  public void requestLayout() {
+    super.requestLayout();
+    if (measureAndLayout != null) {
+      removeCallbacks(measureAndLayout);
+      post(measureAndLayout);
+    }
+  }
+
+  // A SurfaceView ignores view alpha and transforms, so these fall back to a TextureView, as do the
+  // resize modes only a transform can do.
+
+  @Override
+  public void setAlpha(float alpha) {
+    super.setAlpha(alpha);
+    updateRenderTarget();
+  }
+
+  @Override
+  public void setRotation(float rotation) {
+    super.setRotation(rotation);
+    updateRenderTarget();
+  }
+
+  @Override
+  public void setRotationX(float rotationX) {
+    super.setRotationX(rotationX);
+    updateRenderTarget();
+  }
+
+  @Override
+  public void setRotationY(float rotationY) {
+    super.setRotationY(rotationY);
+    updateRenderTarget();
+  }
+
+  @Override
+  public void setScaleX(float scaleX) {
+    super.setScaleX(scaleX);
+    updateRenderTarget();
+  }
+
+  @Override
+  public void setScaleY(float scaleY) {
+    super.setScaleY(scaleY);
+    updateRenderTarget();
+  }
+
+  private void updateRenderTarget() {
+    if (mediaPlayerController == null) {
+      return;
+    }
+    boolean needsTextureView = getAlpha() < 1 || getRotation() != 0 || getRotationX() != 0 || getRotationY() != 0
+      || getScaleX() != 1 || getScaleY() != 1
+      || resizeMode == MediaPlayerController.RESIZE_MODE_COVER || resizeMode == MediaPlayerController.RESIZE_MODE_NONE;
+    mediaPlayerController.setRenderTarget(needsTextureView ? MediaPlayerController.RENDER_TARGET_TEXTURE_VIEW : renderTarget);
+  }
+
   private void updateProps(MediaPlayerController playerController) {
     if (playerController != null) {
+      playerController.setResizeMode(resizeMode);
+      updateRenderTarget();
+      playerController.setDrmConfiguration(drmConfiguration);
+      playerController.setAudioOnly(audioOnly);
+      playerController.setResolutionScale(resolutionScale);
+      playerController.setQualityGovernorEnabled(qualityGovernorEnabled);
+      playerController.setBackBuffer(backBufferMs, backBufferBytes);
+      playerController.setOrigins(originSet);
+      playerController.setContentType(contentType);
+      playerController.setContainer(container);
       playerController.setContentUri(uri);
-      if (autoplay) {
-        playerController.play();
-      } else {
-        if (preload != null && preload.equals("auto")) {
-          playerController.prepareToPlay();
+      playerController.setStartPosition(resolveStartPosition());
+      playerController.setSubtitles(subtitlesUri, subtitlesType);
+      playerController.setMetadataOptions(metadataCoalesceMs, metadataFrameIds);
+      // Otherwise started once the resume position arrives.
+      if (!isResolvingStartPosition()) {
+        if (autoplay) {
+          playerController.play();
+        } else {
+          if (preload != null && preload.equals("auto")) {
+            playerController.prepareToPlay();
+          }
         }
       }
       playerController.setLoop(loop);
@@ -191,6 +530,7 @@ public class ReactMediaPlayerView extends FrameLayout implements LifecycleEventL
   protected void onAttachedToWindow() {
     Log.d(TAG, "onAttachedToWindow...");
     super.onAttachedToWindow();
+    MediaPlayerViewRegistry.register(this);
     if (getContext() instanceof ReactContext) {
       ((ReactContext) getContext()).addLifecycleEventListener(this);
     }
@@ -204,6 +544,7 @@ public class ReactMediaPlayerView extends FrameLayout implements LifecycleEventL
   protected void onDetachedFromWindow() {
     Log.d(TAG, "onDetachedFromWindow...");
     super.onDetachedFromWindow();
+    MediaPlayerViewRegistry.unregister(this);
     if (getContext() instanceof ReactContext) {
       ((ReactContext) getContext()).removeLifecycleEventListener(this);
     }
@@ -226,6 +567,7 @@ public class ReactMediaPlayerView extends FrameLayout implements LifecycleEventL
     if(mediaPlayerController != null) {
       playWhenReadySnapshot = mediaPlayerController.getPlayWhenReady();
       mediaPlayerController.pause();
+      saveResumePosition(true);
     }
   }
 
@@ -237,29 +579,14 @@ public class ReactMediaPlayerView extends FrameLayout implements LifecycleEventL
 
   private void notifyProgress() {
     if (mediaPlayerController != null) {
-      long current = mediaPlayerController.getCurrentPosition();
-      long total = mediaPlayerController.getDuration();
-      long buffered = mediaPlayerController.getBufferedPosition();
-      if (mediaPlayerListener != null) {
-        mediaPlayerListener.onPlayerProgress(current, total, buffered);
-      }
+      notifyProgress(mediaPlayerController.getPlaybackSnapshot());
     }
   }
 
-  private Runnable onProgress = new Runnable() {
-    @Override
-    public void run() {
-      notifyProgress();
-      postDelayed(onProgress, 500);
+  private void notifyProgress(PlaybackSnapshot snapshot) {
+    if (mediaPlayerListener != null) {
+      mediaPlayerListener.onPlayerProgress(snapshot.positionMs, snapshot.durationMs, snapshot.bufferedPositionMs);
     }
-  };
-
-  private void startProgressTimer() {
-    post(onProgress);
-  }
-
-  private void stopProgressTimer() {
-    removeCallbacks(onProgress);
   }
 
   public interface MediaPlayerListener {
@@ -275,6 +602,24 @@ public class ReactMediaPlayerView extends FrameLayout implements LifecycleEventL
     void onPlayerBufferReady();
 
     void onPlayerProgress(long current, long total, long buffered);
+
+    void onPlayerCuesChanged(CueChange change);
+
+    void onPlayerMetadata(List<Id3Frame> metadata);
+
+    /**
+     * @param fatal        Whether playback stopped for good; otherwise it is retried after
+     *                     {@code retryDelayMs}.
+     * @param attempt      The retry attempt, or 0 if fatal.
+     */
+    void onPlayerError(String category, String message, boolean fatal, int attempt, long retryDelayMs);
+
+    /**
+     * @param maxPixels    The largest video size allowed, or {@link Long#MAX_VALUE}.
+     * @param maxFrameRate The highest frame rate allowed, or {@link Float#MAX_VALUE}.
+     * @param maxBufferMs  How far ahead media is loaded at most, or {@link BufferLimit#NO_LIMIT}.
+     */
+    void onPlayerQualityChange(String level, String reason, long maxPixels, float maxFrameRate, long maxBufferMs);
   }
 
   public void setMediaPlayerListener(MediaPlayerListener listener) {
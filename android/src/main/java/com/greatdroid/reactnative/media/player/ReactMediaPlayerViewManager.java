@@ -2,9 +2,12 @@ package com.greatdroid.reactnative.media.player;
 
 import android.os.SystemClock;
 import android.support.annotation.Nullable;
+import android.util.Base64;
 import android.util.Log;
 
 import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableType;
 import com.facebook.react.bridge.WritableArray;
 import com.facebook.react.bridge.WritableMap;
 import com.facebook.react.bridge.WritableNativeArray;
@@ -16,8 +19,23 @@ import com.facebook.react.uimanager.UIManagerModule;
 import com.facebook.react.uimanager.annotations.ReactProp;
 import com.facebook.react.uimanager.events.Event;
 import com.facebook.react.uimanager.events.RCTEventEmitter;
-
+import com.google.android.exoplayer.metadata.id3.ApicFrame;
+import com.google.android.exoplayer.metadata.id3.BinaryFrame;
+import com.google.android.exoplayer.metadata.id3.GeobFrame;
+import com.google.android.exoplayer.metadata.id3.Id3Frame;
+import com.google.android.exoplayer.metadata.id3.PrivFrame;
+import com.google.android.exoplayer.metadata.id3.TextInformationFrame;
+import com.google.android.exoplayer.metadata.id3.TxxxFrame;
+import com.google.android.exoplayer.text.Cue;
+import com.google.android.exoplayer.util.Util;
+import com.greatdroid.reactnative.media.player.drm.DrmConfiguration;
+import com.greatdroid.reactnative.media.player.text.CueChange;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class ReactMediaPlayerViewManager extends SimpleViewManager<ReactMediaPlayerView> {
   private static final String TAG = "MediaPlayerViewManager";
@@ -31,6 +49,12 @@ public class ReactMediaPlayerViewManager extends SimpleViewManager<ReactMediaPla
   public static final String EVENT_ON_PLAYER_BUFFERING = "onPlayerBuffering";
   public static final String EVENT_ON_PLAYER_BUFFER_OK = "onPlayerBufferOK";
   public static final String EVENT_ON_PLAYER_FINISHED = "onPlayerFinished";
+  public static final String EVENT_ON_PLAYER_CUES_CHANGE = "onPlayerCuesChange";
+  public static final String EVENT_ON_PLAYER_METADATA = "onPlayerMetadata";
+  public static final String EVENT_ON_PLAYER_ERROR = "onPlayerError";
+  public static final String EVENT_ON_PLAYER_QUALITY_CHANGE = "onPlayerQualityChange";
+
+  private static final long DEFAULT_BACK_BUFFER_BYTES = 32 * 1024 * 1024;
 
   public static final int CMD_PLAY = 1;
   public static final int CMD_PAUSE = 2;
@@ -54,6 +78,50 @@ public class ReactMediaPlayerViewManager extends SimpleViewManager<ReactMediaPla
     view.setUri(uri);
   }
 
+  @ReactProp(name = "sources")
+  public void setSources(ReactMediaPlayerView view, @Nullable ReadableArray sources) {
+    Log.d(TAG, "setSources...sources=" + sources);
+    if (sources == null) {
+      view.setSources(null, null);
+      return;
+    }
+    List<String> uris = new ArrayList<>();
+    List<Float> weights = new ArrayList<>();
+    for (int i = 0; i < sources.size(); i++) {
+      if (sources.getType(i) == ReadableType.String) {
+        uris.add(sources.getString(i));
+        weights.add(1f);
+      } else {
+        ReadableMap source = sources.getMap(i);
+        uris.add(source.getString("uri"));
+        weights.add(source.hasKey("weight") ? (float) source.getDouble("weight") : 1f);
+      }
+    }
+    view.setSources(uris, weights);
+  }
+
+  @ReactProp(name = "type")
+  public void setType(ReactMediaPlayerView view, @Nullable String type) {
+    Log.d(TAG, "setType...type=" + type);
+    int contentType = MediaPlayerController.CONTENT_TYPE_AUTO;
+    if ("hls".equals(type)) {
+      contentType = Util.TYPE_HLS;
+    } else if ("dash".equals(type)) {
+      contentType = Util.TYPE_DASH;
+    } else if ("smoothstreaming".equals(type)) {
+      contentType = Util.TYPE_SS;
+    } else if ("progressive".equals(type)) {
+      contentType = Util.TYPE_OTHER;
+    }
+    view.setContentType(contentType);
+  }
+
+  @ReactProp(name = "container")
+  public void setContainer(ReactMediaPlayerView view, @Nullable String container) {
+    Log.d(TAG, "setContainer...container=" + container);
+    view.setContainer(container);
+  }
+
   @ReactProp(name = "preload")
   public void setPreload(ReactMediaPlayerView view, @Nullable String preload) {
     Log.d(TAG, "setPreload...preload=" + preload);
@@ -79,6 +147,113 @@ public class ReactMediaPlayerViewManager extends SimpleViewManager<ReactMediaPla
 
   }
 
+  @ReactProp(name = "audioOnly", defaultBoolean = false)
+  public void setAudioOnly(ReactMediaPlayerView view, boolean audioOnly) {
+    Log.d(TAG, "setAudioOnly...audioOnly=" + audioOnly);
+    view.setAudioOnly(audioOnly);
+  }
+
+  @ReactProp(name = "resolutionScale", defaultFloat = VideoViewport.DEFAULT_SCALE)
+  public void setResolutionScale(ReactMediaPlayerView view, float resolutionScale) {
+    Log.d(TAG, "setResolutionScale...resolutionScale=" + resolutionScale);
+    view.setResolutionScale(resolutionScale);
+  }
+
+  @ReactProp(name = "qualityGovernor", defaultBoolean = true)
+  public void setQualityGovernor(ReactMediaPlayerView view, boolean qualityGovernor) {
+    Log.d(TAG, "setQualityGovernor...qualityGovernor=" + qualityGovernor);
+    view.setQualityGovernorEnabled(qualityGovernor);
+  }
+
+  @ReactProp(name = "resizeMode")
+  public void setResizeMode(ReactMediaPlayerView view, @Nullable String resizeMode) {
+    Log.d(TAG, "setResizeMode...resizeMode=" + resizeMode);
+    int mode = MediaPlayerController.RESIZE_MODE_CONTAIN;
+    if ("cover".equals(resizeMode)) {
+      mode = MediaPlayerController.RESIZE_MODE_COVER;
+    } else if ("stretch".equals(resizeMode)) {
+      mode = MediaPlayerController.RESIZE_MODE_STRETCH;
+    } else if ("none".equals(resizeMode)) {
+      mode = MediaPlayerController.RESIZE_MODE_NONE;
+    }
+    view.setResizeMode(mode);
+  }
+
+  @ReactProp(name = "renderTarget")
+  public void setRenderTarget(ReactMediaPlayerView view, @Nullable String renderTarget) {
+    Log.d(TAG, "setRenderTarget...renderTarget=" + renderTarget);
+    view.setRenderTarget("surfaceView".equals(renderTarget)
+      ? MediaPlayerController.RENDER_TARGET_SURFACE_VIEW : MediaPlayerController.RENDER_TARGET_TEXTURE_VIEW);
+  }
+
+  @ReactProp(name = "startPosition", defaultDouble = -1)
+  public void setStartPosition(ReactMediaPlayerView view, double startPosition) {
+    Log.d(TAG, "setStartPosition...startPosition=" + startPosition);
+    view.setStartPosition((long) startPosition);
+  }
+
+  @ReactProp(name = "resumeKey")
+  public void setResumeKey(ReactMediaPlayerView view, @Nullable String resumeKey) {
+    Log.d(TAG, "setResumeKey...resumeKey=" + resumeKey);
+    view.setResumeKey(resumeKey);
+  }
+
+  @ReactProp(name = "backBuffer")
+  public void setBackBuffer(ReactMediaPlayerView view, @Nullable ReadableMap backBuffer) {
+    Log.d(TAG, "setBackBuffer...backBuffer=" + backBuffer);
+    if (backBuffer == null) {
+      view.setBackBuffer(0, 0);
+      return;
+    }
+    long durationMs = backBuffer.hasKey("durationMs") ? (long) backBuffer.getDouble("durationMs") : 0;
+    long maxBytes = backBuffer.hasKey("maxBytes") ? (long) backBuffer.getDouble("maxBytes") : DEFAULT_BACK_BUFFER_BYTES;
+    view.setBackBuffer(durationMs, maxBytes);
+  }
+
+  @ReactProp(name = "drm")
+  public void setDrm(ReactMediaPlayerView view, @Nullable ReadableMap drm) {
+    Log.d(TAG, "setDrm...drm=" + drm);
+    DrmConfiguration configuration;
+    try {
+      configuration = DrmConfiguration.fromReadableMap(drm);
+    } catch (IllegalArgumentException e) {
+      Log.w(TAG, "setDrm...invalid drm", e);
+      view.setDrmConfiguration(null);
+      view.reportError(ErrorRecoveryPolicy.CATEGORY_DRM, e);
+      return;
+    }
+    view.setDrmConfiguration(configuration);
+  }
+
+  @ReactProp(name = "subtitles")
+  public void setSubtitles(ReactMediaPlayerView view, @Nullable ReadableMap subtitles) {
+    Log.d(TAG, "setSubtitles...subtitles=" + subtitles);
+    if (subtitles == null || !subtitles.hasKey("src")) {
+      view.setSubtitles(null, null);
+    } else {
+      view.setSubtitles(subtitles.getString("src"), subtitles.hasKey("type") ? subtitles.getString("type") : null);
+    }
+  }
+
+  @ReactProp(name = "metadata")
+  public void setMetadata(ReactMediaPlayerView view, @Nullable ReadableMap metadata) {
+    Log.d(TAG, "setMetadata...metadata=" + metadata);
+    if (metadata == null) {
+      view.setMetadataOptions(false, 0, null);
+      return;
+    }
+    long coalesceMs = metadata.hasKey("coalesceMs") ? (long) metadata.getDouble("coalesceMs") : 0;
+    Set<String> frameIds = null;
+    if (metadata.hasKey("frameIds")) {
+      ReadableArray array = metadata.getArray("frameIds");
+      frameIds = new HashSet<>();
+      for (int i = 0; i < array.size(); i++) {
+        frameIds.add(array.getString(i));
+      }
+    }
+    view.setMetadataOptions(true, coalesceMs, frameIds);
+  }
+
   ////////////////////////////////
 
   @Override
@@ -211,9 +386,155 @@ public class ReactMediaPlayerViewManager extends SimpleViewManager<ReactMediaPla
                   });
         }
       }
+
+      @Override
+      public void onPlayerCuesChanged(final CueChange change) {
+        reactContext.getNativeModule(UIManagerModule.class).getEventDispatcher()
+                .dispatchEvent(new Event(view.getId(), SystemClock.uptimeMillis()) {
+                  @Override
+                  public String getEventName() {
+                    return EVENT_ON_PLAYER_CUES_CHANGE;
+                  }
+
+                  @Override
+                  public void dispatch(RCTEventEmitter rctEventEmitter) {
+                    WritableArray added = new WritableNativeArray();
+                    for (int i = 0; i < change.addedIds.length; i++) {
+                      added.pushMap(cueToMap(change.addedIds[i], change.added.get(i)));
+                    }
+                    WritableArray removed = new WritableNativeArray();
+                    for (int id : change.removedIds) {
+                      removed.pushInt(id);
+                    }
+
+                    WritableMap map = new WritableNativeMap();
+                    map.putArray("added", added);
+                    map.putArray("removed", removed);
+                    rctEventEmitter.receiveEvent(getViewTag(), getEventName(), map);
+                  }
+                });
+      }
+
+      @Override
+      public void onPlayerMetadata(final List<Id3Frame> metadata) {
+        reactContext.getNativeModule(UIManagerModule.class).getEventDispatcher()
+                .dispatchEvent(new Event(view.getId(), SystemClock.uptimeMillis()) {
+                  @Override
+                  public String getEventName() {
+                    return EVENT_ON_PLAYER_METADATA;
+                  }
+
+                  @Override
+                  public void dispatch(RCTEventEmitter rctEventEmitter) {
+                    WritableArray frames = new WritableNativeArray();
+                    for (Id3Frame frame : metadata) {
+                      frames.pushMap(frameToMap(frame));
+                    }
+
+                    WritableMap map = new WritableNativeMap();
+                    map.putArray("frames", frames);
+                    rctEventEmitter.receiveEvent(getViewTag(), getEventName(), map);
+                  }
+                });
+      }
+
+      @Override
+      public void onPlayerError(final String category, final String message, final boolean fatal, final int attempt, final long retryDelayMs) {
+        reactContext.getNativeModule(UIManagerModule.class).getEventDispatcher()
+                .dispatchEvent(new Event(view.getId(), SystemClock.uptimeMillis()) {
+                  @Override
+                  public String getEventName() {
+                    return EVENT_ON_PLAYER_ERROR;
+                  }
+
+                  @Override
+                  public void dispatch(RCTEventEmitter rctEventEmitter) {
+                    WritableMap map = new WritableNativeMap();
+                    map.putString("category", category);
+                    map.putString("message", message);
+                    map.putBoolean("fatal", fatal);
+                    map.putInt("attempt", attempt);
+                    map.putInt("retryDelay", (int) retryDelayMs);
+                    rctEventEmitter.receiveEvent(getViewTag(), getEventName(), map);
+                  }
+                });
+      }
+
+      @Override
+      public void onPlayerQualityChange(final String level, final String reason, final long maxPixels, final float maxFrameRate, final long maxBufferMs) {
+        reactContext.getNativeModule(UIManagerModule.class).getEventDispatcher()
+                .dispatchEvent(new Event(view.getId(), SystemClock.uptimeMillis()) {
+                  @Override
+                  public String getEventName() {
+                    return EVENT_ON_PLAYER_QUALITY_CHANGE;
+                  }
+
+                  @Override
+                  public void dispatch(RCTEventEmitter rctEventEmitter) {
+                    // 0 stands for no limit.
+                    WritableMap map = new WritableNativeMap();
+                    map.putString("level", level);
+                    map.putString("reason", reason);
+                    map.putDouble("maxPixels", maxPixels == Long.MAX_VALUE ? 0 : maxPixels);
+                    map.putDouble("maxFrameRate", maxFrameRate == Float.MAX_VALUE ? 0 : maxFrameRate);
+                    map.putDouble("maxBuffer", maxBufferMs == BufferLimit.NO_LIMIT ? 0 : maxBufferMs);
+                    rctEventEmitter.receiveEvent(getViewTag(), getEventName(), map);
+                  }
+                });
+      }
     });
   }
 
+  private static WritableMap frameToMap(Id3Frame frame) {
+    WritableMap map = new WritableNativeMap();
+    map.putString("id", frame.id);
+    if (frame instanceof TxxxFrame) {
+      map.putString("type", "txxx");
+      map.putString("description", ((TxxxFrame) frame).description);
+      map.putString("value", ((TxxxFrame) frame).value);
+    } else if (frame instanceof TextInformationFrame) {
+      map.putString("type", "text");
+      map.putString("value", ((TextInformationFrame) frame).description);
+    } else if (frame instanceof PrivFrame) {
+      map.putString("type", "priv");
+      map.putString("owner", ((PrivFrame) frame).owner);
+      map.putString("data", Base64.encodeToString(((PrivFrame) frame).privateData, Base64.NO_WRAP));
+    } else if (frame instanceof GeobFrame) {
+      GeobFrame geob = (GeobFrame) frame;
+      map.putString("type", "geob");
+      map.putString("mimeType", geob.mimeType);
+      map.putString("filename", geob.filename);
+      map.putString("description", geob.description);
+      map.putString("data", Base64.encodeToString(geob.data, Base64.NO_WRAP));
+    } else if (frame instanceof ApicFrame) {
+      map.putString("type", "apic");
+      map.putString("mimeType", ((ApicFrame) frame).mimeType);
+      map.putString("description", ((ApicFrame) frame).description);
+    } else if (frame instanceof BinaryFrame) {
+      map.putString("type", "binary");
+      map.putString("data", Base64.encodeToString(((BinaryFrame) frame).data, Base64.NO_WRAP));
+    } else {
+      map.putString("type", "unknown");
+    }
+    return map;
+  }
+
+  private static WritableMap cueToMap(int id, Cue cue) {
+    WritableMap map = new WritableNativeMap();
+    map.putInt("id", id);
+    map.putString("text", cue.text == null ? "" : cue.text.toString());
+    if (cue.line != Cue.DIMEN_UNSET) {
+      map.putDouble("line", cue.line);
+    }
+    if (cue.position != Cue.DIMEN_UNSET) {
+      map.putDouble("position", cue.position);
+    }
+    if (cue.size != Cue.DIMEN_UNSET) {
+      map.putDouble("size", cue.size);
+    }
+    return map;
+  }
+
   @javax.annotation.Nullable
   @Override
   public Map<String, Object> getExportedCustomDirectEventTypeConstants() {
@@ -225,6 +546,10 @@ public class ReactMediaPlayerViewManager extends SimpleViewManager<ReactMediaPla
             .put(EVENT_ON_PLAYER_BUFFER_OK, MapBuilder.of("registrationName", EVENT_ON_PLAYER_BUFFER_OK))
             .put(EVENT_ON_PLAYER_BUFFER_CHANGE, MapBuilder.of("registrationName", EVENT_ON_PLAYER_BUFFER_CHANGE))
             .put(EVENT_ON_PLAYER_FINISHED, MapBuilder.of("registrationName", EVENT_ON_PLAYER_FINISHED))
+            .put(EVENT_ON_PLAYER_CUES_CHANGE, MapBuilder.of("registrationName", EVENT_ON_PLAYER_CUES_CHANGE))
+            .put(EVENT_ON_PLAYER_METADATA, MapBuilder.of("registrationName", EVENT_ON_PLAYER_METADATA))
+            .put(EVENT_ON_PLAYER_ERROR, MapBuilder.of("registrationName", EVENT_ON_PLAYER_ERROR))
+            .put(EVENT_ON_PLAYER_QUALITY_CHANGE, MapBuilder.of("registrationName", EVENT_ON_PLAYER_QUALITY_CHANGE))
             .build();
   }
 
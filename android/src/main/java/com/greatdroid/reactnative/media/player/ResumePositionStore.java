@@ -0,0 +1,196 @@
+package com.greatdroid.reactnative.media.player;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Playback positions kept across app launches, keyed by a content id chosen by the app. Positions
+ * are recorded in memory as playback progresses and written to {@link SharedPreferences} in
+ * batches on {@link PrepareThread}, so the progress timer never touches the disk. Reads from the UI
+ * thread go through {@link #get(String, Callback)}, which waits for the preferences to load off the
+ * main thread.
+ */
+public final class ResumePositionStore {
+  private static final String TAG = "ResumePositionStore";
+  private static final String PREFERENCES_NAME = "media_kit_resume_positions";
+
+  private static final long FLUSH_DELAY_MS = 10000;
+  private static final int MAX_ENTRIES = 200;
+  /**
+   * Positions this close to either end are not worth resuming from.
+   */
+  private static final long MIN_RESUME_POSITION_MS = 5000;
+  private static final long END_MARGIN_MS = 10000;
+
+  private static ResumePositionStore instance;
+
+  private final SharedPreferences preferences;
+  private final Handler handler;
+  private final Handler mainHandler = new Handler(Looper.getMainLooper());
+  private final Map<String, Long> pending = new HashMap<>();
+  private boolean flushScheduled;
+
+  private final Runnable flush = new Runnable() {
+    @Override
+    public void run() {
+      write();
+    }
+  };
+
+  public interface Callback {
+    void onPosition(long positionMs);
+  }
+
+  private ResumePositionStore(SharedPreferences preferences, Handler handler) {
+    this.preferences = preferences;
+    this.handler = handler;
+  }
+
+  public static synchronized ResumePositionStore getInstance(Context context) {
+    if (instance == null) {
+      // Loading starts in the background here; the first synchronous get() waits for it.
+      SharedPreferences preferences = context.getApplicationContext().getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+      instance = new ResumePositionStore(preferences, PrepareThread.getHandler());
+    }
+    return instance;
+  }
+
+  /**
+   * Looks up the position to resume {@code key} from on {@link PrepareThread}, so that the caller
+   * never blocks on the first load of the preferences, and delivers it on the main thread.
+   */
+  public void get(final String key, final Callback callback) {
+    handler.post(new Runnable() {
+      @Override
+      public void run() {
+        final long positionMs = get(key);
+        mainHandler.post(new Runnable() {
+          @Override
+          public void run() {
+            callback.onPosition(positionMs);
+          }
+        });
+      }
+    });
+  }
+
+  /**
+   * Blocks until the preferences are loaded; use {@link #get(String, Callback)} on the main thread.
+   *
+   * @return The position to resume {@code key} from, or 0 if there is none.
+   */
+  public long get(String key) {
+    synchronized (pending) {
+      Long position = pending.get(key);
+      if (position != null) {
+        return position;
+      }
+    }
+    String value = preferences.getString(key, null);
+    return value == null ? 0 : Long.parseLong(value.substring(0, value.indexOf(',')));
+  }
+
+  /**
+   * Records the current position of {@code key}. Positions near the start or the end of the content
+   * clear the entry instead, so finished content starts over next time.
+   *
+   * @param durationMs The content duration, or a negative value if unknown.
+   */
+  public void put(String key, long positionMs, long durationMs) {
+    boolean finished = durationMs > 0 && positionMs > durationMs - END_MARGIN_MS;
+    if (positionMs < MIN_RESUME_POSITION_MS || finished) {
+      positionMs = 0;
+    }
+    synchronized (pending) {
+      pending.put(key, positionMs);
+      if (!flushScheduled) {
+        flushScheduled = true;
+        handler.postDelayed(flush, FLUSH_DELAY_MS);
+      }
+    }
+  }
+
+  public void remove(String key) {
+    put(key, 0, -1);
+  }
+
+  /**
+   * Writes the recorded positions now, e.g. when the app goes to the background.
+   */
+  public void flush() {
+    synchronized (pending) {
+      if (!flushScheduled) {
+        return;
+      }
+      handler.removeCallbacks(flush);
+      handler.post(flush);
+    }
+  }
+
+  private void write() {
+    Map<String, Long> positions;
+    synchronized (pending) {
+      positions = new HashMap<>(pending);
+      pending.clear();
+      flushScheduled = false;
+    }
+    if (positions.isEmpty()) {
+      return;
+    }
+    long now = System.currentTimeMillis();
+    SharedPreferences.Editor editor = preferences.edit();
+    for (Map.Entry<String, Long> entry : positions.entrySet()) {
+      if (entry.getValue() == 0) {
+        editor.remove(entry.getKey());
+      } else {
+        editor.putString(entry.getKey(), entry.getValue() + "," + now);
+      }
+    }
+    trim(editor, positions);
+    if (!editor.commit()) {
+      Log.w(TAG, "write...failed to save " + positions.size() + " positions");
+    }
+  }
+
+  /**
+   * Drops the least recently updated entries beyond {@link #MAX_ENTRIES}.
+   */
+  private void trim(SharedPreferences.Editor editor, Map<String, Long> written) {
+    // The map returned by getAll() must not be modified.
+    Map<String, Object> all = new HashMap<String, Object>(preferences.getAll());
+    all.keySet().removeAll(written.keySet());
+    int excess = all.size() - MAX_ENTRIES;
+    for (long position : written.values()) {
+      if (position != 0) {
+        excess++;
+      }
+    }
+    while (excess > 0) {
+      String oldestKey = null;
+      long oldestTime = Long.MAX_VALUE;
+      for (Map.Entry<String, Object> entry : all.entrySet()) {
+        if (!(entry.getValue() instanceof String)) {
+          continue;
+        }
+        String value = (String) entry.getValue();
+        long time = Long.parseLong(value.substring(value.indexOf(',') + 1));
+        if (time < oldestTime) {
+          oldestTime = time;
+          oldestKey = entry.getKey();
+        }
+      }
+      if (oldestKey == null) {
+        return;
+      }
+      editor.remove(oldestKey);
+      all.remove(oldestKey);
+      excess--;
+    }
+  }
+}
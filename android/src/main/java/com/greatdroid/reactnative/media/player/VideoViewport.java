@@ -0,0 +1,112 @@
+package com.greatdroid.reactnative.media.player;
+
+import com.google.android.exoplayer.chunk.Format;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The pixel size video is actually shown at, shared with the renderers builders so that adaptive
+ * selection never streams a resolution far beyond it. Updated from layout on the main thread and
+ * read from the loading threads.
+ */
+public class VideoViewport {
+  public static final float DEFAULT_SCALE = 1f;
+
+  private volatile int width;
+  private volatile int height;
+  private volatile float scale = DEFAULT_SCALE;
+  private volatile long maxPixels = Long.MAX_VALUE;
+  private volatile long qualityMaxPixels = Long.MAX_VALUE;
+  private volatile float maxFrameRate = Float.MAX_VALUE;
+
+  public void setSize(int width, int height) {
+    this.width = width;
+    this.height = height;
+  }
+
+  /**
+   * @param scale How much to over-provision the view size by, e.g. 1.5 to allow formats up to one
+   *              and a half times the view's pixel size. 0 disables the cap.
+   */
+  public void setScale(float scale) {
+    this.scale = scale;
+  }
+
+  /**
+   * Caps formats to {@code maxPixels} regardless of the view size, e.g. after the decoder failed on
+   * a larger one. {@link Long#MAX_VALUE} removes the cap.
+   */
+  public void setMaxPixels(long maxPixels) {
+    this.maxPixels = maxPixels;
+  }
+
+  public long getMaxPixels() {
+    return maxPixels;
+  }
+
+  /**
+   * Caps formats to {@code maxPixels} and {@code maxFrameRate} while the device is under pressure,
+   * independently of {@link #setMaxPixels(long)}. {@link Long#MAX_VALUE} and {@link Float#MAX_VALUE}
+   * remove the caps.
+   */
+  public void setQualityCap(long maxPixels, float maxFrameRate) {
+    this.qualityMaxPixels = maxPixels;
+    this.maxFrameRate = maxFrameRate;
+  }
+
+  public boolean isCapped() {
+    return maxPixels != Long.MAX_VALUE || qualityMaxPixels != Long.MAX_VALUE || maxFrameRate != Float.MAX_VALUE
+      || isViewCapped();
+  }
+
+  private boolean isViewCapped() {
+    return scale > 0 && width > 0 && height > 0;
+  }
+
+  /**
+   * Returns the formats no larger than the smallest one that covers the scaled view in at least one
+   * dimension, and within the pixel and frame rate caps, keeping their order. Formats without a
+   * known size or frame rate pass those checks. If no format covers the view, all of them pass the
+   * view check; if none is within the caps, the smallest one is kept.
+   */
+  public Format[] filter(Format[] formats) {
+    long ceiling = Math.min(getCeilingPixels(formats), Math.min(maxPixels, qualityMaxPixels));
+    float maxFrameRate = this.maxFrameRate;
+    if (ceiling == Long.MAX_VALUE && maxFrameRate == Float.MAX_VALUE) {
+      return formats;
+    }
+    List<Format> allowed = new ArrayList<>(formats.length);
+    Format smallest = null;
+    for (Format format : formats) {
+      long pixels = (long) format.width * format.height;
+      boolean withinFrameRate = format.frameRate <= 0 || format.frameRate <= maxFrameRate;
+      if ((format.width <= 0 || format.height <= 0 || pixels <= ceiling) && withinFrameRate) {
+        allowed.add(format);
+      }
+      if (format.width > 0 && format.height > 0 && (smallest == null || pixels < (long) smallest.width * smallest.height)) {
+        smallest = format;
+      }
+    }
+    if (allowed.isEmpty() && smallest != null) {
+      allowed.add(smallest);
+    }
+    return allowed.size() == formats.length ? formats : allowed.toArray(new Format[allowed.size()]);
+  }
+
+  private long getCeilingPixels(Format[] formats) {
+    if (!isViewCapped()) {
+      return Long.MAX_VALUE;
+    }
+    float scale = this.scale;
+    int targetWidth = (int) (width * scale);
+    int targetHeight = (int) (height * scale);
+    long ceiling = Long.MAX_VALUE;
+    for (Format format : formats) {
+      if (format.width >= targetWidth || format.height >= targetHeight) {
+        ceiling = Math.min(ceiling, (long) format.width * format.height);
+      }
+    }
+    return ceiling;
+  }
+}
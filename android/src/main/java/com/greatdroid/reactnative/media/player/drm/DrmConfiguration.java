@@ -0,0 +1,69 @@
+package com.greatdroid.reactnative.media.player.drm;
+
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.ReadableMapKeySetIterator;
+import com.google.android.exoplayer.drm.StreamingDrmSessionManager;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * License server settings for protected content, as passed from JS:
+ * <pre>
+ * {
+ *   type: 'widevine' | 'playready' | 'clearkey',
+ *   licenseServer: 'https://...',
+ *   headers: {'X-Token': '...'}
+ * }
+ * </pre>
+ */
+public class DrmConfiguration {
+  private static final UUID CLEARKEY_UUID = new UUID(0xE2719D58A985B3C9L, 0x781AB030AF78D30EL);
+
+  public final UUID uuid;
+  public final String licenseUrl;
+  public final Map<String, String> requestProperties;
+
+  public DrmConfiguration(UUID uuid, String licenseUrl, Map<String, String> requestProperties) {
+    this.uuid = uuid;
+    this.licenseUrl = licenseUrl;
+    this.requestProperties = requestProperties == null ? Collections.<String, String>emptyMap() : requestProperties;
+  }
+
+  public static DrmConfiguration fromReadableMap(ReadableMap map) {
+    if (map == null) {
+      return null;
+    }
+    UUID uuid = StreamingDrmSessionManager.WIDEVINE_UUID;
+    if (map.hasKey("type")) {
+      uuid = uuidOf(map.getString("type"));
+    }
+    String licenseUrl = map.hasKey("licenseServer") ? map.getString("licenseServer") : null;
+    Map<String, String> requestProperties = new HashMap<>();
+    if (map.hasKey("headers")) {
+      ReadableMap headers = map.getMap("headers");
+      ReadableMapKeySetIterator iterator = headers.keySetIterator();
+      while (iterator.hasNextKey()) {
+        String key = iterator.nextKey();
+        requestProperties.put(key, headers.getString(key));
+      }
+    }
+    return new DrmConfiguration(uuid, licenseUrl, requestProperties);
+  }
+
+  private static UUID uuidOf(String type) {
+    switch (type.toLowerCase(Locale.US)) {
+      case "widevine":
+        return StreamingDrmSessionManager.WIDEVINE_UUID;
+      case "playready":
+        return StreamingDrmSessionManager.PLAYREADY_UUID;
+      case "clearkey":
+        return CLEARKEY_UUID;
+      default:
+        throw new IllegalArgumentException("Unsupported drm type: " + type);
+    }
+  }
+}
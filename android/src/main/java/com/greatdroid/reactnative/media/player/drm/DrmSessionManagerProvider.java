@@ -0,0 +1,127 @@
+package com.greatdroid.reactnative.media.player.drm;
+
+import android.annotation.TargetApi;
+import android.media.MediaDrm;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.google.android.exoplayer.drm.DrmSessionManager;
+import com.google.android.exoplayer.drm.StreamingDrmSessionManager;
+import com.google.android.exoplayer.drm.UnsupportedDrmException;
+
+import java.lang.reflect.Field;
+import java.util.UUID;
+
+/**
+ * Hands the same {@link StreamingDrmSessionManager}, and so the same {@code MediaDrm} instance, to
+ * every source a player plays with a given scheme, instead of creating one per renderers build.
+ * Sessions are still opened and closed by the renderers as sources change.
+ */
+@TargetApi(18)
+public class DrmSessionManagerProvider {
+  private static final String TAG = "DrmSessionManagerProvider";
+
+  private final Looper playbackLooper;
+  private final Handler playbackHandler;
+  private final Handler eventHandler;
+  private final LicenseServerDrmCallback drmCallback;
+
+  private StreamingDrmSessionManager sessionManager;
+  private UUID uuid;
+  private volatile StreamingDrmSessionManager.EventListener listener;
+
+  public DrmSessionManagerProvider(Looper playbackLooper, Handler eventHandler, LicenseServerDrmCallback drmCallback) {
+    this.playbackLooper = playbackLooper;
+    this.playbackHandler = new Handler(playbackLooper);
+    this.eventHandler = eventHandler;
+    this.drmCallback = drmCallback;
+  }
+
+  /**
+   * @return The configured scheme, or {@code defaultUuid} if there is no configuration.
+   */
+  public UUID getSchemeUuid(UUID defaultUuid) {
+    DrmConfiguration configuration = drmCallback.getConfiguration();
+    return configuration == null ? defaultUuid : configuration.uuid;
+  }
+
+  /**
+   * @param uuid     The DRM scheme.
+   * @param listener Receives the session manager's events until the next call.
+   */
+  public synchronized StreamingDrmSessionManager acquire(UUID uuid, StreamingDrmSessionManager.EventListener listener) throws UnsupportedDrmException {
+    this.listener = listener;
+    if (sessionManager == null || !uuid.equals(this.uuid)) {
+      if (sessionManager != null) {
+        retire(sessionManager);
+      }
+      sessionManager = new StreamingDrmSessionManager(uuid, playbackLooper, drmCallback, null, eventHandler, forwardingListener);
+      this.uuid = uuid;
+    }
+    return sessionManager;
+  }
+
+  /**
+   * Releases the session manager. Only called once the player is released, so that no renderer has
+   * a session open on it any more.
+   */
+  public synchronized void release() {
+    listener = null;
+    if (sessionManager != null) {
+      releaseMediaDrm(sessionManager);
+      sessionManager = null;
+      uuid = null;
+    }
+  }
+
+  /**
+   * Releases a session manager replaced by one for another scheme. The renderers of the last source
+   * close their sessions on the playback thread when the player stops, which comes before the build
+   * asking for the new scheme, so by the time this runs there, the old manager is closed.
+   */
+  private void retire(final StreamingDrmSessionManager retired) {
+    playbackHandler.post(new Runnable() {
+      @Override
+      public void run() {
+        if (retired.getState() == DrmSessionManager.STATE_CLOSED) {
+          releaseMediaDrm(retired);
+        } else {
+          Log.w(TAG, "retire...session still open, leaving the MediaDrm to finalization");
+        }
+      }
+    });
+  }
+
+  /**
+   * {@link StreamingDrmSessionManager} has no release of its own in ExoPlayer r1.5, so the
+   * {@link MediaDrm} it created is released directly. Left to finalization if that fails.
+   */
+  private static void releaseMediaDrm(StreamingDrmSessionManager sessionManager) {
+    try {
+      Field field = StreamingDrmSessionManager.class.getDeclaredField("mediaDrm");
+      field.setAccessible(true);
+      ((MediaDrm) field.get(sessionManager)).release();
+    } catch (NoSuchFieldException | IllegalAccessException | ClassCastException e) {
+      Log.w(TAG, "releaseMediaDrm...failed", e);
+    }
+  }
+
+  private final StreamingDrmSessionManager.EventListener forwardingListener = new StreamingDrmSessionManager.EventListener() {
+    @Override
+    public void onDrmKeysLoaded() {
+      StreamingDrmSessionManager.EventListener listener = DrmSessionManagerProvider.this.listener;
+      if (listener != null) {
+        listener.onDrmKeysLoaded();
+      }
+    }
+
+    @Override
+    public void onDrmSessionManagerError(Exception e) {
+      StreamingDrmSessionManager.EventListener listener = DrmSessionManagerProvider.this.listener;
+      if (listener != null) {
+        listener.onDrmSessionManagerError(e);
+      }
+    }
+  };
+}
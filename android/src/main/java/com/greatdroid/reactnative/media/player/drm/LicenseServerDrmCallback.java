@@ -0,0 +1,52 @@
+package com.greatdroid.reactnative.media.player.drm;
+
+import android.annotation.TargetApi;
+import android.media.MediaDrm;
+import android.text.TextUtils;
+
+import com.google.android.exoplayer.drm.MediaDrmCallback;
+import com.google.android.exoplayer.util.Util;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * A {@link MediaDrmCallback} that posts key requests to the license server of the current
+ * {@link DrmConfiguration}, falling back to the url embedded in the request.
+ * <p>
+ * Every request goes to the server: the CDM only accepts a streaming license in the session that
+ * asked for it, so there is nothing to replay to later sessions.
+ */
+@TargetApi(18)
+public class LicenseServerDrmCallback implements MediaDrmCallback {
+
+  private volatile DrmConfiguration configuration;
+
+  public void setConfiguration(DrmConfiguration configuration) {
+    this.configuration = configuration;
+  }
+
+  public DrmConfiguration getConfiguration() {
+    return configuration;
+  }
+
+  @Override
+  public byte[] executeProvisionRequest(UUID uuid, MediaDrm.ProvisionRequest request) throws IOException {
+    String url = request.getDefaultUrl() + "&signedRequest=" + new String(request.getData());
+    return Util.executePost(url, null, null);
+  }
+
+  @Override
+  public byte[] executeKeyRequest(UUID uuid, MediaDrm.KeyRequest request) throws IOException {
+    return executeKeyRequest(request.getData(), request.getDefaultUrl());
+  }
+
+  public byte[] executeKeyRequest(byte[] data, String defaultUrl) throws IOException {
+    DrmConfiguration configuration = this.configuration;
+    String url = configuration != null && !TextUtils.isEmpty(configuration.licenseUrl) ? configuration.licenseUrl : defaultUrl;
+    if (TextUtils.isEmpty(url)) {
+      throw new IOException("No license server configured");
+    }
+    return Util.executePost(url, data, configuration == null ? null : configuration.requestProperties);
+  }
+}
@@ -0,0 +1,155 @@
+package com.greatdroid.reactnative.media.player.metadata;
+
+import android.os.Handler;
+
+import com.google.android.exoplayer.metadata.id3.ApicFrame;
+import com.google.android.exoplayer.metadata.id3.BinaryFrame;
+import com.google.android.exoplayer.metadata.id3.GeobFrame;
+import com.google.android.exoplayer.metadata.id3.Id3Frame;
+import com.google.android.exoplayer.metadata.id3.PrivFrame;
+import com.google.android.exoplayer.metadata.id3.TextInformationFrame;
+import com.google.android.exoplayer.metadata.id3.TxxxFrame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Sits between the metadata renderer and the player's listeners: drops frames whose id is not
+ * wanted, drops frames identical to one already delivered for the current source, and batches what
+ * is left into one delivery per coalescing window. Live streams carrying ad or analytics cues
+ * repeat the same frames in every segment.
+ */
+public class MetadataEventFilter {
+  private static final int MAX_REMEMBERED_FRAMES = 64;
+
+  public interface Output {
+    void onMetadata(List<Id3Frame> frames);
+  }
+
+  /**
+   * Runs the delayed flush; a {@link Handler} outside of tests.
+   */
+  interface Scheduler {
+    void postDelayed(Runnable runnable, long delayMs);
+
+    void removeCallbacks(Runnable runnable);
+  }
+
+  private final Scheduler scheduler;
+  private final Output output;
+
+  private final Map<String, Boolean> delivered = new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+      return size() > MAX_REMEMBERED_FRAMES;
+    }
+  };
+  private final List<Id3Frame> pending = new ArrayList<>();
+
+  private long coalesceWindowMs;
+  private Set<String> frameIds;
+  private boolean flushScheduled;
+
+  private final Runnable flushRunnable = new Runnable() {
+    @Override
+    public void run() {
+      flush();
+    }
+  };
+
+  public MetadataEventFilter(final Handler handler, Output output) {
+    this(new Scheduler() {
+      @Override
+      public void postDelayed(Runnable runnable, long delayMs) {
+        handler.postDelayed(runnable, delayMs);
+      }
+
+      @Override
+      public void removeCallbacks(Runnable runnable) {
+        handler.removeCallbacks(runnable);
+      }
+    }, output);
+  }
+
+  MetadataEventFilter(Scheduler scheduler, Output output) {
+    this.scheduler = scheduler;
+    this.output = output;
+  }
+
+  /**
+   * @param coalesceWindowMs Frames arriving within this window are delivered together. 0 delivers
+   *                         each batch from the renderer as it comes.
+   * @param frameIds         The frame ids to deliver, e.g. "TXXX" or "PRIV", or null for all.
+   */
+  public void setOptions(long coalesceWindowMs, Set<String> frameIds) {
+    this.coalesceWindowMs = coalesceWindowMs;
+    this.frameIds = frameIds;
+  }
+
+  public void onMetadata(List<Id3Frame> frames) {
+    for (Id3Frame frame : frames) {
+      if (frameIds != null && !frameIds.contains(frame.id)) {
+        continue;
+      }
+      if (delivered.put(keyOf(frame), Boolean.TRUE) != null) {
+        continue;
+      }
+      pending.add(frame);
+    }
+    if (pending.isEmpty()) {
+      return;
+    }
+    if (coalesceWindowMs <= 0) {
+      flush();
+    } else if (!flushScheduled) {
+      flushScheduled = true;
+      scheduler.postDelayed(flushRunnable, coalesceWindowMs);
+    }
+  }
+
+  private void flush() {
+    flushScheduled = false;
+    scheduler.removeCallbacks(flushRunnable);
+    if (pending.isEmpty()) {
+      return;
+    }
+    List<Id3Frame> frames = Collections.unmodifiableList(new ArrayList<>(pending));
+    pending.clear();
+    output.onMetadata(frames);
+  }
+
+  /**
+   * Forgets delivered and pending frames, e.g. when the source changes.
+   */
+  public void reset() {
+    scheduler.removeCallbacks(flushRunnable);
+    flushScheduled = false;
+    pending.clear();
+    delivered.clear();
+  }
+
+  private static String keyOf(Id3Frame frame) {
+    if (frame instanceof TxxxFrame) {
+      TxxxFrame txxx = (TxxxFrame) frame;
+      return frame.id + "|" + txxx.description + "|" + txxx.value;
+    } else if (frame instanceof TextInformationFrame) {
+      return frame.id + "|" + ((TextInformationFrame) frame).description;
+    } else if (frame instanceof PrivFrame) {
+      PrivFrame priv = (PrivFrame) frame;
+      return frame.id + "|" + priv.owner + "|" + Arrays.hashCode(priv.privateData);
+    } else if (frame instanceof GeobFrame) {
+      GeobFrame geob = (GeobFrame) frame;
+      return frame.id + "|" + geob.filename + "|" + Arrays.hashCode(geob.data);
+    } else if (frame instanceof ApicFrame) {
+      return frame.id + "|" + Arrays.hashCode(((ApicFrame) frame).pictureData);
+    } else if (frame instanceof BinaryFrame) {
+      return frame.id + "|" + Arrays.hashCode(((BinaryFrame) frame).data);
+    }
+    return frame.id + "|" + System.identityHashCode(frame);
+  }
+}
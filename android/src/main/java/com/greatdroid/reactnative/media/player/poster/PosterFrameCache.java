@@ -0,0 +1,235 @@
+package com.greatdroid.reactnative.media.player.poster;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+import android.util.LruCache;
+
+import com.google.android.exoplayer.util.Util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Poster frames for list items, extracted by {@link PosterFrameExtractor} without a player and kept
+ * in a memory and a disk LRU cache keyed by uri, position and size. Concurrent requests for the same
+ * frame share one extraction, and at most {@link #MAX_CONCURRENT_EXTRACTIONS} run at a time so a
+ * scrolling feed cannot pile up decoders.
+ */
+public final class PosterFrameCache {
+  private static final String TAG = "PosterFrameCache";
+  private static final String DIRECTORY_NAME = "media_kit_posters";
+
+  private static final int MAX_CONCURRENT_EXTRACTIONS = 2;
+  private static final long MAX_DISK_BYTES = 32 * 1024 * 1024;
+  private static final int JPEG_QUALITY = 85;
+
+  private static PosterFrameCache instance;
+
+  private final File directory;
+  private final PosterFrameExtractor extractor;
+  private final LruCache<String, Bitmap> memoryCache;
+  private final Map<String, List<Callback>> pending = new HashMap<>();
+
+  private final ExecutorService executor = Executors.newFixedThreadPool(MAX_CONCURRENT_EXTRACTIONS, new ThreadFactory() {
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, "MediaKitPoster");
+      thread.setDaemon(true);
+      thread.setPriority(Thread.MIN_PRIORITY);
+      return thread;
+    }
+  });
+
+  private PosterFrameCache(Context context, File directory) {
+    this.directory = directory;
+    this.extractor = new PosterFrameExtractor(context, Util.getUserAgent(context, "react-native-media-kit"), context.getCacheDir());
+    // An eighth of the heap, in kilobytes.
+    this.memoryCache = new LruCache<String, Bitmap>((int) (Runtime.getRuntime().maxMemory() / 1024 / 8)) {
+      @Override
+      protected int sizeOf(String key, Bitmap bitmap) {
+        return bitmap.getRowBytes() * bitmap.getHeight() / 1024;
+      }
+    };
+  }
+
+  public static synchronized PosterFrameCache getInstance(Context context) {
+    if (instance == null) {
+      Context applicationContext = context.getApplicationContext();
+      File directory = new File(applicationContext.getCacheDir(), DIRECTORY_NAME);
+      if (!directory.isDirectory() && !directory.mkdirs()) {
+        Log.w(TAG, "getInstance...failed to create " + directory);
+      }
+      instance = new PosterFrameCache(applicationContext, directory);
+    }
+    return instance;
+  }
+
+  public interface Callback {
+    /**
+     * @param frame The frame, scaled to fit the requested size.
+     * @param file  The frame as a JPEG file in the disk cache.
+     */
+    void onLoaded(Bitmap frame, File file);
+
+    void onError(Exception e);
+  }
+
+  /**
+   * Loads the keyframe closest to {@code positionMs}. The callback is invoked on the caller's thread
+   * for memory cache hits and on a background thread otherwise.
+   *
+   * @param maxWidth  The frame is scaled down to fit this width, or not at all if 0.
+   * @param maxHeight The frame is scaled down to fit this height, or not at all if 0.
+   */
+  public void load(final String url, final long positionMs, final int maxWidth, final int maxHeight, Callback callback) {
+    final String key = keyOf(url, positionMs, maxWidth, maxHeight);
+    final File file = new File(directory, key + ".jpg");
+    Bitmap frame = memoryCache.get(key);
+    if (frame != null && file.exists()) {
+      callback.onLoaded(frame, file);
+      return;
+    }
+    synchronized (pending) {
+      List<Callback> callbacks = pending.get(key);
+      if (callbacks != null) {
+        callbacks.add(callback);
+        return;
+      }
+      callbacks = new ArrayList<>();
+      callbacks.add(callback);
+      pending.put(key, callbacks);
+    }
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        Bitmap frame = null;
+        Exception error = null;
+        try {
+          frame = loadFromDisk(file);
+          if (frame == null) {
+            frame = extract(url, positionMs, maxWidth, maxHeight, file);
+          }
+          memoryCache.put(key, frame);
+        } catch (Exception e) {
+          Log.w(TAG, "load...failed for " + url + " at " + positionMs + "ms", e);
+          error = e;
+        }
+        List<Callback> callbacks;
+        synchronized (pending) {
+          callbacks = pending.remove(key);
+        }
+        for (Callback callback : callbacks) {
+          if (frame != null) {
+            callback.onLoaded(frame, file);
+          } else {
+            callback.onError(error);
+          }
+        }
+      }
+    });
+  }
+
+  private Bitmap loadFromDisk(File file) {
+    if (!file.exists()) {
+      return null;
+    }
+    Bitmap frame = BitmapFactory.decodeFile(file.getAbsolutePath());
+    if (frame != null && !file.setLastModified(System.currentTimeMillis())) {
+      Log.w(TAG, "loadFromDisk...failed to touch " + file);
+    }
+    return frame;
+  }
+
+  private Bitmap extract(String url, long positionMs, int maxWidth, int maxHeight, File file) throws IOException, InterruptedException {
+    Bitmap frame = extractor.extract(url, positionMs);
+    float scale = 1;
+    if (maxWidth > 0) {
+      scale = Math.min(scale, (float) maxWidth / frame.getWidth());
+    }
+    if (maxHeight > 0) {
+      scale = Math.min(scale, (float) maxHeight / frame.getHeight());
+    }
+    if (scale < 1) {
+      Bitmap scaled = Bitmap.createScaledBitmap(frame, Math.max(1, Math.round(frame.getWidth() * scale)),
+        Math.max(1, Math.round(frame.getHeight() * scale)), true);
+      frame.recycle();
+      frame = scaled;
+    }
+
+    File temp = new File(file.getPath() + ".tmp");
+    OutputStream out = new FileOutputStream(temp);
+    try {
+      frame.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out);
+    } finally {
+      out.close();
+    }
+    if (!temp.renameTo(file)) {
+      throw new IOException("Failed to write " + file);
+    }
+    trimDisk();
+    return frame;
+  }
+
+  /**
+   * Deletes the least recently used files beyond {@link #MAX_DISK_BYTES}.
+   */
+  private synchronized void trimDisk() {
+    File[] files = directory.listFiles();
+    if (files == null) {
+      return;
+    }
+    long size = 0;
+    for (File file : files) {
+      size += file.length();
+    }
+    if (size <= MAX_DISK_BYTES) {
+      return;
+    }
+    Arrays.sort(files, new Comparator<File>() {
+      @Override
+      public int compare(File lhs, File rhs) {
+        long l = lhs.lastModified();
+        long r = rhs.lastModified();
+        return l < r ? -1 : (l == r ? 0 : 1);
+      }
+    });
+    for (File file : files) {
+      if (size <= MAX_DISK_BYTES) {
+        break;
+      }
+      long length = file.length();
+      if (file.delete()) {
+        size -= length;
+      }
+    }
+  }
+
+  private static String keyOf(String url, long positionMs, int maxWidth, int maxHeight) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-1");
+      digest.update((url + "@" + positionMs + ":" + maxWidth + "x" + maxHeight).getBytes("UTF-8"));
+      StringBuilder key = new StringBuilder();
+      for (byte b : digest.digest()) {
+        key.append(String.format("%02x", b & 0xff));
+      }
+      return key.toString();
+    } catch (NoSuchAlgorithmException | IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,222 @@
+package com.greatdroid.reactnative.media.player.poster;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.media.MediaMetadataRetriever;
+import android.net.Uri;
+import android.util.Log;
+
+import com.google.android.exoplayer.C;
+import com.google.android.exoplayer.dash.DashSegmentIndex;
+import com.google.android.exoplayer.dash.mpd.AdaptationSet;
+import com.google.android.exoplayer.dash.mpd.MediaPresentationDescription;
+import com.google.android.exoplayer.dash.mpd.MediaPresentationDescriptionParser;
+import com.google.android.exoplayer.dash.mpd.Period;
+import com.google.android.exoplayer.dash.mpd.RangedUri;
+import com.google.android.exoplayer.dash.mpd.Representation;
+import com.google.android.exoplayer.hls.HlsMasterPlaylist;
+import com.google.android.exoplayer.hls.HlsMediaPlaylist;
+import com.google.android.exoplayer.hls.HlsPlaylist;
+import com.google.android.exoplayer.hls.HlsPlaylistParser;
+import com.google.android.exoplayer.hls.Variant;
+import com.google.android.exoplayer.upstream.DataSource;
+import com.google.android.exoplayer.upstream.DataSpec;
+import com.google.android.exoplayer.upstream.DefaultUriDataSource;
+import com.google.android.exoplayer.upstream.UriLoadable;
+import com.google.android.exoplayer.util.UriUtil;
+import com.google.android.exoplayer.util.Util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Decodes a single keyframe with {@link MediaMetadataRetriever}, which needs neither a surface nor a
+ * codec held by the caller, and decodes with the platform's software codecs where it has them.
+ * <p>
+ * Progressive sources are handed to the retriever as they are. The retriever cannot read HLS or
+ * DASH manifests, so for those the segment containing the position is resolved from the lowest
+ * bitrate video variant and downloaded, along with its initialization segment, into a temporary
+ * file; the frame is then the first keyframe of that segment.
+ */
+final class PosterFrameExtractor {
+  private static final String TAG = "PosterFrameExtractor";
+
+  private final Context context;
+  private final String userAgent;
+  private final File tempDirectory;
+
+  PosterFrameExtractor(Context context, String userAgent, File tempDirectory) {
+    this.context = context;
+    this.userAgent = userAgent;
+    this.tempDirectory = tempDirectory;
+  }
+
+  /**
+   * @return The frame, at its original size.
+   */
+  Bitmap extract(String url, long positionMs) throws IOException, InterruptedException {
+    Uri uri = Uri.parse(url);
+    switch (Util.inferContentType(uri.getLastPathSegment())) {
+      case Util.TYPE_HLS:
+        return extractFromSegments(resolveHls(url, positionMs));
+      case Util.TYPE_DASH:
+        return extractFromDash(url, positionMs);
+      case Util.TYPE_SS:
+        throw new IOException("Poster frames are not supported for SmoothStreaming: " + url);
+      default:
+        return retrieve(url, positionMs);
+    }
+  }
+
+  private Bitmap retrieve(String url, long positionMs) throws IOException {
+    MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+    try {
+      Uri uri = Uri.parse(url);
+      String scheme = uri.getScheme();
+      if (scheme == null || "file".equals(scheme)) {
+        retriever.setDataSource(uri.getPath());
+      } else if ("http".equals(scheme) || "https".equals(scheme)) {
+        HashMap<String, String> headers = new HashMap<>();
+        headers.put("User-Agent", userAgent);
+        retriever.setDataSource(url, headers);
+      } else {
+        retriever.setDataSource(context, uri);
+      }
+      Bitmap frame = retriever.getFrameAtTime(positionMs * 1000, MediaMetadataRetriever.OPTION_CLOSEST_SYNC);
+      if (frame == null) {
+        throw new IOException("No frame at " + positionMs + "ms in " + url);
+      }
+      return frame;
+    } catch (RuntimeException e) {
+      // setDataSource reports unreadable sources with IllegalArgumentException.
+      throw new IOException("Failed to retrieve a frame from " + url, e);
+    } finally {
+      retriever.release();
+    }
+  }
+
+  private Bitmap extractFromSegments(List<DataSpec> dataSpecs) throws IOException {
+    File file = File.createTempFile("segment", null, tempDirectory);
+    try {
+      FileOutputStream out = new FileOutputStream(file);
+      try {
+        byte[] buffer = new byte[16 * 1024];
+        for (DataSpec dataSpec : dataSpecs) {
+          DataSource dataSource = new DefaultUriDataSource(context, userAgent);
+          try {
+            dataSource.open(dataSpec);
+            int read;
+            while ((read = dataSource.read(buffer, 0, buffer.length)) != C.RESULT_END_OF_INPUT) {
+              out.write(buffer, 0, read);
+            }
+          } finally {
+            dataSource.close();
+          }
+        }
+      } finally {
+        out.close();
+      }
+      // Segments start with a keyframe.
+      return retrieve(file.getAbsolutePath(), 0);
+    } finally {
+      if (!file.delete()) {
+        Log.w(TAG, "extractFromSegments...failed to delete " + file);
+      }
+    }
+  }
+
+  private List<DataSpec> resolveHls(String url, long positionMs) throws IOException, InterruptedException {
+    HlsPlaylist playlist = load(url, new HlsPlaylistParser());
+    if (playlist instanceof HlsMasterPlaylist) {
+      Variant lowest = null;
+      for (Variant variant : ((HlsMasterPlaylist) playlist).variants) {
+        if (lowest == null || variant.format.bitrate < lowest.format.bitrate) {
+          lowest = variant;
+        }
+      }
+      if (lowest == null) {
+        throw new IOException("No variants in " + url);
+      }
+      playlist = load(UriUtil.resolve(playlist.baseUri, lowest.url), new HlsPlaylistParser());
+    }
+    if (!(playlist instanceof HlsMediaPlaylist)) {
+      throw new IOException("Unexpected playlist at " + url);
+    }
+    HlsMediaPlaylist mediaPlaylist = (HlsMediaPlaylist) playlist;
+    if (mediaPlaylist.segments.isEmpty()) {
+      throw new IOException("No segments in " + url);
+    }
+    long positionUs = positionMs * 1000;
+    HlsMediaPlaylist.Segment segment = mediaPlaylist.segments.get(0);
+    for (HlsMediaPlaylist.Segment candidate : mediaPlaylist.segments) {
+      if (candidate.startTimeUs > positionUs) {
+        break;
+      }
+      segment = candidate;
+    }
+    if (segment.isEncrypted) {
+      throw new IOException("Poster frames are not supported for encrypted HLS: " + url);
+    }
+    Uri segmentUri = UriUtil.resolveToUri(mediaPlaylist.baseUri, segment.url);
+    List<DataSpec> dataSpecs = new ArrayList<>();
+    dataSpecs.add(new DataSpec(segmentUri, segment.byterangeOffset, segment.byterangeLength, null));
+    return dataSpecs;
+  }
+
+  private Bitmap extractFromDash(String url, long positionMs) throws IOException, InterruptedException {
+    MediaPresentationDescription mpd = load(url, new MediaPresentationDescriptionParser());
+    int periodIndex = 0;
+    while (periodIndex < mpd.getPeriodCount() - 1 && mpd.getPeriod(periodIndex + 1).startMs <= positionMs) {
+      periodIndex++;
+    }
+    Period period = mpd.getPeriod(periodIndex);
+    Representation lowest = null;
+    for (AdaptationSet adaptationSet : period.adaptationSets) {
+      if (adaptationSet.type != AdaptationSet.TYPE_VIDEO || adaptationSet.hasContentProtection()) {
+        continue;
+      }
+      for (Representation representation : adaptationSet.representations) {
+        if (lowest == null || representation.format.bitrate < lowest.format.bitrate) {
+          lowest = representation;
+        }
+      }
+    }
+    if (lowest == null) {
+      throw new IOException("No clear video representation in " + url);
+    }
+    long periodPositionMs = positionMs - period.startMs;
+    if (lowest instanceof Representation.SingleSegmentRepresentation) {
+      // A complete MP4 file, which the retriever can seek in by itself.
+      return retrieve(((Representation.SingleSegmentRepresentation) lowest).uri.toString(), periodPositionMs);
+    }
+
+    DashSegmentIndex index = lowest.getIndex();
+    if (index == null) {
+      throw new IOException("No segment index in " + url);
+    }
+    List<DataSpec> dataSpecs = new ArrayList<>();
+    RangedUri initializationUri = lowest.getInitializationUri();
+    if (initializationUri != null) {
+      dataSpecs.add(toDataSpec(initializationUri));
+    }
+    long periodDurationMs = mpd.getPeriodDuration(periodIndex);
+    long periodDurationUs = periodDurationMs == -1 ? -1 : periodDurationMs * 1000;
+    int segmentNum = Math.max(index.getSegmentNum(periodPositionMs * 1000, periodDurationUs), index.getFirstSegmentNum());
+    dataSpecs.add(toDataSpec(index.getSegmentUrl(segmentNum)));
+    return extractFromSegments(dataSpecs);
+  }
+
+  private static DataSpec toDataSpec(RangedUri rangedUri) {
+    return new DataSpec(rangedUri.getUri(), rangedUri.start, rangedUri.length, null);
+  }
+
+  private <T> T load(String url, UriLoadable.Parser<T> parser) throws IOException, InterruptedException {
+    UriLoadable<T> loadable = new UriLoadable<>(url, new DefaultUriDataSource(context, userAgent), parser);
+    loadable.load();
+    return loadable.getResult();
+  }
+}
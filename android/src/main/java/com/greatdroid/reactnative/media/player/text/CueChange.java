@@ -0,0 +1,21 @@
+package com.greatdroid.reactnative.media.player.text;
+
+import com.google.android.exoplayer.text.Cue;
+
+import java.util.List;
+
+/**
+ * The difference between two successive lists of rendered cues. Cue ids are assigned by
+ * {@link CueDiffer} and stay the same for as long as a cue is on screen.
+ */
+public final class CueChange {
+  public final List<Cue> added;
+  public final int[] addedIds;
+  public final int[] removedIds;
+
+  CueChange(List<Cue> added, int[] addedIds, int[] removedIds) {
+    this.added = added;
+    this.addedIds = addedIds;
+    this.removedIds = removedIds;
+  }
+}
@@ -0,0 +1,70 @@
+package com.greatdroid.reactnative.media.player.text;
+
+import com.google.android.exoplayer.text.Cue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Turns the full cue lists emitted by text renderers into {@link CueChange}s. Cues are compared by
+ * content rather than identity, since some parsers create new {@link Cue} instances on every lookup.
+ */
+public final class CueDiffer {
+
+  private final Map<String, Integer> activeIds = new HashMap<>();
+  private int nextId;
+
+  /**
+   * @return The change from the previous list to {@code cues}, or null if nothing changed.
+   */
+  public CueChange update(List<Cue> cues) {
+    Map<String, Cue> current = new HashMap<>();
+    for (Cue cue : cues) {
+      current.put(keyOf(cue), cue);
+    }
+
+    int[] removedIds = new int[activeIds.size()];
+    int removedCount = 0;
+    Iterator<Map.Entry<String, Integer>> iterator = activeIds.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<String, Integer> entry = iterator.next();
+      if (!current.containsKey(entry.getKey())) {
+        removedIds[removedCount++] = entry.getValue();
+        iterator.remove();
+      }
+    }
+
+    List<Cue> added = new ArrayList<>();
+    int[] addedIds = new int[current.size()];
+    for (Map.Entry<String, Cue> entry : current.entrySet()) {
+      if (!activeIds.containsKey(entry.getKey())) {
+        int id = nextId++;
+        activeIds.put(entry.getKey(), id);
+        addedIds[added.size()] = id;
+        added.add(entry.getValue());
+      }
+    }
+
+    if (removedCount == 0 && added.isEmpty()) {
+      return null;
+    }
+    return new CueChange(added, trim(addedIds, added.size()), trim(removedIds, removedCount));
+  }
+
+  static String keyOf(Cue cue) {
+    return cue.text + "|" + cue.line + "|" + cue.lineType + "|" + cue.lineAnchor + "|" + cue.position
+      + "|" + cue.positionAnchor + "|" + cue.size + "|" + cue.alignment;
+  }
+
+  private static int[] trim(int[] ids, int length) {
+    if (ids.length == length) {
+      return ids;
+    }
+    int[] trimmed = new int[length];
+    System.arraycopy(ids, 0, trimmed, 0, length);
+    return trimmed;
+  }
+}
@@ -0,0 +1,172 @@
+package com.greatdroid.reactnative.media.player.text;
+
+import com.google.android.exoplayer.text.Cue;
+import com.google.android.exoplayer.text.Subtitle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The cues of a parsed {@link Subtitle}, flattened into the intervals between the times cues start
+ * and end so that the cues at a position are found with a binary search. Built once off the main thread; the
+ * parsers' own lookups scan every cue on each call.
+ */
+public final class SubtitleCueIndex {
+
+  private final long[] eventTimesUs;
+  private final List<List<Cue>> intervals;
+
+  private SubtitleCueIndex(long[] eventTimesUs, List<List<Cue>> intervals) {
+    this.eventTimesUs = eventTimesUs;
+    this.intervals = intervals;
+  }
+
+  /**
+   * Reads each cue's span from {@code subtitle} with one lookup per event time, then builds the
+   * index from the spans.
+   */
+  public static SubtitleCueIndex build(Subtitle subtitle) {
+    List<TimedCue> timedCues = new ArrayList<>();
+    // The spans still open, by cue content, so that a cue listed again at a later event is extended.
+    Map<String, TimedCue> open = new HashMap<>();
+    Set<String> current = new HashSet<>();
+    int count = subtitle.getEventTimeCount();
+    for (int i = 0; i < count; i++) {
+      long timeUs = subtitle.getEventTime(i);
+      current.clear();
+      for (Cue cue : subtitle.getCues(timeUs)) {
+        String key = CueDiffer.keyOf(cue);
+        current.add(key);
+        if (!open.containsKey(key)) {
+          TimedCue timedCue = new TimedCue(cue, timeUs, Long.MAX_VALUE);
+          open.put(key, timedCue);
+          timedCues.add(timedCue);
+        }
+      }
+      Iterator<Map.Entry<String, TimedCue>> iterator = open.entrySet().iterator();
+      while (iterator.hasNext()) {
+        Map.Entry<String, TimedCue> entry = iterator.next();
+        if (!current.contains(entry.getKey())) {
+          entry.getValue().endTimeUs = timeUs;
+          iterator.remove();
+        }
+      }
+    }
+    return build(timedCues);
+  }
+
+  /**
+   * Sorts the span boundaries once and sweeps them, so that building takes O(n log n) plus the size
+   * of the intervals. Cues active in the same interval are listed in the order they started.
+   */
+  static SubtitleCueIndex build(List<TimedCue> timedCues) {
+    List<TimedCue> byStart = new ArrayList<>(timedCues.size());
+    for (TimedCue timedCue : timedCues) {
+      if (timedCue.endTimeUs > timedCue.startTimeUs) {
+        byStart.add(timedCue);
+      }
+    }
+    Collections.sort(byStart, new Comparator<TimedCue>() {
+      @Override
+      public int compare(TimedCue lhs, TimedCue rhs) {
+        return compareLongs(lhs.startTimeUs, rhs.startTimeUs);
+      }
+    });
+    List<TimedCue> byEnd = new ArrayList<>(byStart);
+    Collections.sort(byEnd, new Comparator<TimedCue>() {
+      @Override
+      public int compare(TimedCue lhs, TimedCue rhs) {
+        return compareLongs(lhs.endTimeUs, rhs.endTimeUs);
+      }
+    });
+
+    long[] boundaries = new long[byStart.size() * 2];
+    int boundaryCount = 0;
+    for (TimedCue timedCue : byStart) {
+      boundaries[boundaryCount++] = timedCue.startTimeUs;
+      if (timedCue.endTimeUs != Long.MAX_VALUE) {
+        boundaries[boundaryCount++] = timedCue.endTimeUs;
+      }
+    }
+    Arrays.sort(boundaries, 0, boundaryCount);
+
+    long[] eventTimesUs = new long[boundaryCount];
+    List<List<Cue>> intervals = new ArrayList<>(boundaryCount);
+    Set<TimedCue> active = new LinkedHashSet<>();
+    int eventCount = 0;
+    int startIndex = 0;
+    int endIndex = 0;
+    for (int i = 0; i < boundaryCount; i++) {
+      long timeUs = boundaries[i];
+      if (eventCount > 0 && eventTimesUs[eventCount - 1] == timeUs) {
+        continue;
+      }
+      while (endIndex < byEnd.size() && byEnd.get(endIndex).endTimeUs <= timeUs) {
+        active.remove(byEnd.get(endIndex++));
+      }
+      while (startIndex < byStart.size() && byStart.get(startIndex).startTimeUs <= timeUs) {
+        active.add(byStart.get(startIndex++));
+      }
+      eventTimesUs[eventCount++] = timeUs;
+      if (active.isEmpty()) {
+        intervals.add(Collections.<Cue>emptyList());
+      } else {
+        Cue[] cues = new Cue[active.size()];
+        int j = 0;
+        for (TimedCue timedCue : active) {
+          cues[j++] = timedCue.cue;
+        }
+        intervals.add(Collections.unmodifiableList(Arrays.asList(cues)));
+      }
+    }
+    return new SubtitleCueIndex(Arrays.copyOf(eventTimesUs, eventCount), intervals);
+  }
+
+  private static int compareLongs(long lhs, long rhs) {
+    return lhs < rhs ? -1 : (lhs == rhs ? 0 : 1);
+  }
+
+  /**
+   * @return The index of the interval containing {@code timeUs}, or -1 if it precedes every event.
+   */
+  public int indexOf(long timeUs) {
+    int index = Arrays.binarySearch(eventTimesUs, timeUs);
+    return index >= 0 ? index : -index - 2;
+  }
+
+  public List<Cue> getCues(int index) {
+    return index < 0 ? Collections.<Cue>emptyList() : intervals.get(index);
+  }
+
+  /**
+   * @return The time at which the interval after {@code index} starts, or {@link Long#MAX_VALUE}
+   * if {@code index} is the last one.
+   */
+  public long getNextEventTimeUs(int index) {
+    return index + 1 < eventTimesUs.length ? eventTimesUs[index + 1] : Long.MAX_VALUE;
+  }
+
+  /**
+   * A cue shown from {@code startTimeUs} up to, but not including, {@code endTimeUs}.
+   */
+  static final class TimedCue {
+    final Cue cue;
+    final long startTimeUs;
+    long endTimeUs;
+
+    TimedCue(Cue cue, long startTimeUs, long endTimeUs) {
+      this.cue = cue;
+      this.startTimeUs = startTimeUs;
+      this.endTimeUs = endTimeUs;
+    }
+  }
+}
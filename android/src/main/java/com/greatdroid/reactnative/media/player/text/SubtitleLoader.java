@@ -0,0 +1,148 @@
+package com.greatdroid.reactnative.media.player.text;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.util.Log;
+
+import com.google.android.exoplayer.C;
+import com.google.android.exoplayer.ParserException;
+import com.google.android.exoplayer.text.Subtitle;
+import com.google.android.exoplayer.text.SubtitleParser;
+import com.google.android.exoplayer.text.subrip.SubripParser;
+import com.google.android.exoplayer.text.ttml.TtmlParser;
+import com.google.android.exoplayer.text.webvtt.WebvttParser;
+import com.google.android.exoplayer.upstream.DataSpec;
+import com.google.android.exoplayer.upstream.DefaultUriDataSource;
+import com.google.android.exoplayer.upstream.UriDataSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Downloads and parses a sideloaded WebVTT, SubRip or TTML file on a thread of its own, so that a
+ * slow subtitle host never holds up the shared prepare thread, and delivers its
+ * {@link SubtitleCueIndex} on the event thread.
+ */
+public class SubtitleLoader {
+  private static final String TAG = "SubtitleLoader";
+
+  private static final int READ_BUFFER_SIZE = 16 * 1024;
+
+  private static final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, "MediaKitSubtitle");
+      thread.setDaemon(true);
+      return thread;
+    }
+  });
+
+  private final Context context;
+  private final String userAgent;
+  private final String url;
+  private final String type;
+  private final Handler eventHandler;
+
+  private volatile boolean cancelled = false;
+
+  public interface Callback {
+    void onLoaded(SubtitleCueIndex index);
+
+    void onError(Exception e);
+  }
+
+  /**
+   * @param type One of "vtt", "srt" or "ttml", or null to infer it from the url.
+   */
+  public SubtitleLoader(Context context, String userAgent, String url, String type, Handler eventHandler) {
+    this.context = context;
+    this.userAgent = userAgent;
+    this.url = url;
+    this.type = type;
+    this.eventHandler = eventHandler;
+  }
+
+  public void load(final Callback callback) {
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        if (cancelled) {
+          return;
+        }
+        SubtitleCueIndex index = null;
+        Exception error = null;
+        try {
+          byte[] data = download();
+          Subtitle subtitle = createParser().parse(data, 0, data.length);
+          index = SubtitleCueIndex.build(subtitle);
+          Log.d(TAG, "load...parsed " + subtitle.getEventTimeCount() + " events from " + url);
+        } catch (IOException | RuntimeException e) {
+          // Parsers throw unchecked exceptions for some malformed files as well as ParserException.
+          error = e;
+        }
+        final SubtitleCueIndex result = index;
+        final Exception resultError = error;
+        eventHandler.post(new Runnable() {
+          @Override
+          public void run() {
+            if (cancelled) {
+              return;
+            }
+            if (resultError != null) {
+              callback.onError(resultError);
+            } else {
+              callback.onLoaded(result);
+            }
+          }
+        });
+      }
+    });
+  }
+
+  public void cancel() {
+    cancelled = true;
+  }
+
+  private byte[] download() throws IOException {
+    UriDataSource dataSource = new DefaultUriDataSource(context, userAgent);
+    try {
+      dataSource.open(new DataSpec(Uri.parse(url)));
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[READ_BUFFER_SIZE];
+      int read;
+      while (!cancelled && (read = dataSource.read(buffer, 0, buffer.length)) != C.RESULT_END_OF_INPUT) {
+        out.write(buffer, 0, read);
+      }
+      return out.toByteArray();
+    } finally {
+      dataSource.close();
+    }
+  }
+
+  private SubtitleParser createParser() throws ParserException {
+    String format = type;
+    if (format == null) {
+      String path = Uri.parse(url).getLastPathSegment();
+      format = path == null ? "" : path.substring(path.lastIndexOf('.') + 1);
+    }
+    switch (format.toLowerCase(Locale.US)) {
+      case "vtt":
+      case "webvtt":
+        return new WebvttParser();
+      case "srt":
+      case "subrip":
+        return new SubripParser();
+      case "ttml":
+      case "dfxp":
+      case "xml":
+        return new TtmlParser();
+      default:
+        throw new ParserException("Unsupported subtitle format: " + format);
+    }
+  }
+}
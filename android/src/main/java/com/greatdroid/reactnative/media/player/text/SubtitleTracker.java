@@ -0,0 +1,66 @@
+package com.greatdroid.reactnative.media.player.text;
+
+import android.os.Handler;
+
+import com.google.android.exoplayer.ExoPlayer;
+import com.google.android.exoplayer.text.TextRenderer;
+
+/**
+ * Renders the cues of a {@link SubtitleCueIndex} against the playback position. Instead of polling,
+ * it wakes up at the next cue boundary while playing, and on {@link #update()} after seeks and
+ * state changes.
+ */
+public class SubtitleTracker {
+
+  private final ExoPlayer exoPlayer;
+  private final Handler handler;
+  private final TextRenderer output;
+
+  private SubtitleCueIndex index;
+  private int currentInterval = -1;
+
+  private final Runnable updateRunnable = new Runnable() {
+    @Override
+    public void run() {
+      update();
+    }
+  };
+
+  public SubtitleTracker(ExoPlayer exoPlayer, Handler handler, TextRenderer output) {
+    this.exoPlayer = exoPlayer;
+    this.handler = handler;
+    this.output = output;
+  }
+
+  public void setIndex(SubtitleCueIndex index) {
+    this.index = index;
+    this.currentInterval = -1;
+    handler.removeCallbacks(updateRunnable);
+    if (index != null) {
+      update();
+    }
+  }
+
+  public boolean isActive() {
+    return index != null;
+  }
+
+  public void update() {
+    handler.removeCallbacks(updateRunnable);
+    if (index == null) {
+      return;
+    }
+    long positionUs = exoPlayer.getCurrentPosition() * 1000;
+    int interval = index.indexOf(positionUs);
+    if (interval != currentInterval) {
+      currentInterval = interval;
+      output.onCues(index.getCues(interval));
+    }
+
+    long nextEventTimeUs = index.getNextEventTimeUs(interval);
+    if (exoPlayer.getPlayWhenReady() && exoPlayer.getPlaybackState() == ExoPlayer.STATE_READY
+      && nextEventTimeUs != Long.MAX_VALUE) {
+      handler.postDelayed(updateRunnable, (nextEventTimeUs - positionUs) / 1000 + 1);
+    }
+  }
+}
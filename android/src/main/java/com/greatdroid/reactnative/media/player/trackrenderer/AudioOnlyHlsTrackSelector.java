@@ -0,0 +1,58 @@
+package com.greatdroid.reactnative.media.player.trackrenderer;
+
+import com.google.android.exoplayer.hls.HlsMasterPlaylist;
+import com.google.android.exoplayer.hls.HlsTrackSelector;
+import com.google.android.exoplayer.hls.Variant;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Exposes only the variants of a master playlist whose CODECS attribute lists no video codec, so
+ * that audio-only playback does not download muxed video segments.
+ */
+final class AudioOnlyHlsTrackSelector implements HlsTrackSelector {
+  private static final String[] VIDEO_CODEC_PREFIXES = {"avc", "hvc", "hev", "mp4v", "vp8", "vp9", "vp09"};
+
+  static boolean hasAudioOnlyVariants(HlsMasterPlaylist playlist) {
+    for (Variant variant : playlist.variants) {
+      if (isAudioOnly(variant)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public void selectTracks(HlsMasterPlaylist playlist, Output output) {
+    List<Variant> variants = new ArrayList<>();
+    for (Variant variant : playlist.variants) {
+      if (isAudioOnly(variant)) {
+        variants.add(variant);
+      }
+    }
+    if (variants.size() > 1) {
+      output.adaptiveTrack(playlist, variants.toArray(new Variant[variants.size()]));
+    } else if (variants.size() == 1) {
+      output.fixedTrack(playlist, variants.get(0));
+    }
+  }
+
+  private static boolean isAudioOnly(Variant variant) {
+    String codecs = variant.format.codecs;
+    if (codecs == null || codecs.trim().isEmpty()) {
+      // Without CODECS there is no telling; assume the variant has video.
+      return false;
+    }
+    for (String codec : codecs.split(",")) {
+      String normalized = codec.trim().toLowerCase(Locale.US);
+      for (String prefix : VIDEO_CODEC_PREFIXES) {
+        if (normalized.startsWith(prefix)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,174 @@
+package com.greatdroid.reactnative.media.player.trackrenderer;
+
+import android.net.Uri;
+import android.util.Log;
+import android.util.LruCache;
+
+import com.google.android.exoplayer.extractor.Extractor;
+import com.google.android.exoplayer.extractor.flv.FlvExtractor;
+import com.google.android.exoplayer.extractor.mp3.Mp3Extractor;
+import com.google.android.exoplayer.extractor.mp4.FragmentedMp4Extractor;
+import com.google.android.exoplayer.extractor.mp4.Mp4Extractor;
+import com.google.android.exoplayer.extractor.ogg.OggVorbisExtractor;
+import com.google.android.exoplayer.extractor.ts.AdtsExtractor;
+import com.google.android.exoplayer.extractor.ts.PsExtractor;
+import com.google.android.exoplayer.extractor.ts.TsExtractor;
+import com.google.android.exoplayer.extractor.wav.WavExtractor;
+import com.google.android.exoplayer.extractor.webm.WebmExtractor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Orders the extractors of progressive sources so that the one for the expected container sniffs
+ * first. {@link com.google.android.exoplayer.extractor.ExtractorSampleSource} stops at the first
+ * extractor that recognizes the data, so a right guess skips every other sniff, some of which, like
+ * MP3's sync search, read far into the file; a wrong guess still falls back to the rest.
+ * <p>
+ * The container comes from an explicit hint, else the file extension, else what the extensions of
+ * earlier sources from the same host said.
+ */
+final class ContainerHint {
+  private static final String TAG = "ContainerHint";
+
+  static final String MP4 = "mp4";
+  static final String WEBM = "webm";
+  static final String MP3 = "mp3";
+  static final String AAC = "aac";
+  static final String TS = "ts";
+  static final String FLV = "flv";
+  static final String WAV = "wav";
+  static final String OGG = "ogg";
+  static final String PS = "ps";
+
+  /**
+   * Every container the sample source's default extractors read, in their default order.
+   */
+  private static final String[] CONTAINERS = {WEBM, MP4, MP3, AAC, TS, FLV, OGG, PS, WAV};
+
+  private static final LruCache<String, String> learnedByHost = new LruCache<>(64);
+
+  private ContainerHint() {
+  }
+
+  /**
+   * @param hint The container the app says the source is in, or null.
+   * @return The container to try first for {@code uri}, or null if there is no telling.
+   */
+  static String resolve(String hint, Uri uri) {
+    if (hint != null) {
+      String container = normalize(hint);
+      if (!isKnown(container)) {
+        // Leave containers no extractor reads, e.g. FLAC or Opus, to the defaults to report.
+        Log.w(TAG, "resolve...no extractor list for " + hint);
+        return null;
+      }
+      return container;
+    }
+    String host = uri.getAuthority();
+    String container = fromPath(uri.getPath());
+    if (container != null) {
+      if (host != null) {
+        learnedByHost.put(host, container);
+      }
+      return container;
+    }
+    return host == null ? null : learnedByHost.get(host);
+  }
+
+  /**
+   * @return Extractors for every container the defaults cover, those for {@code container} first,
+   * or null to let the sample source use its defaults.
+   */
+  static Extractor[] createExtractors(String container) {
+    if (container == null) {
+      return null;
+    }
+    List<Extractor> extractors = new ArrayList<>();
+    addExtractors(container, extractors);
+    for (String other : CONTAINERS) {
+      if (!other.equals(container)) {
+        addExtractors(other, extractors);
+      }
+    }
+    return extractors.toArray(new Extractor[extractors.size()]);
+  }
+
+  private static void addExtractors(String container, List<Extractor> extractors) {
+    switch (container) {
+      case MP4:
+        extractors.add(new Mp4Extractor());
+        extractors.add(new FragmentedMp4Extractor());
+        break;
+      case WEBM:
+        extractors.add(new WebmExtractor());
+        break;
+      case MP3:
+        extractors.add(new Mp3Extractor());
+        break;
+      case AAC:
+        extractors.add(new AdtsExtractor());
+        break;
+      case TS:
+        extractors.add(new TsExtractor());
+        break;
+      case FLV:
+        extractors.add(new FlvExtractor());
+        break;
+      case OGG:
+        extractors.add(new OggVorbisExtractor());
+        break;
+      case PS:
+        extractors.add(new PsExtractor());
+        break;
+      case WAV:
+        extractors.add(new WavExtractor());
+        break;
+      default:
+        break;
+    }
+  }
+
+  private static String normalize(String container) {
+    container = container.toLowerCase(Locale.US);
+    switch (container) {
+      case "m4a":
+      case "m4v":
+      case "mov":
+      case "3gp":
+        return MP4;
+      case "mkv":
+        return WEBM;
+      case "oga":
+        return OGG;
+      case "mpg":
+      case "mpeg":
+      case "vob":
+        return PS;
+      default:
+        return container;
+    }
+  }
+
+  private static String fromPath(String path) {
+    if (path == null) {
+      return null;
+    }
+    int dot = path.lastIndexOf('.');
+    if (dot < 0 || dot < path.lastIndexOf('/')) {
+      return null;
+    }
+    String container = normalize(path.substring(dot + 1));
+    return isKnown(container) ? container : null;
+  }
+
+  private static boolean isKnown(String container) {
+    for (String known : CONTAINERS) {
+      if (known.equals(container)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
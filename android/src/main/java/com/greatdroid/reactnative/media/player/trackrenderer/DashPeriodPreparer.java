@@ -0,0 +1,219 @@
+package com.greatdroid.reactnative.media.player.trackrenderer;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.google.android.exoplayer.chunk.ChunkSampleSource;
+import com.google.android.exoplayer.chunk.Format;
+import com.google.android.exoplayer.dash.mpd.AdaptationSet;
+import com.google.android.exoplayer.dash.mpd.MediaPresentationDescription;
+import com.google.android.exoplayer.dash.mpd.Period;
+import com.google.android.exoplayer.dash.mpd.RangedUri;
+import com.google.android.exoplayer.dash.mpd.Representation;
+import com.google.android.exoplayer.upstream.DataSpec;
+import com.google.android.exoplayer.upstream.DefaultUriDataSource;
+import com.google.android.exoplayer.util.ManifestFetcher;
+import com.greatdroid.reactnative.media.player.TrackRenderersBuilder;
+import com.greatdroid.reactnative.media.player.VideoViewport;
+import com.greatdroid.reactnative.media.player.upstream.PrefetchCache;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Follows how far the chunk sources have loaded and, once loading gets within
+ * {@link #LOOKAHEAD_MS} of the next period, prefetches the initialization segment of the audio and
+ * the video representation that period is likely to start with. The chunk sources then start the period from
+ * {@link PrefetchCache} instead of stalling on a round trip per adaptation set at the boundary.
+ * Events are passed on to the player's own listener.
+ */
+final class DashPeriodPreparer implements ChunkSampleSource.EventListener {
+  private static final String TAG = "DashPeriodPreparer";
+
+  // Below the prefetch cache expiry, so prepared segments are still there when they are needed.
+  private static final long LOOKAHEAD_MS = 20000;
+
+  private final Context context;
+  private final String userAgent;
+  private final ManifestFetcher<MediaPresentationDescription> manifestFetcher;
+  private final ChunkSampleSource.EventListener listener;
+  private final Object prefetchScope;
+  private final VideoViewport viewport;
+
+  private final Set<Long> preparedPeriods = new HashSet<>();
+  private Format videoFormat;
+  private Format audioFormat;
+  private volatile boolean released;
+
+  /**
+   * @param prefetchScope The scope the chunk sources' {@code PrefetchingDataSource}s look up loads in.
+   */
+  DashPeriodPreparer(Context context, String userAgent, ManifestFetcher<MediaPresentationDescription> manifestFetcher, ChunkSampleSource.EventListener listener, Object prefetchScope, VideoViewport viewport) {
+    this.context = context;
+    this.userAgent = userAgent;
+    this.manifestFetcher = manifestFetcher;
+    this.listener = listener;
+    this.prefetchScope = prefetchScope;
+    this.viewport = viewport;
+  }
+
+  @Override
+  public void onLoadStarted(int sourceId, long length, int type, int trigger, Format format, long mediaStartTimeMs, long mediaEndTimeMs) {
+    if (format != null && sourceId == TrackRenderersBuilder.TRACK_VIDEO_INDEX) {
+      videoFormat = format;
+    } else if (format != null && sourceId == TrackRenderersBuilder.TRACK_AUDIO_INDEX) {
+      audioFormat = format;
+    }
+    if (!released && mediaEndTimeMs >= 0) {
+      prepareNextPeriod(mediaEndTimeMs);
+    }
+    listener.onLoadStarted(sourceId, length, type, trigger, format, mediaStartTimeMs, mediaEndTimeMs);
+  }
+
+  private void prepareNextPeriod(long loadPositionMs) {
+    MediaPresentationDescription mpd = manifestFetcher.getManifest();
+    if (mpd == null) {
+      return;
+    }
+    for (int i = 1; i < mpd.getPeriodCount(); i++) {
+      Period period = mpd.getPeriod(i);
+      if (period.startMs <= loadPositionMs) {
+        continue;
+      }
+      if (period.startMs - loadPositionMs <= LOOKAHEAD_MS && preparedPeriods.add(period.startMs)) {
+        Log.d(TAG, "prepareNextPeriod...period=" + period.id + ", startMs=" + period.startMs);
+        prefetchInitialization(period);
+      }
+      return;
+    }
+  }
+
+  private void prefetchInitialization(Period period) {
+    // The chunk sources play the first video and audio adaptation sets unless told otherwise.
+    int videoIndex = period.getAdaptationSetIndex(AdaptationSet.TYPE_VIDEO);
+    if (videoIndex != -1) {
+      prefetchInitialization(selectVideoRepresentation(period.adaptationSets.get(videoIndex).representations));
+    }
+    int audioIndex = period.getAdaptationSetIndex(AdaptationSet.TYPE_AUDIO);
+    if (audioIndex != -1) {
+      prefetchInitialization(selectAudioRepresentation(period.adaptationSets.get(audioIndex).representations));
+    }
+  }
+
+  /**
+   * @return The representation the video evaluator is most likely to start the period with: the
+   * highest bitrate at or below the one loading now, among those the viewport allows.
+   */
+  private Representation selectVideoRepresentation(List<Representation> representations) {
+    Format[] formats = new Format[representations.size()];
+    for (int i = 0; i < formats.length; i++) {
+      formats[i] = representations.get(i).format;
+    }
+    Format[] allowed = viewport.filter(formats);
+    int currentBitrate = videoFormat != null ? videoFormat.bitrate : 0;
+    Format below = null;
+    Format lowest = null;
+    for (Format format : allowed) {
+      if (format.bitrate <= currentBitrate && (below == null || format.bitrate > below.bitrate)) {
+        below = format;
+      }
+      if (lowest == null || format.bitrate < lowest.bitrate) {
+        lowest = format;
+      }
+    }
+    Format selected = below != null ? below : lowest;
+    return selected == null ? null : representations.get(indexOf(formats, selected));
+  }
+
+  /**
+   * @return The representation with the id of the audio format loading now, or else the first one,
+   * which the audio track selector enables by default.
+   */
+  private Representation selectAudioRepresentation(List<Representation> representations) {
+    if (representations.isEmpty()) {
+      return null;
+    }
+    if (audioFormat != null) {
+      for (Representation representation : representations) {
+        if (representation.format.id.equals(audioFormat.id)) {
+          return representation;
+        }
+      }
+    }
+    return representations.get(0);
+  }
+
+  private static int indexOf(Format[] formats, Format format) {
+    for (int i = 0; i < formats.length; i++) {
+      if (formats[i] == format) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private void prefetchInitialization(Representation representation) {
+    if (representation == null) {
+      return;
+    }
+    RangedUri initializationUri = representation.getInitializationUri();
+    if (initializationUri == null) {
+      return;
+    }
+    // Request the same range DashChunkSource will, so the prefetch is found again.
+    RangedUri indexUri = representation.getIndexUri();
+    RangedUri requestUri = initializationUri;
+    if (indexUri != null) {
+      RangedUri merged = initializationUri.attemptMerge(indexUri);
+      if (merged != null) {
+        requestUri = merged;
+      }
+    }
+    DataSpec dataSpec = new DataSpec(requestUri.getUri(), requestUri.start, requestUri.length,
+      representation.getCacheKey());
+    if (released) {
+      return;
+    }
+    Log.d(TAG, "prefetchInitialization...representation=" + representation.format.id);
+    PrefetchCache.Task task = PrefetchCache.prefetch(prefetchScope, new DefaultUriDataSource(context, userAgent), dataSpec);
+    if (released) {
+      // Released while this was being added; a source change may have discarded the scope first.
+      PrefetchCache.discard(task);
+    }
+  }
+
+  /**
+   * Stops preparing periods. Prefetches already made stay in the player's scope, for a recovery to
+   * pick up.
+   */
+  void release() {
+    released = true;
+  }
+
+  @Override
+  public void onLoadCompleted(int sourceId, long bytesLoaded, int type, int trigger, Format format, long mediaStartTimeMs, long mediaEndTimeMs, long elapsedRealtimeMs, long loadDurationMs) {
+    listener.onLoadCompleted(sourceId, bytesLoaded, type, trigger, format, mediaStartTimeMs, mediaEndTimeMs, elapsedRealtimeMs, loadDurationMs);
+  }
+
+  @Override
+  public void onLoadCanceled(int sourceId, long bytesLoaded) {
+    listener.onLoadCanceled(sourceId, bytesLoaded);
+  }
+
+  @Override
+  public void onLoadError(int sourceId, IOException e) {
+    listener.onLoadError(sourceId, e);
+  }
+
+  @Override
+  public void onUpstreamDiscarded(int sourceId, long mediaStartTimeMs, long mediaEndTimeMs) {
+    listener.onUpstreamDiscarded(sourceId, mediaStartTimeMs, mediaEndTimeMs);
+  }
+
+  @Override
+  public void onDownstreamFormatChanged(int sourceId, Format format, int trigger, long mediaTimeMs) {
+    listener.onDownstreamFormatChanged(sourceId, format, trigger, mediaTimeMs);
+  }
+}
@@ -5,7 +5,6 @@ import android.media.AudioManager;
 import android.media.MediaCodec;
 import android.os.Build;
 import android.os.Handler;
-import android.os.Looper;
 import android.util.Log;
 
 import com.google.android.exoplayer.DefaultLoadControl;
@@ -26,21 +25,28 @@ import com.google.android.exoplayer.dash.mpd.MediaPresentationDescriptionParser;
 import com.google.android.exoplayer.dash.mpd.Period;
 import com.google.android.exoplayer.dash.mpd.UtcTimingElement;
 import com.google.android.exoplayer.dash.mpd.UtcTimingElementResolver;
-import com.google.android.exoplayer.drm.MediaDrmCallback;
 import com.google.android.exoplayer.drm.StreamingDrmSessionManager;
 import com.google.android.exoplayer.drm.UnsupportedDrmException;
 import com.google.android.exoplayer.text.TextRenderer;
 import com.google.android.exoplayer.text.TextTrackRenderer;
 import com.google.android.exoplayer.upstream.BandwidthMeter;
 import com.google.android.exoplayer.upstream.DataSource;
-import com.google.android.exoplayer.upstream.DefaultAllocator;
+import com.google.android.exoplayer.upstream.Allocator;
 import com.google.android.exoplayer.upstream.DefaultBandwidthMeter;
-import com.google.android.exoplayer.upstream.DefaultUriDataSource;
 import com.google.android.exoplayer.upstream.UriDataSource;
 import com.google.android.exoplayer.util.ManifestFetcher;
+import com.greatdroid.reactnative.media.player.BufferLimit;
 import com.greatdroid.reactnative.media.player.TrackRenderersBuilder;
+import com.greatdroid.reactnative.media.player.upstream.BackBuffer;
+import com.greatdroid.reactnative.media.player.upstream.BackBufferDataSource;
+import com.greatdroid.reactnative.media.player.upstream.FailoverDataSource;
+import com.greatdroid.reactnative.media.player.VideoViewport;
+import com.greatdroid.reactnative.media.player.drm.DrmSessionManagerProvider;
+import com.greatdroid.reactnative.media.player.upstream.OriginSet;
+import com.greatdroid.reactnative.media.player.upstream.PrefetchingDataSource;
 
 import java.io.IOException;
+import java.util.UUID;
 
 public class DashRenderersBuilder implements TrackRenderersBuilder, UtcTimingElementResolver.UtcTimingCallback, ManifestFetcher.ManifestCallback<MediaPresentationDescription> {
   private static final String TAG = "DashRenderersBuilder";
@@ -59,46 +65,64 @@ public class DashRenderersBuilder implements TrackRenderersBuilder, UtcTimingEle
   private final String userAgent;
   private final String url;
   private final Handler eventHandler;
-  private final MediaDrmCallback drmCallback;
+  private final Handler buildHandler;
+  private final DrmSessionManagerProvider drmSessionManagerProvider;
   private final MediaCodecVideoTrackRenderer.EventListener videoTrackListener;
   private final MediaCodecAudioTrackRenderer.EventListener audioTrackListener;
   private final TextRenderer textRenderer;
+  private final ChunkSampleSource.EventListener sampleSourceListener;
   private final BandwidthMeter.EventListener bandwidthMeterListener;
-  private final Looper playbackLooper;
+  private final VideoViewport viewport;
+  private final BackBuffer backBuffer;
+  private final OriginSet originSet;
+  private final BufferLimit bufferLimit;
+  private final Allocator allocator;
+  private final Object prefetchScope;
 
   private volatile boolean cancelled = false;
 
   private Callback callback;
   private UriDataSource uriDataSource;
   ManifestFetcher<MediaPresentationDescription> manifestFetcher;
+  private volatile DashPeriodPreparer periodPreparer;
   private MediaPresentationDescription mpd;
   private long elapsedRealtimeOffset;
 
-  public DashRenderersBuilder(Context context, String userAgent, String url, Handler eventHandler, MediaDrmCallback drmCallback, MediaCodecVideoTrackRenderer.EventListener videoTrackListener, MediaCodecAudioTrackRenderer.EventListener audioTrackListener, TextRenderer textRenderer, BandwidthMeter.EventListener bandwidthMeterListener, Looper playbackLooper) {
+  public DashRenderersBuilder(Context context, String userAgent, String url, Handler eventHandler, Handler buildHandler, DrmSessionManagerProvider drmSessionManagerProvider, MediaCodecVideoTrackRenderer.EventListener videoTrackListener, MediaCodecAudioTrackRenderer.EventListener audioTrackListener, TextRenderer textRenderer, ChunkSampleSource.EventListener sampleSourceListener, BandwidthMeter.EventListener bandwidthMeterListener, VideoViewport viewport, BackBuffer backBuffer, OriginSet originSet, BufferLimit bufferLimit, Allocator allocator, Object prefetchScope) {
     this.context = context;
     this.userAgent = userAgent;
     this.url = url;
     this.eventHandler = eventHandler;
-    this.drmCallback = drmCallback;
+    this.buildHandler = buildHandler;
+    this.drmSessionManagerProvider = drmSessionManagerProvider;
     this.videoTrackListener = videoTrackListener;
     this.audioTrackListener = audioTrackListener;
     this.textRenderer = textRenderer;
+    this.sampleSourceListener = sampleSourceListener;
     this.bandwidthMeterListener = bandwidthMeterListener;
-    this.playbackLooper = playbackLooper;
+    this.viewport = viewport;
+    this.backBuffer = backBuffer;
+    this.originSet = originSet;
+    this.bufferLimit = bufferLimit;
+    this.allocator = allocator;
+    this.prefetchScope = prefetchScope;
   }
 
 
   @Override
   public void build(Callback callback) {
     this.callback = callback;
-    this.uriDataSource = new DefaultUriDataSource(context, userAgent);
+    this.uriDataSource = FailoverDataSource.wrap(context, null, userAgent, originSet);
     this.manifestFetcher = new ManifestFetcher<>(url, uriDataSource, new MediaPresentationDescriptionParser());
-    this.manifestFetcher.singleLoad(eventHandler.getLooper(), this);
+    this.manifestFetcher.singleLoad(buildHandler.getLooper(), this);
   }
 
   @Override
   public void cancel() {
     cancelled = true;
+    if (periodPreparer != null) {
+      periodPreparer.release();
+    }
   }
 
 
@@ -137,28 +161,38 @@ public class DashRenderersBuilder implements TrackRenderersBuilder, UtcTimingEle
   }
 
   @Override
-  public void onSingleManifestError(final IOException e) {
+  public void onSingleManifestError(IOException e) {
     if (cancelled) {
       return;
     }
-    eventHandler.post(new Runnable() {
-      @Override
-      public void run() {
-        callback.onError(e);
-      }
-    });
+    notifyError(e);
   }
 
   private void build() {
-    Period period = mpd.getPeriod(0);
-    LoadControl loadControl = new DefaultLoadControl(new DefaultAllocator(BUFFER_SEGMENT_SIZE));
+    LoadControl loadControl = new LimitedLoadControl(new DefaultLoadControl(allocator), bufferLimit);
     DefaultBandwidthMeter bandwidthMeter = new DefaultBandwidthMeter(eventHandler, bandwidthMeterListener);
 
-    boolean hasContentProtection = false;
-    for (int i = 0; i < period.adaptationSets.size(); i++) {
-      AdaptationSet adaptationSet = period.adaptationSets.get(i);
-      if (adaptationSet.type != AdaptationSet.TYPE_UNKNOWN) {
-        hasContentProtection |= adaptationSet.hasContentProtection();
+    // Look at every period: a clear pre-roll may be followed by protected content.
+    Period protectedPeriod = null;
+    for (int i = 0; i < mpd.getPeriodCount() && protectedPeriod == null; i++) {
+      Period period = mpd.getPeriod(i);
+      for (int j = 0; j < period.adaptationSets.size(); j++) {
+        AdaptationSet adaptationSet = period.adaptationSets.get(j);
+        if (adaptationSet.type != AdaptationSet.TYPE_UNKNOWN && adaptationSet.hasContentProtection()) {
+          protectedPeriod = period;
+          break;
+        }
+      }
+    }
+    boolean hasContentProtection = protectedPeriod != null;
+
+    // Live manifests may gain periods on refresh.
+    DashPeriodPreparer periodPreparer = null;
+    if (mpd.dynamic || mpd.getPeriodCount() > 1) {
+      periodPreparer = new DashPeriodPreparer(context, userAgent, manifestFetcher, sampleSourceListener, prefetchScope, viewport);
+      this.periodPreparer = periodPreparer;
+      if (cancelled) {
+        periodPreparer.release();
       }
     }
 
@@ -167,11 +201,12 @@ public class DashRenderersBuilder implements TrackRenderersBuilder, UtcTimingEle
     StreamingDrmSessionManager drmSessionManager = null;
     if (hasContentProtection) {
       if (Build.VERSION.SDK_INT < 18) {
-        callback.onError(new UnsupportedDrmException(UnsupportedDrmException.REASON_UNSUPPORTED_SCHEME));
+        notifyError(new UnsupportedDrmException(UnsupportedDrmException.REASON_UNSUPPORTED_SCHEME));
         return;
       }
       try {
-        drmSessionManager = StreamingDrmSessionManager.newWidevineInstance(playbackLooper, drmCallback, null, eventHandler, new StreamingDrmSessionManager.EventListener() {
+        UUID uuid = drmSessionManagerProvider.getSchemeUuid(StreamingDrmSessionManager.WIDEVINE_UUID);
+        drmSessionManager = drmSessionManagerProvider.acquire(uuid, new StreamingDrmSessionManager.EventListener() {
           @Override
           public void onDrmKeysLoaded() {
 
@@ -185,42 +220,47 @@ public class DashRenderersBuilder implements TrackRenderersBuilder, UtcTimingEle
             callback.onError(e);
           }
         });
-        filterHdContent = getWidevineSecurityLevel(drmSessionManager) != SECURITY_LEVEL_1;
-      } catch (final UnsupportedDrmException e) {
-        if (!cancelled) {
-          callback.onError(e);
-        }
+        filterHdContent = StreamingDrmSessionManager.WIDEVINE_UUID.equals(uuid)
+          && getWidevineSecurityLevel(drmSessionManager) != SECURITY_LEVEL_1;
+      } catch (UnsupportedDrmException e) {
+        notifyError(e);
         return;
       }
     }
 
+    ChunkSampleSource.EventListener mediaSampleSourceListener = periodPreparer != null ? periodPreparer : sampleSourceListener;
+
     // Build the video renderer.
-    DataSource videoDataSource = new DefaultUriDataSource(context, bandwidthMeter, userAgent);
+    DataSource videoDataSource = new BackBufferDataSource(
+      new PrefetchingDataSource(FailoverDataSource.wrap(context, bandwidthMeter, userAgent, originSet), prefetchScope), backBuffer);
+    FormatEvaluator videoFormatEvaluator = new ViewportFormatEvaluator(
+      new FormatEvaluator.AdaptiveEvaluator(bandwidthMeter), viewport);
     ChunkSource videoChunkSource = new DashChunkSource(manifestFetcher,
       DefaultDashTrackSelector.newVideoInstance(context, true, filterHdContent),
-      videoDataSource, new FormatEvaluator.AdaptiveEvaluator(bandwidthMeter), LIVE_EDGE_LATENCY_MS,
+      videoDataSource, videoFormatEvaluator, LIVE_EDGE_LATENCY_MS,
       elapsedRealtimeOffset, eventHandler, null, TRACK_VIDEO_INDEX);
     ChunkSampleSource videoSampleSource = new ChunkSampleSource(videoChunkSource, loadControl,
-      VIDEO_BUFFER_SEGMENTS * BUFFER_SEGMENT_SIZE, eventHandler, null,
+      VIDEO_BUFFER_SEGMENTS * BUFFER_SEGMENT_SIZE, eventHandler, mediaSampleSourceListener,
       TRACK_VIDEO_INDEX);
     TrackRenderer videoTrackRenderer = new MediaCodecVideoTrackRenderer(context, videoSampleSource,
       MediaCodecSelector.DEFAULT, MediaCodec.VIDEO_SCALING_MODE_SCALE_TO_FIT, 5000,
       drmSessionManager, true, eventHandler, videoTrackListener, 50);
 
     // Build the audio renderer.
-    DataSource audioDataSource = new DefaultUriDataSource(context, bandwidthMeter, userAgent);
+    DataSource audioDataSource = new BackBufferDataSource(
+      new PrefetchingDataSource(FailoverDataSource.wrap(context, bandwidthMeter, userAgent, originSet), prefetchScope), backBuffer);
     ChunkSource audioChunkSource = new DashChunkSource(manifestFetcher,
       DefaultDashTrackSelector.newAudioInstance(), audioDataSource, null, LIVE_EDGE_LATENCY_MS,
       elapsedRealtimeOffset, eventHandler, null, TRACK_AUDIO_INDEX);
     ChunkSampleSource audioSampleSource = new ChunkSampleSource(audioChunkSource, loadControl,
-      AUDIO_BUFFER_SEGMENTS * BUFFER_SEGMENT_SIZE, eventHandler, null,
+      AUDIO_BUFFER_SEGMENTS * BUFFER_SEGMENT_SIZE, eventHandler, mediaSampleSourceListener,
       TRACK_AUDIO_INDEX);
     TrackRenderer audioTrackRenderer = new MediaCodecAudioTrackRenderer(audioSampleSource,
       MediaCodecSelector.DEFAULT, drmSessionManager, true, eventHandler, audioTrackListener,
       AudioCapabilities.getCapabilities(context), AudioManager.STREAM_MUSIC);
 
     // Build the text renderer.
-    DataSource textDataSource = new DefaultUriDataSource(context, bandwidthMeter, userAgent);
+    DataSource textDataSource = FailoverDataSource.wrap(context, bandwidthMeter, userAgent, originSet);
     ChunkSource textChunkSource = new DashChunkSource(manifestFetcher,
       DefaultDashTrackSelector.newTextInstance(), textDataSource, null, LIVE_EDGE_LATENCY_MS,
       elapsedRealtimeOffset, eventHandler, null, TRACK_TEXT_INDEX);
@@ -237,7 +277,20 @@ public class DashRenderersBuilder implements TrackRenderersBuilder, UtcTimingEle
     eventHandler.post(new Runnable() {
       @Override
       public void run() {
-        callback.onFinish(trackRenderers);
+        if (!cancelled) {
+          callback.onFinish(trackRenderers);
+        }
+      }
+    });
+  }
+
+  private void notifyError(final Exception e) {
+    eventHandler.post(new Runnable() {
+      @Override
+      public void run() {
+        if (!cancelled) {
+          callback.onError(e);
+        }
       }
     });
   }
@@ -12,15 +12,26 @@ import com.google.android.exoplayer.MediaCodecVideoTrackRenderer;
 import com.google.android.exoplayer.TrackRenderer;
 import com.google.android.exoplayer.audio.AudioCapabilities;
 import com.google.android.exoplayer.extractor.ExtractorSampleSource;
+import com.google.android.exoplayer.metadata.MetadataTrackRenderer;
+import com.google.android.exoplayer.metadata.id3.Id3Frame;
+import com.google.android.exoplayer.metadata.id3.Id3Parser;
 import com.google.android.exoplayer.text.TextRenderer;
 import com.google.android.exoplayer.text.TextTrackRenderer;
 import com.google.android.exoplayer.upstream.Allocator;
 import com.google.android.exoplayer.upstream.BandwidthMeter;
 import com.google.android.exoplayer.upstream.DataSource;
-import com.google.android.exoplayer.upstream.DefaultAllocator;
 import com.google.android.exoplayer.upstream.DefaultBandwidthMeter;
 import com.google.android.exoplayer.upstream.DefaultUriDataSource;
+import com.google.android.exoplayer.upstream.UriDataSource;
 import com.greatdroid.reactnative.media.player.TrackRenderersBuilder;
+import com.greatdroid.reactnative.media.player.upstream.BackBuffer;
+import com.greatdroid.reactnative.media.player.upstream.BackBufferDataSource;
+import com.greatdroid.reactnative.media.player.upstream.FailoverDataSource;
+import com.greatdroid.reactnative.media.player.upstream.MappedFileDataSource;
+import com.greatdroid.reactnative.media.player.upstream.OriginSet;
+import com.greatdroid.reactnative.media.player.upstream.ProgressiveDataSource;
+
+import java.util.List;
 
 public class ExtractorRenderersBuilder implements TrackRenderersBuilder {
 
@@ -31,29 +42,80 @@ public class ExtractorRenderersBuilder implements TrackRenderersBuilder {
   private final String userAgent;
   private final Uri uri;
   private final Handler eventHandler;
+  private final Handler buildHandler;
   private final MediaCodecVideoTrackRenderer.EventListener videoTrackListener;
   private final MediaCodecAudioTrackRenderer.EventListener audioTrackListener;
   private final TextRenderer textRenderer;
+  private final MetadataTrackRenderer.MetadataRenderer<List<Id3Frame>> metadataRenderer;
   private final BandwidthMeter.EventListener bandwidthMeterListener;
+  private final BackBuffer backBuffer;
+  private final OriginSet originSet;
+  private final String container;
+  private final Allocator allocator;
+
+  private volatile boolean cancelled = false;
+  private volatile ProgressiveDataSource progressiveDataSource;
 
-  public ExtractorRenderersBuilder(Context context, String userAgent, Uri uri, Handler eventHandler, MediaCodecVideoTrackRenderer.EventListener videoTrackListener, MediaCodecAudioTrackRenderer.EventListener audioTrackListener, TextRenderer textRenderer, BandwidthMeter.EventListener bandwidthMeterListener) {
+  public ExtractorRenderersBuilder(Context context, String userAgent, Uri uri, Handler eventHandler, Handler buildHandler, MediaCodecVideoTrackRenderer.EventListener videoTrackListener, MediaCodecAudioTrackRenderer.EventListener audioTrackListener, TextRenderer textRenderer, MetadataTrackRenderer.MetadataRenderer<List<Id3Frame>> metadataRenderer, BandwidthMeter.EventListener bandwidthMeterListener, BackBuffer backBuffer, OriginSet originSet, String container, Allocator allocator) {
     this.context = context;
     this.userAgent = userAgent;
     this.uri = uri;
     this.eventHandler = eventHandler;
+    this.buildHandler = buildHandler;
     this.videoTrackListener = videoTrackListener;
     this.audioTrackListener = audioTrackListener;
     this.textRenderer = textRenderer;
+    this.metadataRenderer = metadataRenderer;
     this.bandwidthMeterListener = bandwidthMeterListener;
+    this.backBuffer = backBuffer;
+    this.originSet = originSet;
+    this.container = container;
+    this.allocator = allocator;
   }
 
   @Override
   public void build(final Callback callback) {
-    Allocator allocator = new DefaultAllocator(BUFFER_SEGMENT_SIZE);
+    buildHandler.post(new Runnable() {
+      @Override
+      public void run() {
+        if (cancelled) {
+          return;
+        }
+        final TrackRenderer[] trackRenderers = buildTrackRenderers();
+        eventHandler.post(new Runnable() {
+          @Override
+          public void run() {
+            if (!cancelled) {
+              callback.onFinish(trackRenderers);
+            }
+          }
+        });
+      }
+    });
+  }
+
+  private TrackRenderer[] buildTrackRenderers() {
     DefaultBandwidthMeter bandwidthMeter = new DefaultBandwidthMeter(eventHandler, bandwidthMeterListener);
-    DataSource dataSource = new DefaultUriDataSource(context, bandwidthMeter, userAgent);
+    DataSource dataSource;
+    if (MappedFileDataSource.isLocal(uri)) {
+      // Nothing to measure or to keep for local media.
+      dataSource = new MappedFileDataSource(context, new DefaultUriDataSource(context, userAgent));
+    } else {
+      final DefaultBandwidthMeter meter = bandwidthMeter;
+      ProgressiveDataSource progressiveDataSource = new ProgressiveDataSource(new ProgressiveDataSource.Factory() {
+        @Override
+        public UriDataSource createDataSource() {
+          return FailoverDataSource.wrap(context, meter, userAgent, originSet);
+        }
+      });
+      this.progressiveDataSource = progressiveDataSource;
+      if (cancelled) {
+        progressiveDataSource.release();
+      }
+      dataSource = new BackBufferDataSource(progressiveDataSource, backBuffer);
+    }
     ExtractorSampleSource sampleSource = new ExtractorSampleSource(uri, dataSource, allocator,
-      BUFFER_SEGMENT_COUNT * BUFFER_SEGMENT_SIZE);
+      BUFFER_SEGMENT_COUNT * BUFFER_SEGMENT_SIZE, ContainerHint.createExtractors(ContainerHint.resolve(container, uri)));
 
     MediaCodecVideoTrackRenderer videoTrackRenderer = new MediaCodecVideoTrackRenderer(context,
       sampleSource, MediaCodecSelector.DEFAULT, MediaCodec.VIDEO_SCALING_MODE_SCALE_TO_FIT, 5000,
@@ -63,21 +125,23 @@ public class ExtractorRenderersBuilder implements TrackRenderersBuilder {
       AudioCapabilities.getCapabilities(context), AudioManager.STREAM_MUSIC);
     TextTrackRenderer textTrackRenderer = new TextTrackRenderer(sampleSource, textRenderer,
       eventHandler.getLooper());
+    // ID3 samples come from MPEG-TS files; other containers simply expose no metadata track.
+    MetadataTrackRenderer<List<Id3Frame>> metadataTrackRenderer = new MetadataTrackRenderer<>(
+      sampleSource, new Id3Parser(), metadataRenderer, eventHandler.getLooper());
 
-    final TrackRenderer[] trackRenderers = new TrackRenderer[TRACK_RENDER_COUNT];
+    TrackRenderer[] trackRenderers = new TrackRenderer[TRACK_RENDER_COUNT];
     trackRenderers[TRACK_VIDEO_INDEX] = videoTrackRenderer;
     trackRenderers[TRACK_AUDIO_INDEX] = audioTrackRenderer;
     trackRenderers[TRACK_TEXT_INDEX] = textTrackRenderer;
-    eventHandler.post(new Runnable() {
-      @Override
-      public void run() {
-        callback.onFinish(trackRenderers);
-      }
-    });
+    trackRenderers[TRACK_METADATA_INDEX] = metadataTrackRenderer;
+    return trackRenderers;
   }
 
   @Override
   public void cancel() {
-    //do nothing
+    cancelled = true;
+    if (progressiveDataSource != null) {
+      progressiveDataSource.release();
+    }
   }
 }
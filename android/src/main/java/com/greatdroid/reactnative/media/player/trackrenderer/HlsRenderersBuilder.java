@@ -3,7 +3,9 @@ package com.greatdroid.reactnative.media.player.trackrenderer;
 import android.content.Context;
 import android.media.AudioManager;
 import android.media.MediaCodec;
+import android.net.Uri;
 import android.os.Handler;
+import android.util.Log;
 
 import com.google.android.exoplayer.DefaultLoadControl;
 import com.google.android.exoplayer.LoadControl;
@@ -15,10 +17,13 @@ import com.google.android.exoplayer.audio.AudioCapabilities;
 import com.google.android.exoplayer.hls.DefaultHlsTrackSelector;
 import com.google.android.exoplayer.hls.HlsChunkSource;
 import com.google.android.exoplayer.hls.HlsMasterPlaylist;
+import com.google.android.exoplayer.hls.HlsMediaPlaylist;
 import com.google.android.exoplayer.hls.HlsPlaylist;
 import com.google.android.exoplayer.hls.HlsPlaylistParser;
 import com.google.android.exoplayer.hls.HlsSampleSource;
+import com.google.android.exoplayer.hls.HlsTrackSelector;
 import com.google.android.exoplayer.hls.PtsTimestampAdjusterProvider;
+import com.google.android.exoplayer.hls.Variant;
 import com.google.android.exoplayer.metadata.MetadataTrackRenderer;
 import com.google.android.exoplayer.metadata.id3.Id3Frame;
 import com.google.android.exoplayer.metadata.id3.Id3Parser;
@@ -27,16 +32,31 @@ import com.google.android.exoplayer.text.TextTrackRenderer;
 import com.google.android.exoplayer.text.eia608.Eia608TrackRenderer;
 import com.google.android.exoplayer.upstream.BandwidthMeter;
 import com.google.android.exoplayer.upstream.DataSource;
-import com.google.android.exoplayer.upstream.DefaultAllocator;
+import com.google.android.exoplayer.upstream.DataSpec;
+import com.google.android.exoplayer.upstream.Allocator;
 import com.google.android.exoplayer.upstream.DefaultBandwidthMeter;
 import com.google.android.exoplayer.upstream.DefaultUriDataSource;
 import com.google.android.exoplayer.util.ManifestFetcher;
+import com.google.android.exoplayer.util.UriUtil;
+import com.greatdroid.reactnative.media.player.BufferLimit;
 import com.greatdroid.reactnative.media.player.TrackRenderersBuilder;
+import com.greatdroid.reactnative.media.player.upstream.BackBuffer;
+import com.greatdroid.reactnative.media.player.upstream.BackBufferDataSource;
+import com.greatdroid.reactnative.media.player.upstream.FailoverDataSource;
+import com.greatdroid.reactnative.media.player.VideoViewport;
+import com.greatdroid.reactnative.media.player.upstream.HlsKeyCache;
+import com.greatdroid.reactnative.media.player.upstream.HlsKeyCachingDataSource;
+import com.greatdroid.reactnative.media.player.upstream.OriginSet;
+import com.greatdroid.reactnative.media.player.upstream.PrefetchCache;
+import com.greatdroid.reactnative.media.player.upstream.PrefetchingDataSource;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 public class HlsRenderersBuilder implements TrackRenderersBuilder, ManifestFetcher.ManifestCallback<HlsPlaylist> {
+  private static final String TAG = "HlsRenderersBuilder";
 
   private static final int BUFFER_SEGMENT_SIZE = 64 * 1024;
   private static final int MAIN_BUFFER_SEGMENTS = 256;
@@ -46,39 +66,69 @@ public class HlsRenderersBuilder implements TrackRenderersBuilder, ManifestFetch
   private final String userAgent;
   private final String url;
   private final Handler eventHandler;
+  private final Handler buildHandler;
   private final MediaCodecVideoTrackRenderer.EventListener videoTrackListener;
   private final MediaCodecAudioTrackRenderer.EventListener audioTrackListener;
   private final TextRenderer textRenderer;
+  private final HlsSampleSource.EventListener sampleSourceListener;
   private final MetadataTrackRenderer.MetadataRenderer<List<Id3Frame>> metadataRenderer;
   private final BandwidthMeter.EventListener bandwidthMeterListener;
+  private final VideoViewport viewport;
+  private final BackBuffer backBuffer;
+  private final OriginSet originSet;
+  private final BufferLimit bufferLimit;
+  private final boolean audioOnly;
+  private final Allocator allocator;
+  private final Object prefetchScope;
+  private final long startPositionMs;
 
   private Callback callback;
   private ManifestFetcher<HlsPlaylist> manifestFetcher;
 
   private volatile boolean cancelled = false;
+  private volatile boolean hasAudioOnlyVariants = false;
 
-  public HlsRenderersBuilder(Context context, String userAgent, String url, Handler eventHandler, MediaCodecVideoTrackRenderer.EventListener videoTrackListener, MediaCodecAudioTrackRenderer.EventListener audioTrackListener, TextRenderer textRenderer, MetadataTrackRenderer.MetadataRenderer<List<Id3Frame>> metadataRenderer, BandwidthMeter.EventListener bandwidthMeterListener) {
+  public HlsRenderersBuilder(Context context, String userAgent, String url, Handler eventHandler, Handler buildHandler, MediaCodecVideoTrackRenderer.EventListener videoTrackListener, MediaCodecAudioTrackRenderer.EventListener audioTrackListener, TextRenderer textRenderer, MetadataTrackRenderer.MetadataRenderer<List<Id3Frame>> metadataRenderer, HlsSampleSource.EventListener sampleSourceListener, BandwidthMeter.EventListener bandwidthMeterListener, VideoViewport viewport, BackBuffer backBuffer, OriginSet originSet, BufferLimit bufferLimit, boolean audioOnly, Allocator allocator, Object prefetchScope, long startPositionMs) {
     this.context = context;
     this.userAgent = userAgent;
     this.url = url;
     this.eventHandler = eventHandler;
+    this.buildHandler = buildHandler;
     this.videoTrackListener = videoTrackListener;
     this.audioTrackListener = audioTrackListener;
     this.textRenderer = textRenderer;
+    this.sampleSourceListener = sampleSourceListener;
     this.metadataRenderer = metadataRenderer;
     this.bandwidthMeterListener = bandwidthMeterListener;
+    this.viewport = viewport;
+    this.backBuffer = backBuffer;
+    this.originSet = originSet;
+    this.bufferLimit = bufferLimit;
+    this.audioOnly = audioOnly;
+    this.allocator = allocator;
+    this.prefetchScope = prefetchScope;
+    this.startPositionMs = startPositionMs;
   }
 
   @Override
   public void build(Callback callback) {
     this.callback = callback;
     HlsPlaylistParser hlsPlaylistParser = new HlsPlaylistParser();
-    manifestFetcher = new ManifestFetcher<HlsPlaylist>(url, new DefaultUriDataSource(context, userAgent), hlsPlaylistParser);
-    manifestFetcher.singleLoad(eventHandler.getLooper(), this);
+    manifestFetcher = new ManifestFetcher<HlsPlaylist>(url, FailoverDataSource.wrap(context, null, userAgent, originSet), hlsPlaylistParser);
+    manifestFetcher.singleLoad(buildHandler.getLooper(), this);
+  }
+
+  /**
+   * @return Whether the master playlist has variants without video, which audio-only playback can
+   * switch to. False until the playlist is loaded.
+   */
+  public boolean hasAudioOnlyVariants() {
+    return hasAudioOnlyVariants;
   }
 
   @Override
   public void cancel() {
+    // Loads already prefetched stay in the player's scope, for a recovery to pick up.
     cancelled = true;
   }
 
@@ -88,20 +138,39 @@ public class HlsRenderersBuilder implements TrackRenderersBuilder, ManifestFetch
       return;
     }
 
-    LoadControl loadControl = new DefaultLoadControl(new DefaultAllocator(BUFFER_SEGMENT_SIZE));
+    // In audio-only mode, stream audio-only variants where the playlist has them and leave out the
+    // video renderer. Otherwise the controller just disables the video renderer.
+    hasAudioOnlyVariants = manifest instanceof HlsMasterPlaylist
+      && AudioOnlyHlsTrackSelector.hasAudioOnlyVariants((HlsMasterPlaylist) manifest);
+    boolean audioOnlyVariants = audioOnly && hasAudioOnlyVariants;
+    HlsTrackSelector trackSelector = audioOnlyVariants ? new AudioOnlyHlsTrackSelector()
+      : DefaultHlsTrackSelector.newDefaultInstance(context);
+
     DefaultBandwidthMeter bandwidthMeter = new DefaultBandwidthMeter();
+    if (manifest instanceof HlsMasterPlaylist) {
+      prefetchInitialPlaylists((HlsMasterPlaylist) manifest, trackSelector, bandwidthMeter);
+    }
+
+    LoadControl loadControl = new LimitedLoadControl(new DefaultLoadControl(allocator), bufferLimit);
     PtsTimestampAdjusterProvider timestampAdjusterProvider = new PtsTimestampAdjusterProvider();
 
-    DataSource dataSource = new DefaultUriDataSource(context, bandwidthMeter, userAgent);
+    DataSource dataSource = newChunkDataSource(bandwidthMeter);
+    BandwidthMeter variantBandwidthMeter = bandwidthMeter;
+    if (manifest instanceof HlsMasterPlaylist) {
+      variantBandwidthMeter = new ViewportBandwidthMeter(bandwidthMeter, viewport, (HlsMasterPlaylist) manifest);
+    }
     HlsChunkSource chunkSource = new HlsChunkSource(true, dataSource, url,
-      manifest, DefaultHlsTrackSelector.newDefaultInstance(context), bandwidthMeter,
+      manifest, trackSelector, variantBandwidthMeter,
       timestampAdjusterProvider, HlsChunkSource.ADAPTIVE_MODE_SPLICE);
     HlsSampleSource sampleSource = new HlsSampleSource(chunkSource, loadControl,
-      MAIN_BUFFER_SEGMENTS * BUFFER_SEGMENT_SIZE, eventHandler, null, TRACK_VIDEO_INDEX);
+      MAIN_BUFFER_SEGMENTS * BUFFER_SEGMENT_SIZE, eventHandler, sampleSourceListener, TRACK_VIDEO_INDEX);
 
-    MediaCodecVideoTrackRenderer videoTrackRenderer = new MediaCodecVideoTrackRenderer(context,
-      sampleSource, MediaCodecSelector.DEFAULT, MediaCodec.VIDEO_SCALING_MODE_SCALE_TO_FIT,
-      5000, eventHandler, videoTrackListener, 50);
+    MediaCodecVideoTrackRenderer videoTrackRenderer = null;
+    if (!audioOnlyVariants) {
+      videoTrackRenderer = new MediaCodecVideoTrackRenderer(context, sampleSource,
+        MediaCodecSelector.DEFAULT, MediaCodec.VIDEO_SCALING_MODE_SCALE_TO_FIT, 5000, eventHandler,
+        videoTrackListener, 50);
+    }
 
     MediaCodecAudioTrackRenderer audioTrackRenderer = new MediaCodecAudioTrackRenderer(sampleSource,
       MediaCodecSelector.DEFAULT, null, true, eventHandler, audioTrackListener,
@@ -117,7 +186,7 @@ public class HlsRenderersBuilder implements TrackRenderersBuilder, ManifestFetch
     }
     TrackRenderer textTrackRenderer;
     if (preferWebvtt) {
-      DataSource textDataSource = new DefaultUriDataSource(context, bandwidthMeter, userAgent);
+      DataSource textDataSource = newChunkDataSource(bandwidthMeter);
       HlsChunkSource textChunkSource = new HlsChunkSource(false, textDataSource,
         url, manifest, DefaultHlsTrackSelector.newVttInstance(), bandwidthMeter,
         timestampAdjusterProvider, HlsChunkSource.ADAPTIVE_MODE_SPLICE);
@@ -136,11 +205,127 @@ public class HlsRenderersBuilder implements TrackRenderersBuilder, ManifestFetch
     eventHandler.post(new Runnable() {
       @Override
       public void run() {
-        callback.onFinish(trackRenderers);
+        if (!cancelled) {
+          callback.onFinish(trackRenderers);
+        }
+      }
+    });
+  }
+
+  /**
+   * Starts loading the media playlist {@link HlsChunkSource} will pick first, and the subtitle
+   * playlist, while the renderers are still being built and prepared. For VOD the first segment
+   * (and its key, if encrypted) follows as soon as the media playlist is in. The chunk sources pick
+   * these up through {@link PrefetchingDataSource}.
+   */
+  private void prefetchInitialPlaylists(HlsMasterPlaylist masterPlaylist, HlsTrackSelector trackSelector, DefaultBandwidthMeter bandwidthMeter) {
+    final List<Variant> selectedVariants = new ArrayList<>();
+    try {
+      // Run the same selection as the chunk source; the first track it exposes is the one enabled.
+      trackSelector.selectTracks(masterPlaylist, new HlsTrackSelector.Output() {
+        @Override
+        public void adaptiveTrack(HlsMasterPlaylist playlist, Variant[] variants) {
+          // The chunk source starts an adaptive track on the variant listed first in the playlist.
+          Variant defaultVariant = variants[0];
+          for (Variant variant : variants) {
+            if (playlist.variants.indexOf(variant) < playlist.variants.indexOf(defaultVariant)) {
+              defaultVariant = variant;
+            }
+          }
+          selectedVariants.add(defaultVariant);
+        }
+
+        @Override
+        public void fixedTrack(HlsMasterPlaylist playlist, Variant variant) {
+          selectedVariants.add(variant);
+        }
+      });
+    } catch (IOException e) {
+      Log.w(TAG, "prefetchInitialPlaylists...track selection failed", e);
+      return;
+    }
+
+    if (!selectedVariants.isEmpty()) {
+      prefetchMediaPlaylist(UriUtil.resolve(masterPlaylist.baseUri, selectedVariants.get(0).url), bandwidthMeter, true);
+    }
+    if (!masterPlaylist.subtitles.isEmpty()) {
+      prefetchMediaPlaylist(UriUtil.resolve(masterPlaylist.baseUri, masterPlaylist.subtitles.get(0).url), bandwidthMeter, false);
+    }
+  }
+
+  private void prefetchMediaPlaylist(final String playlistUrl, final DefaultBandwidthMeter bandwidthMeter, boolean withFirstSegment) {
+    final PrefetchCache.Task playlistTask = prefetch(new DataSpec(Uri.parse(playlistUrl)), bandwidthMeter);
+    if (playlistTask == null || !withFirstSegment) {
+      return;
+    }
+    PrefetchCache.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          byte[] bytes = playlistTask.await();
+          if (bytes == null || cancelled) {
+            return;
+          }
+          HlsPlaylist playlist = new HlsPlaylistParser().parse(playlistUrl, new ByteArrayInputStream(bytes));
+          if (!(playlist instanceof HlsMediaPlaylist)) {
+            return;
+          }
+          HlsMediaPlaylist mediaPlaylist = (HlsMediaPlaylist) playlist;
+          // Live playback starts near the live edge rather than on the first listed segment.
+          if (mediaPlaylist.live || mediaPlaylist.segments.isEmpty()) {
+            return;
+          }
+          HlsMediaPlaylist.Segment segment = mediaPlaylist.segments.get(
+            getSegmentIndex(mediaPlaylist.segments, startPositionMs * 1000));
+          String keyUri = segment.isEncrypted ? UriUtil.resolve(mediaPlaylist.baseUri, segment.encryptionKeyUri) : null;
+          if (keyUri != null && HlsKeyCache.getInstance().get(keyUri) == null) {
+            prefetch(new DataSpec(Uri.parse(keyUri)), bandwidthMeter);
+          }
+          prefetch(new DataSpec(UriUtil.resolveToUri(mediaPlaylist.baseUri, segment.url),
+            segment.byterangeOffset, segment.byterangeLength, null), bandwidthMeter);
+        } catch (IOException e) {
+          Log.w(TAG, "prefetchMediaPlaylist...failed to parse " + playlistUrl, e);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
       }
     });
   }
 
+  /**
+   * @return The index of the segment the chunk source will load first when starting at
+   * {@code positionUs}: the last one starting at or before it.
+   */
+  static int getSegmentIndex(List<HlsMediaPlaylist.Segment> segments, long positionUs) {
+    int index = 0;
+    for (int i = 1; i < segments.size() && segments.get(i).startTimeUs <= positionUs; i++) {
+      index = i;
+    }
+    return index;
+  }
+
+  private DataSource newChunkDataSource(DefaultBandwidthMeter bandwidthMeter) {
+    return new BackBufferDataSource(new HlsKeyCachingDataSource(
+      new PrefetchingDataSource(FailoverDataSource.wrap(context, bandwidthMeter, userAgent, originSet), prefetchScope)), backBuffer);
+  }
+
+  /**
+   * @return The load, or null if the builder was cancelled.
+   */
+  private PrefetchCache.Task prefetch(DataSpec dataSpec, DefaultBandwidthMeter bandwidthMeter) {
+    if (cancelled) {
+      return null;
+    }
+    // Feed the builder's bandwidth meter so the first adaptive decision has an estimate.
+    PrefetchCache.Task task = PrefetchCache.prefetch(prefetchScope, new DefaultUriDataSource(context, bandwidthMeter, userAgent), dataSpec);
+    if (cancelled) {
+      // Cancelled while this was being added; a source change may have discarded the scope first.
+      PrefetchCache.discard(task);
+      return null;
+    }
+    return task;
+  }
+
   @Override
   public void onSingleManifestError(final IOException e) {
     if(cancelled) {
@@ -149,7 +334,9 @@ public class HlsRenderersBuilder implements TrackRenderersBuilder, ManifestFetch
     eventHandler.post(new Runnable() {
       @Override
       public void run() {
-        callback.onError(e);
+        if (!cancelled) {
+          callback.onError(e);
+        }
       }
     });
   }
@@ -0,0 +1,50 @@
+package com.greatdroid.reactnative.media.player.trackrenderer;
+
+import com.google.android.exoplayer.LoadControl;
+import com.google.android.exoplayer.upstream.Allocator;
+import com.greatdroid.reactnative.media.player.BufferLimit;
+
+/**
+ * Holds back loaders of another {@link LoadControl} that are further ahead of playback than the
+ * {@link BufferLimit} allows. The limit is read on every update, so lowering it stops loading at
+ * the next chunk and raising it resumes loading.
+ */
+final class LimitedLoadControl implements LoadControl {
+  private final LoadControl loadControl;
+  private final BufferLimit bufferLimit;
+
+  LimitedLoadControl(LoadControl loadControl, BufferLimit bufferLimit) {
+    this.loadControl = loadControl;
+    this.bufferLimit = bufferLimit;
+  }
+
+  @Override
+  public void register(Object loader, int bufferSizeContribution) {
+    loadControl.register(loader, bufferSizeContribution);
+  }
+
+  @Override
+  public void unregister(Object loader) {
+    loadControl.unregister(loader);
+  }
+
+  @Override
+  public Allocator getAllocator() {
+    return loadControl.getAllocator();
+  }
+
+  @Override
+  public void trimAllocator() {
+    loadControl.trimAllocator();
+  }
+
+  @Override
+  public boolean update(Object loader, long playbackPositionUs, long nextLoadPositionUs, boolean loading) {
+    boolean load = loadControl.update(loader, playbackPositionUs, nextLoadPositionUs, loading);
+    long maxBufferMs = bufferLimit.getMaxBufferMs();
+    if (!load || maxBufferMs == BufferLimit.NO_LIMIT || nextLoadPositionUs == -1) {
+      return load;
+    }
+    return nextLoadPositionUs - playbackPositionUs < maxBufferMs * 1000;
+  }
+}
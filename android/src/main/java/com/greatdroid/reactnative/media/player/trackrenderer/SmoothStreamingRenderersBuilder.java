@@ -4,7 +4,6 @@ import android.content.Context;
 import android.media.AudioManager;
 import android.media.MediaCodec;
 import android.os.Handler;
-import android.os.Looper;
 
 import com.google.android.exoplayer.DefaultLoadControl;
 import com.google.android.exoplayer.LoadControl;
@@ -17,7 +16,6 @@ import com.google.android.exoplayer.chunk.ChunkSampleSource;
 import com.google.android.exoplayer.chunk.ChunkSource;
 import com.google.android.exoplayer.chunk.FormatEvaluator;
 import com.google.android.exoplayer.drm.DrmSessionManager;
-import com.google.android.exoplayer.drm.MediaDrmCallback;
 import com.google.android.exoplayer.drm.StreamingDrmSessionManager;
 import com.google.android.exoplayer.drm.UnsupportedDrmException;
 import com.google.android.exoplayer.smoothstreaming.DefaultSmoothStreamingTrackSelector;
@@ -28,13 +26,18 @@ import com.google.android.exoplayer.text.TextRenderer;
 import com.google.android.exoplayer.text.TextTrackRenderer;
 import com.google.android.exoplayer.upstream.BandwidthMeter;
 import com.google.android.exoplayer.upstream.DataSource;
-import com.google.android.exoplayer.upstream.DefaultAllocator;
+import com.google.android.exoplayer.upstream.Allocator;
 import com.google.android.exoplayer.upstream.DefaultBandwidthMeter;
-import com.google.android.exoplayer.upstream.DefaultHttpDataSource;
-import com.google.android.exoplayer.upstream.DefaultUriDataSource;
 import com.google.android.exoplayer.util.ManifestFetcher;
 import com.google.android.exoplayer.util.Util;
+import com.greatdroid.reactnative.media.player.BufferLimit;
 import com.greatdroid.reactnative.media.player.TrackRenderersBuilder;
+import com.greatdroid.reactnative.media.player.upstream.BackBuffer;
+import com.greatdroid.reactnative.media.player.upstream.BackBufferDataSource;
+import com.greatdroid.reactnative.media.player.upstream.FailoverDataSource;
+import com.greatdroid.reactnative.media.player.upstream.OriginSet;
+import com.greatdroid.reactnative.media.player.VideoViewport;
+import com.greatdroid.reactnative.media.player.drm.DrmSessionManagerProvider;
 
 import java.io.IOException;
 
@@ -50,39 +53,51 @@ public class SmoothStreamingRenderersBuilder implements TrackRenderersBuilder, M
   private final String userAgent;
   private final String url;
   private final Handler eventHandler;
-  private final MediaDrmCallback drmCallback;
+  private final Handler buildHandler;
+  private final DrmSessionManagerProvider drmSessionManagerProvider;
   private final MediaCodecVideoTrackRenderer.EventListener videoTrackListener;
   private final MediaCodecAudioTrackRenderer.EventListener audioTrackListener;
   private final TextRenderer textRenderer;
+  private final ChunkSampleSource.EventListener sampleSourceListener;
   private final BandwidthMeter.EventListener bandwidthMeterListener;
-  private final Looper playbackLooper;
+  private final VideoViewport viewport;
+  private final BackBuffer backBuffer;
+  private final OriginSet originSet;
+  private final BufferLimit bufferLimit;
+  private final Allocator allocator;
 
   private Callback callback;
   private ManifestFetcher<SmoothStreamingManifest> manifestFetcher;
 
   private volatile boolean cancelled = false;
 
-  public SmoothStreamingRenderersBuilder(Context context, String userAgent, String url, Handler eventHandler, MediaDrmCallback drmCallback, MediaCodecVideoTrackRenderer.EventListener videoTrackListener, MediaCodecAudioTrackRenderer.EventListener audioTrackListener, TextRenderer textRenderer, BandwidthMeter.EventListener bandwidthMeterListener, Looper playbackLooper) {
+  public SmoothStreamingRenderersBuilder(Context context, String userAgent, String url, Handler eventHandler, Handler buildHandler, DrmSessionManagerProvider drmSessionManagerProvider, MediaCodecVideoTrackRenderer.EventListener videoTrackListener, MediaCodecAudioTrackRenderer.EventListener audioTrackListener, TextRenderer textRenderer, ChunkSampleSource.EventListener sampleSourceListener, BandwidthMeter.EventListener bandwidthMeterListener, VideoViewport viewport, BackBuffer backBuffer, OriginSet originSet, BufferLimit bufferLimit, Allocator allocator) {
     this.context = context;
     this.userAgent = userAgent;
     this.eventHandler = eventHandler;
+    this.buildHandler = buildHandler;
     this.videoTrackListener = videoTrackListener;
     this.audioTrackListener = audioTrackListener;
     this.textRenderer = textRenderer;
+    this.sampleSourceListener = sampleSourceListener;
     this.bandwidthMeterListener = bandwidthMeterListener;
-    this.playbackLooper = playbackLooper;
+    this.viewport = viewport;
+    this.backBuffer = backBuffer;
+    this.originSet = originSet;
+    this.bufferLimit = bufferLimit;
+    this.allocator = allocator;
     this.manifestFetcher = manifestFetcher;
     this.url = Util.toLowerInvariant(url).endsWith("/manifest") ? url : url + "/Manifest";
-    this.drmCallback = drmCallback;
+    this.drmSessionManagerProvider = drmSessionManagerProvider;
   }
 
   @Override
   public void build(Callback callback) {
     this.callback = callback;
     SmoothStreamingManifestParser parser = new SmoothStreamingManifestParser();
-    manifestFetcher = new ManifestFetcher<>(url, new DefaultHttpDataSource(userAgent, null),
+    manifestFetcher = new ManifestFetcher<>(url, FailoverDataSource.wrap(context, null, userAgent, originSet),
       parser);
-    manifestFetcher.singleLoad(eventHandler.getLooper(), this);
+    manifestFetcher.singleLoad(buildHandler.getLooper(), this);
   }
 
   @Override
@@ -96,65 +111,67 @@ public class SmoothStreamingRenderersBuilder implements TrackRenderersBuilder, M
       return;
     }
 
-    LoadControl loadControl = new DefaultLoadControl(new DefaultAllocator(BUFFER_SEGMENT_SIZE));
+    LoadControl loadControl = new LimitedLoadControl(new DefaultLoadControl(allocator), bufferLimit);
     DefaultBandwidthMeter bandwidthMeter = new DefaultBandwidthMeter(eventHandler, bandwidthMeterListener);
 
     // Check drm support if necessary.
     DrmSessionManager drmSessionManager = null;
     if (manifest.protectionElement != null) {
       if (Util.SDK_INT < 18) {
-        callback.onError(new UnsupportedDrmException(UnsupportedDrmException.REASON_UNSUPPORTED_SCHEME));
+        notifyError(new UnsupportedDrmException(UnsupportedDrmException.REASON_UNSUPPORTED_SCHEME));
         return;
       }
       try {
-        drmSessionManager = new StreamingDrmSessionManager(manifest.protectionElement.uuid,
-          playbackLooper, drmCallback, null, eventHandler, new StreamingDrmSessionManager.EventListener() {
-          @Override
-          public void onDrmKeysLoaded() {
-          }
-
-          @Override
-          public void onDrmSessionManagerError(final Exception e) {
-            if (cancelled) {
-              return;
+        drmSessionManager = drmSessionManagerProvider.acquire(manifest.protectionElement.uuid,
+          new StreamingDrmSessionManager.EventListener() {
+            @Override
+            public void onDrmKeysLoaded() {
             }
-            callback.onError(e);
-          }
-        });
+
+            @Override
+            public void onDrmSessionManagerError(final Exception e) {
+              if (cancelled) {
+                return;
+              }
+              callback.onError(e);
+            }
+          });
       } catch (UnsupportedDrmException e) {
-        if (!cancelled) {
-          callback.onError(e);
-        }
+        notifyError(e);
         return;
       }
     }
 
     // Build the video renderer.
-    DataSource videoDataSource = new DefaultUriDataSource(context, bandwidthMeter, userAgent);
+    DataSource videoDataSource = new BackBufferDataSource(
+      FailoverDataSource.wrap(context, bandwidthMeter, userAgent, originSet), backBuffer);
+    FormatEvaluator videoFormatEvaluator = new ViewportFormatEvaluator(
+      new FormatEvaluator.AdaptiveEvaluator(bandwidthMeter), viewport);
     ChunkSource videoChunkSource = new SmoothStreamingChunkSource(manifestFetcher,
       DefaultSmoothStreamingTrackSelector.newVideoInstance(context, true, false),
-      videoDataSource, new FormatEvaluator.AdaptiveEvaluator(bandwidthMeter), LIVE_EDGE_LATENCY_MS);
+      videoDataSource, videoFormatEvaluator, LIVE_EDGE_LATENCY_MS);
     ChunkSampleSource videoSampleSource = new ChunkSampleSource(videoChunkSource, loadControl,
-      VIDEO_BUFFER_SEGMENTS * BUFFER_SEGMENT_SIZE, eventHandler, null,
+      VIDEO_BUFFER_SEGMENTS * BUFFER_SEGMENT_SIZE, eventHandler, sampleSourceListener,
       TRACK_VIDEO_INDEX);
     TrackRenderer videoTrackRenderer = new MediaCodecVideoTrackRenderer(context, videoSampleSource,
       MediaCodecSelector.DEFAULT, MediaCodec.VIDEO_SCALING_MODE_SCALE_TO_FIT, 5000,
       drmSessionManager, true, eventHandler, videoTrackListener, 50);
 
     // Build the audio renderer.
-    DataSource audioDataSource = new DefaultUriDataSource(context, bandwidthMeter, userAgent);
+    DataSource audioDataSource = new BackBufferDataSource(
+      FailoverDataSource.wrap(context, bandwidthMeter, userAgent, originSet), backBuffer);
     ChunkSource audioChunkSource = new SmoothStreamingChunkSource(manifestFetcher,
       DefaultSmoothStreamingTrackSelector.newAudioInstance(),
       audioDataSource, null, LIVE_EDGE_LATENCY_MS);
     ChunkSampleSource audioSampleSource = new ChunkSampleSource(audioChunkSource, loadControl,
-      AUDIO_BUFFER_SEGMENTS * BUFFER_SEGMENT_SIZE, eventHandler, null,
+      AUDIO_BUFFER_SEGMENTS * BUFFER_SEGMENT_SIZE, eventHandler, sampleSourceListener,
       TRACK_AUDIO_INDEX);
     TrackRenderer audioTrackRenderer = new MediaCodecAudioTrackRenderer(audioSampleSource,
       MediaCodecSelector.DEFAULT, drmSessionManager, true, eventHandler, audioTrackListener,
       AudioCapabilities.getCapabilities(context), AudioManager.STREAM_MUSIC);
 
     // Build the text renderer.
-    DataSource textDataSource = new DefaultUriDataSource(context, bandwidthMeter, userAgent);
+    DataSource textDataSource = FailoverDataSource.wrap(context, bandwidthMeter, userAgent, originSet);
     ChunkSource textChunkSource = new SmoothStreamingChunkSource(manifestFetcher,
       DefaultSmoothStreamingTrackSelector.newTextInstance(),
       textDataSource, null, LIVE_EDGE_LATENCY_MS);
@@ -171,21 +188,28 @@ public class SmoothStreamingRenderersBuilder implements TrackRenderersBuilder, M
     eventHandler.post(new Runnable() {
       @Override
       public void run() {
-        callback.onFinish(trackRenderers);
+        if (!cancelled) {
+          callback.onFinish(trackRenderers);
+        }
       }
     });
   }
 
   @Override
-  public void onSingleManifestError(final IOException e) {
+  public void onSingleManifestError(IOException e) {
     if (cancelled) {
       return;
     }
+    notifyError(e);
+  }
 
+  private void notifyError(final Exception e) {
     eventHandler.post(new Runnable() {
       @Override
       public void run() {
-        callback.onError(e);
+        if (!cancelled) {
+          callback.onError(e);
+        }
       }
     });
   }
@@ -0,0 +1,61 @@
+package com.greatdroid.reactnative.media.player.trackrenderer;
+
+import com.google.android.exoplayer.chunk.Format;
+import com.google.android.exoplayer.hls.HlsMasterPlaylist;
+import com.google.android.exoplayer.hls.Variant;
+import com.google.android.exoplayer.upstream.BandwidthMeter;
+import com.greatdroid.reactnative.media.player.VideoViewport;
+
+/**
+ * {@link com.google.android.exoplayer.hls.HlsChunkSource} picks variants from the bandwidth
+ * estimate alone, so the {@link VideoViewport} cap is applied by never reporting more bandwidth than
+ * the largest allowed variant needs. Only the estimate is wrapped; transfers are measured by the
+ * real meter, which the data sources keep reporting to.
+ */
+final class ViewportBandwidthMeter implements BandwidthMeter {
+  // HlsChunkSource only uses this fraction of the estimate when picking a variant.
+  private static final float BANDWIDTH_FRACTION = 0.8f;
+
+  private final BandwidthMeter bandwidthMeter;
+  private final VideoViewport viewport;
+  private final Format[] formats;
+
+  ViewportBandwidthMeter(BandwidthMeter bandwidthMeter, VideoViewport viewport, HlsMasterPlaylist playlist) {
+    this.bandwidthMeter = bandwidthMeter;
+    this.viewport = viewport;
+    this.formats = new Format[playlist.variants.size()];
+    for (int i = 0; i < formats.length; i++) {
+      Variant variant = playlist.variants.get(i);
+      formats[i] = variant.format;
+    }
+  }
+
+  @Override
+  public long getBitrateEstimate() {
+    long estimate = bandwidthMeter.getBitrateEstimate();
+    if (estimate == NO_ESTIMATE || !viewport.isCapped()) {
+      return estimate;
+    }
+    Format[] allowed = viewport.filter(formats);
+    if (allowed.length == formats.length) {
+      return estimate;
+    }
+    int maxBitrate = 0;
+    for (Format format : allowed) {
+      maxBitrate = Math.max(maxBitrate, format.bitrate);
+    }
+    return Math.min(estimate, (long) (maxBitrate / BANDWIDTH_FRACTION) + 1);
+  }
+
+  @Override
+  public void onTransferStart() {
+  }
+
+  @Override
+  public void onBytesTransferred(int bytes) {
+  }
+
+  @Override
+  public void onTransferEnd() {
+  }
+}
@@ -0,0 +1,37 @@
+package com.greatdroid.reactnative.media.player.trackrenderer;
+
+import com.google.android.exoplayer.chunk.Format;
+import com.google.android.exoplayer.chunk.FormatEvaluator;
+import com.google.android.exoplayer.chunk.MediaChunk;
+import com.greatdroid.reactnative.media.player.VideoViewport;
+
+import java.util.List;
+
+/**
+ * Hides the formats that exceed the {@link VideoViewport} from another evaluator. The viewport is
+ * read on every evaluation, so a layout change applies from the next chunk on.
+ */
+final class ViewportFormatEvaluator implements FormatEvaluator {
+  private final FormatEvaluator evaluator;
+  private final VideoViewport viewport;
+
+  ViewportFormatEvaluator(FormatEvaluator evaluator, VideoViewport viewport) {
+    this.evaluator = evaluator;
+    this.viewport = viewport;
+  }
+
+  @Override
+  public void enable(Format[] formats) {
+    evaluator.enable(formats);
+  }
+
+  @Override
+  public void disable() {
+    evaluator.disable();
+  }
+
+  @Override
+  public void evaluate(List<? extends MediaChunk> queue, long playbackPositionUs, Format[] formats, Evaluation evaluation) {
+    evaluator.evaluate(queue, playbackPositionUs, viewport.filter(formats), evaluation);
+  }
+}
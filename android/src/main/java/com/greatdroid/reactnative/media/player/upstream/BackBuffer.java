@@ -0,0 +1,186 @@
+package com.greatdroid.reactnative.media.player.upstream;
+
+import com.google.android.exoplayer.C;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+
+/**
+ * Keeps the bytes a player has already downloaded for a while after playback has passed them, so
+ * that seeking back a few seconds, or looping to the start, reads from memory instead of the
+ * network. The bundled ExoPlayer discards samples as soon as they are rendered, so retention
+ * happens below the extractors, in {@link BackBufferDataSource}.
+ * <p>
+ * Spans are dropped oldest first once the byte budget is exceeded, and once playback has moved more
+ * than the retention window past the position it was at when they were loaded, allowing for how far
+ * ahead of playback loading runs. A long load, such as a progressive file read from a single open,
+ * is recorded as a chain of spans, each covering at most {@link #SPAN_MS} of playback and
+ * {@link #MAX_SPAN_BYTES}, so that its start is dropped as playback moves on while recording goes
+ * on at its end.
+ */
+public final class BackBuffer {
+
+  public interface Clock {
+    long getPlaybackPositionMs();
+  }
+
+  // How far ahead of the playback position the default load control buffers.
+  private static final long LOAD_AHEAD_MS = 30000;
+  private static final long SPAN_MS = 5000;
+  private static final int MAX_SPAN_BYTES = 1024 * 1024;
+
+  private final Clock clock;
+  private final LinkedList<Span> spans = new LinkedList<>();
+
+  private long durationMs;
+  private long maxBytes;
+  private long totalBytes;
+
+  public BackBuffer(Clock clock) {
+    this.clock = clock;
+  }
+
+  /**
+   * @param durationMs How long to keep media behind the playback position, or 0 to disable.
+   * @param maxBytes   The memory the back buffer may use at most.
+   */
+  public synchronized void setRetention(long durationMs, long maxBytes) {
+    this.durationMs = durationMs;
+    this.maxBytes = maxBytes;
+    evict();
+  }
+
+  public synchronized boolean isEnabled() {
+    return durationMs > 0 && maxBytes > 0;
+  }
+
+  public synchronized void clear() {
+    for (Span span : spans) {
+      span.evicted = true;
+    }
+    spans.clear();
+    totalBytes = 0;
+  }
+
+  /**
+   * @return The span holding the byte at {@code position} of {@code uri}, or null.
+   */
+  synchronized Span find(String uri, long position) {
+    evict();
+    for (Span span : spans) {
+      if (span.uri.equals(uri) && span.start <= position && position < span.start + span.size) {
+        return span;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @param resourceLength The length of the whole resource, or {@link C#LENGTH_UNBOUNDED}.
+   */
+  synchronized Span startSpan(String uri, long position, long resourceLength) {
+    Span span = new Span(uri, position, resourceLength, clock.getPlaybackPositionMs());
+    spans.add(span);
+    return span;
+  }
+
+  /**
+   * @return The span to append the bytes that follow to: {@code span}, or the one continuing it if
+   * it was full or evicted.
+   */
+  synchronized Span append(Span span, byte[] buffer, int offset, int length) {
+    boolean full = span.size() > 0 && (span.size() + length > MAX_SPAN_BYTES
+      || clock.getPlaybackPositionMs() - span.positionMs >= SPAN_MS);
+    if (span.evicted || full) {
+      span = startSpan(span.uri, span.start + span.size(), span.resourceLength);
+    }
+    span.append(buffer, offset, length);
+    totalBytes += length;
+    evict();
+    return span;
+  }
+
+  synchronized void remove(Span span) {
+    if (spans.remove(span)) {
+      totalBytes -= span.size;
+    }
+    span.evicted = true;
+  }
+
+  private void evict() {
+    long positionMs = clock.getPlaybackPositionMs();
+    Iterator<Span> iterator = spans.iterator();
+    while (iterator.hasNext()) {
+      Span span = iterator.next();
+      boolean expired = positionMs - span.positionMs > durationMs + LOAD_AHEAD_MS;
+      if (totalBytes <= maxBytes && !expired && durationMs > 0) {
+        continue;
+      }
+      iterator.remove();
+      totalBytes -= span.size;
+      span.evicted = true;
+    }
+  }
+
+  /**
+   * A contiguous range of a resource, starting at {@link #start}.
+   */
+  static final class Span {
+    final String uri;
+    final long start;
+    final long resourceLength;
+    final long positionMs;
+
+    private byte[] data = new byte[64 * 1024];
+    private volatile int size;
+    private volatile boolean evicted;
+
+    private Span(String uri, long start, long resourceLength, long positionMs) {
+      this.uri = uri;
+      this.start = start;
+      this.resourceLength = resourceLength;
+      this.positionMs = positionMs;
+    }
+
+    private synchronized void append(byte[] buffer, int offset, int length) {
+      if (size + length > data.length) {
+        byte[] grown = new byte[Math.max(data.length * 2, size + length)];
+        System.arraycopy(data, 0, grown, 0, size);
+        data = grown;
+      }
+      System.arraycopy(buffer, offset, data, size, length);
+      size += length;
+    }
+
+    /**
+     * Copies bytes from {@code position} of the resource, returning 0 past the end of the span.
+     */
+    synchronized int read(long position, byte[] buffer, int offset, int length) {
+      int from = (int) (position - start);
+      if (from < 0 || from >= size) {
+        return 0;
+      }
+      int count = Math.min(length, size - from);
+      System.arraycopy(data, from, buffer, offset, count);
+      return count;
+    }
+
+    boolean startsWith(byte[] prefix) {
+      synchronized (this) {
+        if (size < prefix.length) {
+          return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+          if (data[i] != prefix[i]) {
+            return false;
+          }
+        }
+        return true;
+      }
+    }
+
+    int size() {
+      return size;
+    }
+  }
+}
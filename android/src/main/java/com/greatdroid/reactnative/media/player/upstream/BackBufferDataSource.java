@@ -0,0 +1,130 @@
+package com.greatdroid.reactnative.media.player.upstream;
+
+import com.google.android.exoplayer.C;
+import com.google.android.exoplayer.upstream.DataSpec;
+import com.google.android.exoplayer.upstream.UriDataSource;
+
+import java.io.IOException;
+
+/**
+ * A {@link UriDataSource} that records what it reads from {@code upstream} into a
+ * {@link BackBuffer}, and serves later requests for the same bytes from there. A request that runs
+ * past the retained bytes continues from upstream where they end.
+ * <p>
+ * Playlists are never retained, since live playlists change between loads of the same uri.
+ */
+public class BackBufferDataSource implements UriDataSource {
+  private static final byte[] PLAYLIST_HEADER = {'#', 'E', 'X', 'T', 'M', '3', 'U'};
+
+  private final UriDataSource upstream;
+  private final BackBuffer backBuffer;
+
+  private DataSpec dataSpec;
+  private String uri;
+  private long position;
+  private long bytesRemaining;
+
+  private BackBuffer.Span readingSpan;
+  private BackBuffer.Span writingSpan;
+  private boolean headerChecked;
+  private boolean upstreamOpened;
+
+  public BackBufferDataSource(UriDataSource upstream, BackBuffer backBuffer) {
+    this.upstream = upstream;
+    this.backBuffer = backBuffer;
+  }
+
+  @Override
+  public long open(DataSpec dataSpec) throws IOException {
+    this.dataSpec = dataSpec;
+    this.uri = dataSpec.uri.toString();
+    this.position = dataSpec.position;
+    this.bytesRemaining = dataSpec.length;
+    if (!backBuffer.isEnabled()) {
+      upstreamOpened = true;
+      return upstream.open(dataSpec);
+    }
+
+    readingSpan = backBuffer.find(uri, position);
+    if (readingSpan == null) {
+      return openUpstream();
+    }
+    if (bytesRemaining == C.LENGTH_UNBOUNDED && readingSpan.resourceLength != C.LENGTH_UNBOUNDED) {
+      bytesRemaining = readingSpan.resourceLength - position;
+    }
+    return bytesRemaining;
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int readLength) throws IOException {
+    if (bytesRemaining == 0) {
+      return C.RESULT_END_OF_INPUT;
+    }
+    int length = bytesRemaining == C.LENGTH_UNBOUNDED ? readLength : (int) Math.min(readLength, bytesRemaining);
+
+    while (readingSpan != null) {
+      int read = readingSpan.read(position, buffer, offset, length);
+      if (read > 0) {
+        advance(read);
+        return read;
+      }
+      readingSpan = backBuffer.find(uri, position);
+      if (readingSpan == null) {
+        openUpstream();
+      }
+    }
+
+    int read = upstream.read(buffer, offset, length);
+    if (read == C.RESULT_END_OF_INPUT) {
+      return read;
+    }
+    if (writingSpan != null) {
+      writingSpan = backBuffer.append(writingSpan, buffer, offset, read);
+      if (!headerChecked && writingSpan.start == 0 && writingSpan.size() >= PLAYLIST_HEADER.length) {
+        headerChecked = true;
+        if (writingSpan.startsWith(PLAYLIST_HEADER)) {
+          backBuffer.remove(writingSpan);
+          writingSpan = null;
+        }
+      }
+    }
+    advance(read);
+    return read;
+  }
+
+  private long openUpstream() throws IOException {
+    long offset = position - dataSpec.position;
+    DataSpec upstreamSpec = new DataSpec(dataSpec.uri, dataSpec.absoluteStreamPosition + offset,
+      position, bytesRemaining, dataSpec.key, dataSpec.flags);
+    upstreamOpened = true;
+    long length = upstream.open(upstreamSpec);
+    long resourceLength = length == C.LENGTH_UNBOUNDED || dataSpec.length != C.LENGTH_UNBOUNDED
+      ? C.LENGTH_UNBOUNDED : position + length;
+    writingSpan = backBuffer.startSpan(uri, position, resourceLength);
+    headerChecked = position != 0;
+    return length;
+  }
+
+  private void advance(int read) {
+    position += read;
+    if (bytesRemaining != C.LENGTH_UNBOUNDED) {
+      bytesRemaining -= read;
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    readingSpan = null;
+    writingSpan = null;
+    dataSpec = null;
+    if (upstreamOpened) {
+      upstreamOpened = false;
+      upstream.close();
+    }
+  }
+
+  @Override
+  public String getUri() {
+    return upstreamOpened ? upstream.getUri() : uri;
+  }
+}
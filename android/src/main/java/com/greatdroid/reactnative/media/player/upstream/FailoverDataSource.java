@@ -0,0 +1,271 @@
+package com.greatdroid.reactnative.media.player.upstream;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.google.android.exoplayer.upstream.DataSpec;
+import com.google.android.exoplayer.upstream.DefaultUriDataSource;
+import com.google.android.exoplayer.upstream.TransferListener;
+import com.google.android.exoplayer.upstream.UriDataSource;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+
+/**
+ * A {@link UriDataSource} that sends requests below any origin of an {@link OriginSet} to the one
+ * the set currently prefers, and on failure to open, to the next one. Latency, throughput and
+ * errors of each request are fed back into {@link OriginStats}, so a host that degrades mid-session
+ * is left for the next segment.
+ * <p>
+ * The first request through a set, normally the manifest, is raced across all origins and read
+ * from whichever answers first. Each contender is a data source from the same {@link Factory} as
+ * the wrapped one, so the race carries the same headers and feeds the same bandwidth meter.
+ * <p>
+ * {@link #getUri()} returns the uri as requested, not as rewritten, so that relative uris in
+ * manifests resolve against the same origin as before and caches above this source see the same
+ * uri whichever host served it.
+ */
+public final class FailoverDataSource implements UriDataSource {
+  private static final String TAG = "FailoverDataSource";
+
+  public interface Factory {
+    /**
+     * @return A new data source for one connection.
+     */
+    UriDataSource createDataSource();
+  }
+
+  private final UriDataSource upstream;
+  private final Factory factory;
+  private final OriginSet originSet;
+
+  private DataSpec dataSpec;
+  private UriDataSource current;
+  private OriginSet.Origin origin;
+  private long openedAtMs;
+  private long bytesRead;
+
+  /**
+   * @return A data source from {@code factory} wrapped in a {@link FailoverDataSource}, or that data
+   * source itself if {@code originSet} has fewer than two origins.
+   */
+  public static UriDataSource wrap(Factory factory, OriginSet originSet) {
+    UriDataSource upstream = factory.createDataSource();
+    return originSet == null || originSet.size() < 2 ? upstream : new FailoverDataSource(upstream, factory, originSet);
+  }
+
+  /**
+   * Wraps {@link DefaultUriDataSource}s reporting to {@code listener}, which may be null.
+   */
+  public static UriDataSource wrap(final Context context, final TransferListener listener, final String userAgent,
+                                   OriginSet originSet) {
+    return wrap(new Factory() {
+      @Override
+      public UriDataSource createDataSource() {
+        return new DefaultUriDataSource(context, listener, userAgent);
+      }
+    }, originSet);
+  }
+
+  private FailoverDataSource(UriDataSource upstream, Factory factory, OriginSet originSet) {
+    this.upstream = upstream;
+    this.factory = factory;
+    this.originSet = originSet;
+  }
+
+  @Override
+  public long open(DataSpec dataSpec) throws IOException {
+    this.dataSpec = dataSpec;
+    this.bytesRead = 0;
+    String uri = dataSpec.uri.toString();
+    OriginSet.Origin requested = originSet.match(uri);
+    if (requested == null) {
+      origin = null;
+      current = upstream;
+      return upstream.open(dataSpec);
+    }
+    if (originSet.shouldRace()) {
+      return race(dataSpec, requested);
+    }
+
+    IOException lastError = null;
+    for (int i = 0; i < originSet.size(); i++) {
+      origin = originSet.select();
+      long startMs = SystemClock.elapsedRealtime();
+      try {
+        current = upstream;
+        long length = upstream.open(rewrite(dataSpec, requested, origin));
+        openedAtMs = SystemClock.elapsedRealtime();
+        originSet.onOpened(origin, openedAtMs - startMs);
+        return length;
+      } catch (InterruptedIOException e) {
+        throw e;
+      } catch (IOException e) {
+        Log.w(TAG, "open...failed on " + origin.host + ", failing over", e);
+        lastError = e;
+        originSet.onError(origin);
+        closeQuietly(upstream);
+        current = null;
+      }
+    }
+    throw lastError;
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int readLength) throws IOException {
+    try {
+      int read = current.read(buffer, offset, readLength);
+      if (read > 0) {
+        bytesRead += read;
+      }
+      return read;
+    } catch (InterruptedIOException e) {
+      throw e;
+    } catch (IOException e) {
+      if (origin != null) {
+        // The loader retries, and the retry goes elsewhere.
+        Log.w(TAG, "read...failed on " + origin.host + " after " + bytesRead + " bytes", e);
+        originSet.onError(origin);
+      }
+      throw e;
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (current == null) {
+      return;
+    }
+    if (origin != null && bytesRead > 0) {
+      originSet.onTransferred(origin, bytesRead, SystemClock.elapsedRealtime() - openedAtMs);
+    }
+    try {
+      current.close();
+    } finally {
+      current = null;
+      origin = null;
+    }
+  }
+
+  @Override
+  public String getUri() {
+    return current == null ? null : dataSpec.uri.toString();
+  }
+
+  private long race(DataSpec dataSpec, OriginSet.Origin requested) throws IOException {
+    List<OriginSet.Origin> origins = originSet.getOrigins();
+    Race race = new Race(origins.size());
+    for (OriginSet.Origin candidate : origins) {
+      race.start(rewrite(dataSpec, requested, candidate), candidate);
+    }
+    try {
+      race.await();
+    } catch (InterruptedException e) {
+      race.cancel();
+      throw new InterruptedIOException();
+    }
+    if (race.winner == null) {
+      throw race.lastError;
+    }
+    Log.d(TAG, "race...won by " + race.winnerOrigin.host);
+    originSet.setPreferred(race.winnerOrigin);
+    current = race.winner;
+    origin = race.winnerOrigin;
+    openedAtMs = SystemClock.elapsedRealtime();
+    return race.winnerLength;
+  }
+
+  private static DataSpec rewrite(DataSpec dataSpec, OriginSet.Origin from, OriginSet.Origin to) {
+    if (from == to) {
+      return dataSpec;
+    }
+    Uri uri = Uri.parse(OriginSet.rewrite(dataSpec.uri.toString(), from, to));
+    return new DataSpec(uri, dataSpec.postBody, dataSpec.absoluteStreamPosition, dataSpec.position,
+      dataSpec.length, dataSpec.key, dataSpec.flags);
+  }
+
+  private static void closeQuietly(UriDataSource dataSource) {
+    try {
+      dataSource.close();
+    } catch (IOException e) {
+      // Ignore.
+    }
+  }
+
+  /**
+   * Opens the same request on every origin on its own thread. The first to open wins and is kept
+   * open; the others are closed as soon as they open.
+   */
+  private final class Race {
+    private final int count;
+    private int finished;
+    private boolean cancelled;
+    UriDataSource winner;
+    OriginSet.Origin winnerOrigin;
+    long winnerLength;
+    IOException lastError;
+
+    Race(int count) {
+      this.count = count;
+    }
+
+    void start(final DataSpec dataSpec, final OriginSet.Origin candidate) {
+      Thread thread = new Thread("MediaKitOriginRace") {
+        @Override
+        public void run() {
+          UriDataSource dataSource = factory.createDataSource();
+          long startMs = SystemClock.elapsedRealtime();
+          try {
+            long length = dataSource.open(dataSpec);
+            originSet.onOpened(candidate, SystemClock.elapsedRealtime() - startMs);
+            if (!onOpened(dataSource, candidate, length)) {
+              closeQuietly(dataSource);
+            }
+          } catch (IOException e) {
+            Log.w(TAG, "race...failed on " + candidate.host, e);
+            originSet.onError(candidate);
+            closeQuietly(dataSource);
+            onFailed(e);
+          }
+        }
+      };
+      thread.setDaemon(true);
+      thread.start();
+    }
+
+    private synchronized boolean onOpened(UriDataSource dataSource, OriginSet.Origin candidate, long length) {
+      finished++;
+      if (winner != null || cancelled) {
+        return false;
+      }
+      winner = dataSource;
+      winnerOrigin = candidate;
+      winnerLength = length;
+      notifyAll();
+      return true;
+    }
+
+    private synchronized void onFailed(IOException e) {
+      finished++;
+      lastError = e;
+      notifyAll();
+    }
+
+    synchronized void await() throws InterruptedException {
+      while (winner == null && finished < count) {
+        wait();
+      }
+    }
+
+    synchronized void cancel() {
+      cancelled = true;
+      if (winner != null) {
+        closeQuietly(winner);
+        winner = null;
+      }
+    }
+  }
+}
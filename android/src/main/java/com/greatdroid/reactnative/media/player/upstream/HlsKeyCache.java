@@ -0,0 +1,254 @@
+package com.greatdroid.reactnative.media.player.upstream;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.security.keystore.KeyGenParameterSpec;
+import android.security.keystore.KeyProperties;
+import android.util.Log;
+
+import com.google.android.exoplayer.util.Util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.spec.GCMParameterSpec;
+
+/**
+ * Remembers AES-128 keys referenced by {@code #EXT-X-KEY} tags across {@code HlsChunkSource}
+ * instances, so that re-entering a title or rebuilding the renderers does not fetch the same keys
+ * again. Entries expire after {@link #EXPIRY_MS} to follow key rotation.
+ * <p>
+ * Keys are kept in memory only, unless the app opts in with {@link #setPersistent(Context, boolean)},
+ * in which case they are also written to the app's private storage, encrypted with an AES-GCM key
+ * held in the Android Keystore. Persistence needs API 23; on older devices the cache stays in
+ * memory only, since the Keystore cannot hold symmetric keys there.
+ */
+public final class HlsKeyCache {
+  private static final String TAG = "HlsKeyCache";
+
+  private static final int MAX_KEYS = 64;
+  private static final int MAX_KEY_URIS = 512;
+  private static final long EXPIRY_MS = 10 * 60 * 1000;
+  private static final String DIRECTORY_NAME = "media_kit_hls_keys";
+  private static final String KEYSTORE_PROVIDER = "AndroidKeyStore";
+  private static final String KEYSTORE_ALIAS = "media_kit_hls_keys";
+  private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+  private static final int GCM_TAG_BITS = 128;
+
+  private static final HlsKeyCache instance = new HlsKeyCache();
+
+  private final Map<String, Entry> keys = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+      return size() > MAX_KEYS;
+    }
+  };
+
+  private final Map<String, Boolean> keyUris = new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+      return size() > MAX_KEY_URIS;
+    }
+  };
+
+  private File directory;
+  private Key storageKey;
+
+  private HlsKeyCache() {
+  }
+
+  public static HlsKeyCache getInstance() {
+    return instance;
+  }
+
+  public synchronized void setPersistent(Context context, boolean persistent) {
+    File directory = context.getDir(DIRECTORY_NAME, Context.MODE_PRIVATE);
+    if (persistent && Util.SDK_INT >= 23) {
+      try {
+        storageKey = getOrCreateStorageKey();
+        this.directory = directory;
+        return;
+      } catch (GeneralSecurityException | IOException e) {
+        Log.w(TAG, "setPersistent...keystore unavailable, keeping keys in memory only", e);
+      }
+    } else if (persistent) {
+      Log.w(TAG, "setPersistent...needs API 23, keeping keys in memory only");
+    }
+    this.directory = null;
+    storageKey = null;
+    File[] files = directory.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+  }
+
+  /**
+   * Records that {@code uri} was referenced as a key by a playlist.
+   */
+  public synchronized void addKeyUri(String uri) {
+    keyUris.put(uri, Boolean.TRUE);
+  }
+
+  public synchronized boolean isKeyUri(String uri) {
+    return keyUris.containsKey(uri);
+  }
+
+  public synchronized byte[] get(String uri) {
+    Entry entry = keys.get(uri);
+    if (entry == null && directory != null) {
+      entry = read(uri);
+      if (entry != null) {
+        keys.put(uri, entry);
+      }
+    }
+    if (entry == null) {
+      return null;
+    }
+    if (entry.isExpired()) {
+      remove(uri);
+      return null;
+    }
+    return entry.key;
+  }
+
+  public synchronized void put(String uri, byte[] key) {
+    Entry entry = new Entry(key, System.currentTimeMillis() + EXPIRY_MS);
+    keys.put(uri, entry);
+    if (directory != null) {
+      write(uri, entry);
+    }
+  }
+
+  public synchronized void remove(String uri) {
+    keys.remove(uri);
+    if (directory != null) {
+      new File(directory, fileName(uri)).delete();
+    }
+  }
+
+  private Entry read(String uri) {
+    File file = new File(directory, fileName(uri));
+    if (!file.exists()) {
+      return null;
+    }
+    DataInputStream in = null;
+    try {
+      in = new DataInputStream(new FileInputStream(file));
+      byte[] iv = new byte[in.readInt()];
+      in.readFully(iv);
+      byte[] sealed = new byte[(int) file.length() - 4 - iv.length];
+      in.readFully(sealed);
+      Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+      cipher.init(Cipher.DECRYPT_MODE, storageKey, new GCMParameterSpec(GCM_TAG_BITS, iv));
+      DataInputStream plain = new DataInputStream(new ByteArrayInputStream(cipher.doFinal(sealed)));
+      long expiresAt = plain.readLong();
+      byte[] key = new byte[plain.readInt()];
+      plain.readFully(key);
+      return new Entry(key, expiresAt);
+    } catch (GeneralSecurityException | IOException | RuntimeException e) {
+      Log.w(TAG, "read...failed, dropping " + file, e);
+      file.delete();
+      return null;
+    } finally {
+      closeQuietly(in);
+    }
+  }
+
+  private void write(String uri, Entry entry) {
+    DataOutputStream out = null;
+    try {
+      ByteArrayOutputStream plain = new ByteArrayOutputStream();
+      DataOutputStream plainOut = new DataOutputStream(plain);
+      plainOut.writeLong(entry.expiresAt);
+      plainOut.writeInt(entry.key.length);
+      plainOut.write(entry.key);
+      Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+      cipher.init(Cipher.ENCRYPT_MODE, storageKey);
+      byte[] sealed = cipher.doFinal(plain.toByteArray());
+      byte[] iv = cipher.getIV();
+      out = new DataOutputStream(new FileOutputStream(new File(directory, fileName(uri))));
+      out.writeInt(iv.length);
+      out.write(iv);
+      out.write(sealed);
+    } catch (GeneralSecurityException | IOException e) {
+      Log.w(TAG, "write...failed", e);
+    } finally {
+      closeQuietly(out);
+    }
+  }
+
+  @TargetApi(23)
+  private static Key getOrCreateStorageKey() throws GeneralSecurityException, IOException {
+    KeyStore keyStore = KeyStore.getInstance(KEYSTORE_PROVIDER);
+    keyStore.load(null);
+    Key key = keyStore.getKey(KEYSTORE_ALIAS, null);
+    if (key != null) {
+      return key;
+    }
+    KeyGenerator generator = KeyGenerator.getInstance(KeyProperties.KEY_ALGORITHM_AES, KEYSTORE_PROVIDER);
+    generator.init(new KeyGenParameterSpec.Builder(KEYSTORE_ALIAS,
+      KeyProperties.PURPOSE_ENCRYPT | KeyProperties.PURPOSE_DECRYPT)
+      .setBlockModes(KeyProperties.BLOCK_MODE_GCM)
+      .setEncryptionPaddings(KeyProperties.ENCRYPTION_PADDING_NONE)
+      .build());
+    return generator.generateKey();
+  }
+
+  private static String fileName(String uri) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-1").digest(uri.getBytes("UTF-8"));
+      StringBuilder name = new StringBuilder(digest.length * 2);
+      for (byte b : digest) {
+        name.append(String.format("%02x", b & 0xff));
+      }
+      return name.toString();
+    } catch (NoSuchAlgorithmException | IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static void closeQuietly(Closeable closeable) {
+    if (closeable != null) {
+      try {
+        closeable.close();
+      } catch (IOException e) {
+        // Ignore.
+      }
+    }
+  }
+
+  private static final class Entry {
+    final byte[] key;
+    /**
+     * Wall-clock expiry, so that persisted entries survive reboots correctly.
+     */
+    final long expiresAt;
+
+    Entry(byte[] key, long expiresAt) {
+      this.key = key;
+      this.expiresAt = expiresAt;
+    }
+
+    boolean isExpired() {
+      return System.currentTimeMillis() > expiresAt;
+    }
+  }
+}
@@ -0,0 +1,140 @@
+package com.greatdroid.reactnative.media.player.upstream;
+
+import com.google.android.exoplayer.C;
+import com.google.android.exoplayer.upstream.DataSpec;
+import com.google.android.exoplayer.upstream.UriDataSource;
+import com.google.android.exoplayer.util.UriUtil;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A {@link UriDataSource} for HLS chunk sources that serves AES-128 keys from {@link HlsKeyCache}.
+ * <p>
+ * Key requests look like any other request, so the playlists passing through are scanned for
+ * {@code #EXT-X-KEY} uris first; responses for those uris are then cached, and served from the
+ * cache on later opens.
+ */
+public class HlsKeyCachingDataSource implements UriDataSource {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final byte[] PLAYLIST_HEADER = "#EXTM3U".getBytes(UTF_8);
+  private static final Pattern KEY_TAG = Pattern.compile("#EXT-X-KEY:.*?METHOD=AES-128.*?URI=\"(.+?)\"");
+  private static final int MAX_PLAYLIST_BYTES = 1024 * 1024;
+  private static final int MAX_KEY_BYTES = 1024;
+
+  private final UriDataSource upstream;
+  private final HlsKeyCache keyCache;
+
+  private String uri;
+  private byte[] cachedKey;
+  private int cachedKeyPosition;
+
+  private ByteArrayOutputStream capture;
+  private boolean capturingKey;
+  private boolean headerChecked;
+  private boolean ended;
+
+  public HlsKeyCachingDataSource(UriDataSource upstream) {
+    this(upstream, HlsKeyCache.getInstance());
+  }
+
+  public HlsKeyCachingDataSource(UriDataSource upstream, HlsKeyCache keyCache) {
+    this.upstream = upstream;
+    this.keyCache = keyCache;
+  }
+
+  @Override
+  public long open(DataSpec dataSpec) throws IOException {
+    uri = dataSpec.uri.toString();
+    ended = false;
+    capturingKey = false;
+    headerChecked = false;
+    if (dataSpec.position == 0 && keyCache.isKeyUri(uri)) {
+      byte[] key = keyCache.get(uri);
+      if (key != null) {
+        cachedKey = key;
+        cachedKeyPosition = 0;
+        return key.length;
+      }
+      capturingKey = true;
+    }
+    capture = dataSpec.position == 0 ? new ByteArrayOutputStream() : null;
+    return upstream.open(dataSpec);
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int readLength) throws IOException {
+    if (cachedKey != null) {
+      if (cachedKeyPosition == cachedKey.length) {
+        return C.RESULT_END_OF_INPUT;
+      }
+      int length = Math.min(readLength, cachedKey.length - cachedKeyPosition);
+      System.arraycopy(cachedKey, cachedKeyPosition, buffer, offset, length);
+      cachedKeyPosition += length;
+      return length;
+    }
+
+    int read = upstream.read(buffer, offset, readLength);
+    if (read == C.RESULT_END_OF_INPUT) {
+      ended = true;
+    } else if (capture != null) {
+      capture.write(buffer, offset, read);
+      boolean notPlaylist = false;
+      if (!capturingKey && !headerChecked && capture.size() >= PLAYLIST_HEADER.length) {
+        headerChecked = true;
+        notPlaylist = !isPlaylist(capture.toByteArray());
+      }
+      if (notPlaylist || capture.size() > (capturingKey ? MAX_KEY_BYTES : MAX_PLAYLIST_BYTES)) {
+        // Media data, or too large to be a key or playlist.
+        capture = null;
+      }
+    }
+    return read;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (cachedKey != null) {
+      cachedKey = null;
+      return;
+    }
+    try {
+      upstream.close();
+    } finally {
+      if (capture != null && ended) {
+        if (capturingKey) {
+          keyCache.put(uri, capture.toByteArray());
+        } else {
+          addKeyUris(uri, new String(capture.toByteArray(), UTF_8));
+        }
+      }
+      capture = null;
+      capturingKey = false;
+    }
+  }
+
+  @Override
+  public String getUri() {
+    return cachedKey != null ? uri : upstream.getUri();
+  }
+
+  private void addKeyUris(String playlistUri, String playlist) {
+    Matcher matcher = KEY_TAG.matcher(playlist);
+    while (matcher.find()) {
+      keyCache.addKeyUri(UriUtil.resolve(playlistUri, matcher.group(1)));
+    }
+  }
+
+  private static boolean isPlaylist(byte[] data) {
+    for (int i = 0; i < PLAYLIST_HEADER.length; i++) {
+      if (data[i] != PLAYLIST_HEADER[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
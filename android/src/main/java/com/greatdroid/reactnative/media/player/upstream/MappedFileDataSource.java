@@ -0,0 +1,155 @@
+package com.greatdroid.reactnative.media.player.upstream;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.net.Uri;
+import android.util.Log;
+
+import com.google.android.exoplayer.C;
+import com.google.android.exoplayer.upstream.DataSpec;
+import com.google.android.exoplayer.upstream.UriDataSource;
+
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A {@link UriDataSource} for local files, uncompressed assets and content uris backed by a file,
+ * which maps the resource into memory once and serves every read from the mapping. Reads then cost
+ * one copy out of the page cache, without a system call, and seeking does not reopen anything.
+ * <p>
+ * Resources that cannot be mapped, like compressed assets, pipes or files over 2GB, are read from
+ * {@code fallback} instead.
+ */
+public final class MappedFileDataSource implements UriDataSource {
+  private static final String TAG = "MappedFileDataSource";
+  private static final String ANDROID_ASSET_PREFIX = "/android_asset/";
+
+  private final Context context;
+  private final UriDataSource fallback;
+
+  private String mappedUri;
+  private ByteBuffer mapped;
+
+  private String uri;
+  private ByteBuffer reading;
+  private boolean readingFallback;
+
+  public MappedFileDataSource(Context context, UriDataSource fallback) {
+    this.context = context;
+    this.fallback = fallback;
+  }
+
+  /**
+   * @return Whether {@code uri} is on the device, and so may be mapped.
+   */
+  public static boolean isLocal(Uri uri) {
+    String scheme = uri.getScheme();
+    return scheme == null || "file".equals(scheme) || "asset".equals(scheme) || "content".equals(scheme);
+  }
+
+  @Override
+  public long open(DataSpec dataSpec) throws IOException {
+    uri = dataSpec.uri.toString();
+    if (!uri.equals(mappedUri)) {
+      mapped = map(dataSpec.uri);
+      mappedUri = mapped == null ? null : uri;
+    }
+    if (mapped == null) {
+      readingFallback = true;
+      return fallback.open(dataSpec);
+    }
+
+    long available = mapped.capacity() - dataSpec.position;
+    long length = dataSpec.length == C.LENGTH_UNBOUNDED ? available : dataSpec.length;
+    if (available < 0 || length > available) {
+      throw new EOFException();
+    }
+    reading = mapped.duplicate();
+    reading.position((int) dataSpec.position);
+    reading.limit((int) (dataSpec.position + length));
+    return length;
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int readLength) throws IOException {
+    if (readingFallback) {
+      return fallback.read(buffer, offset, readLength);
+    }
+    if (!reading.hasRemaining()) {
+      return C.RESULT_END_OF_INPUT;
+    }
+    int length = Math.min(readLength, reading.remaining());
+    reading.get(buffer, offset, length);
+    return length;
+  }
+
+  @Override
+  public void close() throws IOException {
+    reading = null;
+    if (readingFallback) {
+      readingFallback = false;
+      fallback.close();
+    }
+  }
+
+  @Override
+  public String getUri() {
+    return uri;
+  }
+
+  /**
+   * @return The whole resource, or null if it cannot be mapped.
+   */
+  private ByteBuffer map(Uri uri) {
+    String scheme = uri.getScheme();
+    try {
+      if (scheme == null || "file".equals(scheme)) {
+        String path = uri.getPath();
+        if (path.startsWith(ANDROID_ASSET_PREFIX)) {
+          return map(context.getAssets().openFd(path.substring(ANDROID_ASSET_PREFIX.length())));
+        }
+        RandomAccessFile file = new RandomAccessFile(path, "r");
+        try {
+          return map(file.getChannel(), 0, file.length());
+        } finally {
+          file.close();
+        }
+      } else if ("asset".equals(scheme)) {
+        String path = uri.getPath();
+        return map(context.getAssets().openFd(path.startsWith("/") ? path.substring(1) : path));
+      } else if ("content".equals(scheme)) {
+        AssetFileDescriptor descriptor = context.getContentResolver().openAssetFileDescriptor(uri, "r");
+        return descriptor == null ? null : map(descriptor);
+      }
+    } catch (IOException | RuntimeException e) {
+      // Compressed assets cannot be opened as descriptors, nor pipes mapped; stream those.
+      Log.d(TAG, "map...falling back to streaming " + uri + ": " + e);
+    }
+    return null;
+  }
+
+  private static ByteBuffer map(AssetFileDescriptor descriptor) throws IOException {
+    try {
+      FileChannel channel = new FileInputStream(descriptor.getFileDescriptor()).getChannel();
+      long length = descriptor.getLength();
+      if (length == AssetFileDescriptor.UNKNOWN_LENGTH) {
+        length = channel.size() - descriptor.getStartOffset();
+      }
+      return map(channel, descriptor.getStartOffset(), length);
+    } finally {
+      // The mapping stays valid after the descriptor is closed.
+      descriptor.close();
+    }
+  }
+
+  private static ByteBuffer map(FileChannel channel, long offset, long length) throws IOException {
+    if (length > Integer.MAX_VALUE) {
+      throw new IOException("Too large to map: " + length);
+    }
+    return channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+  }
+}
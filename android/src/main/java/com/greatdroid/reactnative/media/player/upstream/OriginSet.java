@@ -0,0 +1,203 @@
+package com.greatdroid.reactnative.media.player.upstream;
+
+import android.net.Uri;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Equivalent origins serving the same content, e.g. one per CDN, and the choice of which one
+ * requests currently go to. Each origin is the part of its source uri before the path they all
+ * share, so {@code https://a.example.com/vod/1/master.m3u8} and
+ * {@code https://b.example.net/cdn/vod/1/master.m3u8} give the origins
+ * {@code https://a.example.com/} and {@code https://b.example.net/cdn/}, and any request below one
+ * origin can be sent to another.
+ * <p>
+ * The choice is made from {@link OriginStats} by the expected time to fetch a typical segment,
+ * divided by the origin's weight; origins that failed recently are held back for a cooldown. The
+ * current origin is kept until another one is clearly better, so that a session does not bounce
+ * between hosts on noise.
+ */
+public final class OriginSet {
+  private static final String TAG = "OriginSet";
+
+  private static final long DEFAULT_LATENCY_MS = 300;
+  private static final long DEFAULT_BITS_PER_SECOND = 2000000;
+  private static final long REFERENCE_BYTES = 1024 * 1024;
+  /**
+   * How much worse than the best origin the current one may get before it is replaced.
+   */
+  private static final double SWITCH_THRESHOLD = 1.25;
+
+  static final class Origin {
+    final String prefix;
+    final String host;
+    final float weight;
+
+    Origin(String prefix, String host, float weight) {
+      this.prefix = prefix;
+      this.host = host;
+      this.weight = weight;
+    }
+  }
+
+  private final OriginStats stats;
+  private final List<Origin> origins;
+  private Origin preferred;
+  private boolean raced;
+
+  private OriginSet(OriginStats stats, List<Origin> origins) {
+    this.stats = stats;
+    this.origins = Collections.unmodifiableList(origins);
+  }
+
+  /**
+   * @param uris    The same content at each origin, in order of preference.
+   * @param weights The relative share of traffic each origin should get when they perform alike,
+   *                or null to weigh them equally.
+   */
+  public static OriginSet create(OriginStats stats, List<String> uris, List<Float> weights) {
+    int suffixLength = commonSuffixLength(uris);
+    List<Origin> origins = new ArrayList<>();
+    for (int i = 0; i < uris.size(); i++) {
+      String uri = uris.get(i);
+      String prefix = uri.substring(0, uri.length() - suffixLength);
+      boolean duplicate = false;
+      for (Origin origin : origins) {
+        duplicate |= origin.prefix.equals(prefix);
+      }
+      if (duplicate) {
+        continue;
+      }
+      float weight = weights == null || weights.get(i) <= 0 ? 1 : weights.get(i);
+      origins.add(new Origin(prefix, Uri.parse(uri).getAuthority(), weight));
+    }
+    return new OriginSet(stats, origins);
+  }
+
+  /**
+   * @return The length of the path all {@code uris} end with, cut back to start after a '/' in every
+   * one of them, so that each keeps at least its scheme and host and origins end on a segment.
+   */
+  static int commonSuffixLength(List<String> uris) {
+    if (uris.size() < 2) {
+      return 0;
+    }
+    String first = uris.get(0);
+    int length = first.length();
+    for (String uri : uris) {
+      int common = 0;
+      while (common < length && common < uri.length()
+        && uri.charAt(uri.length() - 1 - common) == first.charAt(first.length() - 1 - common)) {
+        common++;
+      }
+      length = common;
+    }
+    for (String uri : uris) {
+      int pathStart = uri.indexOf('/', uri.indexOf("://") + 3);
+      length = Math.min(length, pathStart < 0 ? 0 : uri.length() - pathStart - 1);
+    }
+    while (length > 0 && !followsSlash(uris, length)) {
+      length--;
+    }
+    return length;
+  }
+
+  private static boolean followsSlash(List<String> uris, int suffixLength) {
+    for (String uri : uris) {
+      if (uri.charAt(uri.length() - suffixLength - 1) != '/') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public int size() {
+    return origins.size();
+  }
+
+  List<Origin> getOrigins() {
+    return origins;
+  }
+
+  /**
+   * @return The origin {@code uri} is below, or null if it is not below any.
+   */
+  Origin match(String uri) {
+    Origin match = null;
+    for (Origin origin : origins) {
+      if (uri.startsWith(origin.prefix) && (match == null || origin.prefix.length() > match.prefix.length())) {
+        match = origin;
+      }
+    }
+    return match;
+  }
+
+  static String rewrite(String uri, Origin from, Origin to) {
+    return from == to ? uri : to.prefix + uri.substring(from.prefix.length());
+  }
+
+  /**
+   * @return Whether the caller should race its request across all origins; true only once.
+   */
+  synchronized boolean shouldRace() {
+    if (raced) {
+      return false;
+    }
+    raced = true;
+    return true;
+  }
+
+  synchronized void setPreferred(Origin origin) {
+    Log.d(TAG, "setPreferred...host=" + origin.host);
+    preferred = origin;
+  }
+
+  /**
+   * @return The origin the next request should go to.
+   */
+  synchronized Origin select() {
+    long nowMs = System.currentTimeMillis();
+    Origin best = null;
+    double bestCost = Double.MAX_VALUE;
+    double preferredCost = Double.MAX_VALUE;
+    for (Origin origin : origins) {
+      double cost = estimateCostMs(stats.snapshot(origin.host), nowMs) / origin.weight;
+      if (cost < bestCost) {
+        best = origin;
+        bestCost = cost;
+      }
+      if (origin == preferred) {
+        preferredCost = cost;
+      }
+    }
+    if (preferred != null && preferredCost <= bestCost * SWITCH_THRESHOLD) {
+      return preferred;
+    }
+    Log.d(TAG, "select...switching to " + best.host + ", cost=" + (long) bestCost);
+    preferred = best;
+    return best;
+  }
+
+  private static double estimateCostMs(OriginStats.Host host, long nowMs) {
+    long latencyMs = host.latencyMs < 0 ? DEFAULT_LATENCY_MS : host.latencyMs;
+    long bitsPerSecond = host.bitsPerSecond <= 0 ? DEFAULT_BITS_PER_SECOND : host.bitsPerSecond;
+    double cost = latencyMs + REFERENCE_BYTES * 8000.0 / bitsPerSecond;
+    // Hosts cooling down after errors are only used when all of them are, soonest available first.
+    return cost + Math.max(0, host.getCooldownEndMs() - nowMs);
+  }
+
+  void onOpened(Origin origin, long latencyMs) {
+    stats.onOpened(origin.host, latencyMs);
+  }
+
+  void onTransferred(Origin origin, long bytes, long elapsedMs) {
+    stats.onTransferred(origin.host, bytes, elapsedMs);
+  }
+
+  void onError(Origin origin) {
+    stats.onError(origin.host);
+  }
+}
@@ -0,0 +1,189 @@
+package com.greatdroid.reactnative.media.player.upstream;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.util.Log;
+
+import com.greatdroid.reactnative.media.player.PrepareThread;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Request latency, throughput and failures per host, shared by all players and kept across app
+ * launches so that the first request of a session already goes to the host that served best last
+ * time. Updates are written to {@link SharedPreferences} in batches on {@link PrepareThread}.
+ */
+public final class OriginStats {
+  private static final String TAG = "OriginStats";
+  private static final String PREFERENCES_NAME = "media_kit_origin_stats";
+
+  private static final long FLUSH_DELAY_MS = 10000;
+  /**
+   * Weight of a new sample in the moving averages.
+   */
+  private static final float SAMPLE_WEIGHT = 0.3f;
+  /**
+   * Transfers smaller than this say more about latency than throughput.
+   */
+  private static final long MIN_THROUGHPUT_BYTES = 64 * 1024;
+  private static final long BASE_COOLDOWN_MS = 10000;
+  private static final long MAX_COOLDOWN_MS = 5 * 60 * 1000;
+
+  private static OriginStats instance;
+
+  private final SharedPreferences preferences;
+  private final Handler handler;
+  private final Map<String, Host> hosts = new HashMap<>();
+  private boolean loaded;
+  private boolean flushScheduled;
+
+  private final Runnable flush = new Runnable() {
+    @Override
+    public void run() {
+      write();
+    }
+  };
+
+  /**
+   * What is known about one host. Fields are only accessed with the enclosing stats locked.
+   */
+  static final class Host {
+    /**
+     * Moving average of the time to open a request, or -1 if unknown.
+     */
+    long latencyMs = -1;
+    /**
+     * Moving average of the transfer rate, or -1 if unknown.
+     */
+    long bitsPerSecond = -1;
+    int consecutiveErrors;
+    long lastErrorAtMs;
+
+    long getCooldownEndMs() {
+      if (consecutiveErrors == 0) {
+        return 0;
+      }
+      long cooldownMs = Math.min(BASE_COOLDOWN_MS << Math.min(consecutiveErrors - 1, 10), MAX_COOLDOWN_MS);
+      return lastErrorAtMs + cooldownMs;
+    }
+  }
+
+  private OriginStats(SharedPreferences preferences, Handler handler) {
+    this.preferences = preferences;
+    this.handler = handler;
+  }
+
+  public static synchronized OriginStats getInstance(Context context) {
+    if (instance == null) {
+      SharedPreferences preferences = context.getApplicationContext().getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+      instance = new OriginStats(preferences, PrepareThread.getHandler());
+    }
+    return instance;
+  }
+
+  /**
+   * Records a request to {@code host} that opened after {@code latencyMs}.
+   */
+  public synchronized void onOpened(String host, long latencyMs) {
+    Host stats = get(host);
+    stats.latencyMs = average(stats.latencyMs, latencyMs);
+    stats.consecutiveErrors = 0;
+    scheduleFlush();
+  }
+
+  /**
+   * Records a completed read of {@code bytes} from {@code host}.
+   */
+  public synchronized void onTransferred(String host, long bytes, long elapsedMs) {
+    if (bytes < MIN_THROUGHPUT_BYTES || elapsedMs <= 0) {
+      return;
+    }
+    Host stats = get(host);
+    stats.bitsPerSecond = average(stats.bitsPerSecond, bytes * 8000 / elapsedMs);
+    scheduleFlush();
+  }
+
+  public synchronized void onError(String host) {
+    Host stats = get(host);
+    stats.consecutiveErrors++;
+    stats.lastErrorAtMs = System.currentTimeMillis();
+    scheduleFlush();
+  }
+
+  /**
+   * @return A copy of what is known about {@code host}.
+   */
+  synchronized Host snapshot(String host) {
+    Host stats = get(host);
+    Host copy = new Host();
+    copy.latencyMs = stats.latencyMs;
+    copy.bitsPerSecond = stats.bitsPerSecond;
+    copy.consecutiveErrors = stats.consecutiveErrors;
+    copy.lastErrorAtMs = stats.lastErrorAtMs;
+    return copy;
+  }
+
+  private Host get(String host) {
+    load();
+    Host stats = hosts.get(host);
+    if (stats == null) {
+      stats = new Host();
+      hosts.put(host, stats);
+    }
+    return stats;
+  }
+
+  private static long average(long average, long sample) {
+    return average < 0 ? sample : (long) (average * (1 - SAMPLE_WEIGHT) + sample * SAMPLE_WEIGHT);
+  }
+
+  private void load() {
+    if (loaded) {
+      return;
+    }
+    loaded = true;
+    for (Map.Entry<String, ?> entry : preferences.getAll().entrySet()) {
+      if (!(entry.getValue() instanceof String)) {
+        continue;
+      }
+      String[] values = ((String) entry.getValue()).split(",");
+      if (values.length != 4) {
+        continue;
+      }
+      try {
+        Host stats = new Host();
+        stats.latencyMs = Long.parseLong(values[0]);
+        stats.bitsPerSecond = Long.parseLong(values[1]);
+        stats.consecutiveErrors = Integer.parseInt(values[2]);
+        stats.lastErrorAtMs = Long.parseLong(values[3]);
+        hosts.put(entry.getKey(), stats);
+      } catch (NumberFormatException e) {
+        Log.w(TAG, "load...ignoring " + entry.getKey() + "=" + entry.getValue());
+      }
+    }
+  }
+
+  private void scheduleFlush() {
+    if (!flushScheduled) {
+      flushScheduled = true;
+      handler.postDelayed(flush, FLUSH_DELAY_MS);
+    }
+  }
+
+  private void write() {
+    SharedPreferences.Editor editor = preferences.edit();
+    synchronized (this) {
+      flushScheduled = false;
+      for (Map.Entry<String, Host> entry : hosts.entrySet()) {
+        Host stats = entry.getValue();
+        editor.putString(entry.getKey(), stats.latencyMs + "," + stats.bitsPerSecond + ","
+          + stats.consecutiveErrors + "," + stats.lastErrorAtMs);
+      }
+    }
+    if (!editor.commit()) {
+      Log.w(TAG, "write...failed to save stats");
+    }
+  }
+}
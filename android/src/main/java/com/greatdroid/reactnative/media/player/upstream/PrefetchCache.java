@@ -0,0 +1,222 @@
+package com.greatdroid.reactnative.media.player.upstream;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.google.android.exoplayer.C;
+import com.google.android.exoplayer.upstream.DataSource;
+import com.google.android.exoplayer.upstream.DataSpec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Holds speculative loads started ahead of the request that will eventually need them. Each load is
+ * keyed by the uri and byte range of its {@link DataSpec} within a scope, normally the player's
+ * current source, and handed out at most once, to the first {@link PrefetchingDataSource} of that
+ * scope opening a matching spec, so refreshed resources such as live playlists are never served
+ * stale and players of the same source never take or drop each other's loads.
+ */
+public final class PrefetchCache {
+  private static final String TAG = "PrefetchCache";
+
+  private static final int MAX_ENTRIES = 16;
+  private static final int MAX_ENTRY_BYTES = 8 * 1024 * 1024;
+  private static final long EXPIRY_MS = 30000;
+
+  private static final Map<Key, Task> tasks = new LinkedHashMap<>();
+
+  private static final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, "MediaKitPrefetch");
+      thread.setDaemon(true);
+      return thread;
+    }
+  });
+
+  private PrefetchCache() {
+  }
+
+  /**
+   * Starts loading {@code dataSpec} in the background unless a load for it is already pending in
+   * {@code scope}.
+   *
+   * @param scope      The owner of the load; only data sources of the same scope are served it.
+   * @param dataSource A data source dedicated to this load.
+   */
+  public static Task prefetch(Object scope, DataSource dataSource, DataSpec dataSpec) {
+    Key key = new Key(scope, dataSpec);
+    Task task;
+    synchronized (tasks) {
+      task = tasks.get(key);
+      if (task != null && !task.isExpired()) {
+        return task;
+      }
+      task = new Task(scope, dataSource, dataSpec);
+      tasks.put(key, task);
+      trim();
+    }
+    Log.d(TAG, "prefetch..." + key);
+    executor.execute(task);
+    return task;
+  }
+
+  /**
+   * Runs {@code runnable} on the prefetch executor, for work that chains several prefetches.
+   */
+  public static void execute(Runnable runnable) {
+    executor.execute(runnable);
+  }
+
+  /**
+   * Removes and returns the load of {@code scope} matching {@code dataSpec}, or null if there is
+   * none.
+   */
+  public static Task take(Object scope, DataSpec dataSpec) {
+    synchronized (tasks) {
+      Task task = tasks.remove(new Key(scope, dataSpec));
+      if (task == null) {
+        return null;
+      }
+      return task.isExpired() ? null : task;
+    }
+  }
+
+  /**
+   * Drops {@code task} if it was never taken.
+   */
+  public static void discard(Task task) {
+    synchronized (tasks) {
+      if (tasks.values().remove(task)) {
+        task.cancel(true);
+      }
+    }
+  }
+
+  /**
+   * Drops the loads of {@code scope} that were never taken.
+   */
+  public static void discardAll(Object scope) {
+    synchronized (tasks) {
+      Iterator<Task> iterator = tasks.values().iterator();
+      while (iterator.hasNext()) {
+        Task task = iterator.next();
+        if (task.scope == scope) {
+          task.cancel(true);
+          iterator.remove();
+        }
+      }
+    }
+  }
+
+  private static void trim() {
+    Iterator<Task> iterator = tasks.values().iterator();
+    while (iterator.hasNext()) {
+      Task task = iterator.next();
+      if (tasks.size() > MAX_ENTRIES || task.isExpired()) {
+        task.cancel(true);
+        iterator.remove();
+      }
+    }
+  }
+
+  /**
+   * Identifies a load by its spec and the identity of its scope, so that distinct scopes never
+   * share an entry even when their identity hash codes collide.
+   */
+  private static final class Key {
+    private final Object scope;
+    private final String spec;
+
+    Key(Object scope, DataSpec dataSpec) {
+      this.scope = scope;
+      this.spec = dataSpec.uri + "@" + dataSpec.position + "+" + dataSpec.length;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return scope == other.scope && spec.equals(other.spec);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * System.identityHashCode(scope) + spec.hashCode();
+    }
+
+    @Override
+    public String toString() {
+      return Integer.toHexString(System.identityHashCode(scope)) + ":" + spec;
+    }
+  }
+
+  static byte[] load(DataSource dataSource, DataSpec dataSpec, int maxBytes) throws IOException {
+    try {
+      long length = dataSource.open(dataSpec);
+      if (length > maxBytes) {
+        throw new IOException("Too large to prefetch: " + length + " bytes");
+      }
+      ByteArrayOutputStream out = new ByteArrayOutputStream(length > 0 ? (int) length : 16 * 1024);
+      byte[] buffer = new byte[16 * 1024];
+      int read;
+      while ((read = dataSource.read(buffer, 0, buffer.length)) != C.RESULT_END_OF_INPUT) {
+        out.write(buffer, 0, read);
+        if (out.size() > maxBytes) {
+          throw new IOException("Too large to prefetch: more than " + maxBytes + " bytes");
+        }
+      }
+      return out.toByteArray();
+    } finally {
+      dataSource.close();
+    }
+  }
+
+  public static final class Task extends FutureTask<byte[]> {
+    private final long createdAt = SystemClock.elapsedRealtime();
+    private final Object scope;
+
+    private Task(Object scope, final DataSource dataSource, final DataSpec dataSpec) {
+      super(new Callable<byte[]>() {
+        @Override
+        public byte[] call() throws Exception {
+          return load(dataSource, dataSpec, MAX_ENTRY_BYTES);
+        }
+      });
+      this.scope = scope;
+    }
+
+    private boolean isExpired() {
+      return SystemClock.elapsedRealtime() - createdAt > EXPIRY_MS;
+    }
+
+    /**
+     * Waits for the load to finish.
+     *
+     * @return The loaded bytes, or null if the load failed or was cancelled.
+     */
+    public byte[] await() throws InterruptedException {
+      try {
+        return get();
+      } catch (ExecutionException e) {
+        Log.w(TAG, "await...prefetch failed", e.getCause());
+        return null;
+      } catch (CancellationException e) {
+        return null;
+      }
+    }
+  }
+}
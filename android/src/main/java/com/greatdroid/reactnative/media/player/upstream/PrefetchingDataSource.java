@@ -0,0 +1,83 @@
+package com.greatdroid.reactnative.media.player.upstream;
+
+import com.google.android.exoplayer.C;
+import com.google.android.exoplayer.upstream.DataSpec;
+import com.google.android.exoplayer.upstream.UriDataSource;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+/**
+ * A {@link UriDataSource} that serves a request from {@link PrefetchCache} when a matching load was
+ * started ahead of time in its scope, joining it if it is still in flight, and from {@code upstream}
+ * otherwise.
+ */
+public class PrefetchingDataSource implements UriDataSource {
+
+  private final UriDataSource upstream;
+  private final Object scope;
+
+  private byte[] data;
+  private int readPosition;
+  private String uri;
+  private boolean upstreamOpened;
+
+  /**
+   * @param scope The scope loads were prefetched in, see {@link PrefetchCache#prefetch}.
+   */
+  public PrefetchingDataSource(UriDataSource upstream, Object scope) {
+    this.upstream = upstream;
+    this.scope = scope;
+  }
+
+  @Override
+  public long open(DataSpec dataSpec) throws IOException {
+    PrefetchCache.Task task = PrefetchCache.take(scope, dataSpec);
+    if (task != null) {
+      byte[] bytes;
+      try {
+        bytes = task.await();
+      } catch (InterruptedException e) {
+        throw new InterruptedIOException();
+      }
+      if (bytes != null) {
+        data = bytes;
+        readPosition = 0;
+        uri = dataSpec.uri.toString();
+        return data.length;
+      }
+    }
+    upstreamOpened = true;
+    return upstream.open(dataSpec);
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int readLength) throws IOException {
+    if (data == null) {
+      return upstream.read(buffer, offset, readLength);
+    }
+    if (readPosition == data.length) {
+      return C.RESULT_END_OF_INPUT;
+    }
+    int length = Math.min(readLength, data.length - readPosition);
+    System.arraycopy(data, readPosition, buffer, offset, length);
+    readPosition += length;
+    return length;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (data != null) {
+      data = null;
+      uri = null;
+    } else if (upstreamOpened) {
+      upstreamOpened = false;
+      upstream.close();
+    }
+  }
+
+  @Override
+  public String getUri() {
+    return data != null ? uri : upstream.getUri();
+  }
+}
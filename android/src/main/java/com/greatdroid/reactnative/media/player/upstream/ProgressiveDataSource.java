@@ -0,0 +1,515 @@
+package com.greatdroid.reactnative.media.player.upstream;
+
+import android.util.Log;
+
+import com.google.android.exoplayer.C;
+import com.google.android.exoplayer.upstream.DataSpec;
+import com.google.android.exoplayer.upstream.UriDataSource;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A {@link UriDataSource} for progressive files over the network that loads ranges ahead of the
+ * reader on parallel connections, and handles MP4 files with the {@code moov} atom at the end.
+ * <p>
+ * Once the length of the file is known, the next {@link #PARALLEL_LOADS} ranges of
+ * {@link #RANGE_BYTES} after the read position are loaded in the background, and reads move over
+ * to them as they get there, so a single slow connection does not bound throughput and a seek is
+ * followed by parallel loads from its new position.
+ * <p>
+ * When the first bytes show an {@code mdat} atom before any {@code moov}, the extractor is about to
+ * seek to the end of the file for the sample tables, then back to the first samples. The tail is
+ * requested right away, and the connection that read the header keeps loading the start of
+ * {@code mdat} in the background, so both seeks land on bytes that are already arriving. These two
+ * ranges are kept across opens until they are read, or until {@link #MAX_UNREAD_OPENS} opens went
+ * elsewhere.
+ * <p>
+ * Background loads stop when the source is closed, except for those two ranges, and all of them
+ * stop on {@link #release()}.
+ */
+public final class ProgressiveDataSource implements UriDataSource {
+  private static final String TAG = "ProgressiveDataSource";
+
+  public interface Factory {
+    /**
+     * @return A new data source for one connection.
+     */
+    UriDataSource createDataSource();
+  }
+
+  private static final long RANGE_BYTES = 2 * 1024 * 1024;
+  private static final int PARALLEL_LOADS = 2;
+  /**
+   * Only atoms starting in the first bytes are looked at.
+   */
+  private static final long SNIFF_LIMIT = 64 * 1024;
+  /**
+   * Below this, the MP4 extractor reads through {@code mdat} instead of seeking over it.
+   */
+  private static final long MIN_MDAT_SKIP_BYTES = 256 * 1024;
+  private static final long MAX_TAIL_BYTES = 16 * 1024 * 1024;
+  private static final int MAX_UNREAD_OPENS = 2;
+  private static final Charset ASCII = Charset.forName("US-ASCII");
+
+  private final Factory factory;
+  private final List<RangeLoader> loaders = new ArrayList<>();
+  private String loadersUri;
+  private long resourceLength = C.LENGTH_UNBOUNDED;
+  private volatile boolean released;
+
+  private DataSpec dataSpec;
+  private String uri;
+  private long position;
+  private long bytesRemaining;
+  private UriDataSource foreground;
+  private RangeLoader loader;
+  private AtomSniffer sniffer;
+
+  public ProgressiveDataSource(Factory factory) {
+    this.factory = factory;
+  }
+
+  @Override
+  public long open(DataSpec dataSpec) throws IOException {
+    this.dataSpec = dataSpec;
+    this.uri = dataSpec.uri.toString();
+    this.position = dataSpec.position;
+    this.bytesRemaining = dataSpec.length;
+    if (!uri.equals(loadersUri)) {
+      cancelLoaders();
+      loadersUri = uri;
+      resourceLength = C.LENGTH_UNBOUNDED;
+    }
+    boolean sequential = dataSpec.length == C.LENGTH_UNBOUNDED;
+    sniffer = position == 0 && sequential ? new AtomSniffer() : null;
+
+    loader = findLoader(position);
+    unpinUnread(loader);
+    pruneLoaders();
+    if (loader == null) {
+      return openForeground();
+    }
+    loader.pinned = false;
+    if (sequential) {
+      bytesRemaining = resourceLength == C.LENGTH_UNBOUNDED ? C.LENGTH_UNBOUNDED : resourceLength - position;
+    }
+    return bytesRemaining;
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int readLength) throws IOException {
+    if (bytesRemaining == 0) {
+      return C.RESULT_END_OF_INPUT;
+    }
+    int length = bytesRemaining == C.LENGTH_UNBOUNDED ? readLength : (int) Math.min(readLength, bytesRemaining);
+
+    if (loader == null) {
+      RangeLoader next = findLoader(position);
+      if (next != null) {
+        // Reading caught up with a range loaded in the background.
+        closeForeground();
+        loader = next;
+        loader.pinned = false;
+      }
+    }
+    if (loader != null) {
+      int read = loader.read(position, buffer, offset, length);
+      if (read > 0) {
+        advance(read);
+        if (sniffer == null && !loader.pinned) {
+          loadAhead(loader.end);
+        }
+        return read;
+      }
+      // The range ended or failed; carry on with the next one or the network.
+      loader = null;
+      pruneLoaders();
+      if (resourceLength != C.LENGTH_UNBOUNDED && position >= resourceLength) {
+        return C.RESULT_END_OF_INPUT;
+      }
+      RangeLoader next = findLoader(position);
+      if (next != null) {
+        loader = next;
+        loader.pinned = false;
+        return read(buffer, offset, readLength);
+      }
+      openForeground();
+    }
+    if (foreground == null) {
+      openForeground();
+    }
+
+    int read = foreground.read(buffer, offset, length);
+    if (read == C.RESULT_END_OF_INPUT) {
+      return read;
+    }
+    if (sniffer != null) {
+      sniffer.feed(buffer, offset, read, position);
+    }
+    advance(read);
+    if (sniffer != null && sniffer.finished) {
+      onSniffed();
+    }
+    return read;
+  }
+
+  @Override
+  public void close() throws IOException {
+    loader = null;
+    sniffer = null;
+    // Nothing reads until the next open, which may be anywhere; only the ranges the MP4 extractor
+    // is about to seek to are worth finishing.
+    synchronized (loaders) {
+      Iterator<RangeLoader> iterator = loaders.iterator();
+      while (iterator.hasNext()) {
+        RangeLoader rangeLoader = iterator.next();
+        if (!rangeLoader.pinned) {
+          rangeLoader.cancel();
+          iterator.remove();
+        }
+      }
+    }
+    closeForeground();
+  }
+
+  /**
+   * Stops every background load for good. Called when the player is done with the source, from any
+   * thread.
+   */
+  public void release() {
+    released = true;
+    cancelLoaders();
+  }
+
+  @Override
+  public String getUri() {
+    return uri;
+  }
+
+  private long openForeground() throws IOException {
+    DataSpec spec = new DataSpec(dataSpec.uri, dataSpec.absoluteStreamPosition + position - dataSpec.position,
+      position, bytesRemaining, dataSpec.key, dataSpec.flags);
+    foreground = factory.createDataSource();
+    long length = foreground.open(spec);
+    if (length != C.LENGTH_UNBOUNDED && bytesRemaining == C.LENGTH_UNBOUNDED) {
+      resourceLength = position + length;
+    }
+    if (sniffer == null) {
+      loadAhead(position + RANGE_BYTES);
+    }
+    return length;
+  }
+
+  private void closeForeground() throws IOException {
+    if (foreground != null) {
+      UriDataSource closing = foreground;
+      foreground = null;
+      closing.close();
+    }
+  }
+
+  private void onSniffed() {
+    AtomSniffer sniffed = sniffer;
+    sniffer = null;
+    if (!sniffed.moovAtEnd || sniffed.mdatSize < MIN_MDAT_SKIP_BYTES) {
+      loadAhead(position + RANGE_BYTES);
+      return;
+    }
+    long tailStart = sniffed.mdatOffset + sniffed.mdatSize;
+    long tailEnd = resourceLength == C.LENGTH_UNBOUNDED ? tailStart + MAX_TAIL_BYTES
+      : Math.min(resourceLength, tailStart + MAX_TAIL_BYTES);
+    Log.d(TAG, "onSniffed...moov after mdat, loading " + tailStart + "-" + tailEnd + " of " + uri);
+    if (tailStart < tailEnd) {
+      startLoader(RangeLoader.create(factory.createDataSource(), dataSpec, tailStart, tailEnd), true);
+    }
+    // Keep this connection going in the background for the first samples.
+    long headEnd = Math.min(position + RANGE_BYTES, tailStart);
+    startLoader(RangeLoader.resume(foreground, position, headEnd), true);
+    foreground = null;
+  }
+
+  /**
+   * Makes sure the {@link #PARALLEL_LOADS} ranges from {@code start} on are loading.
+   */
+  private void loadAhead(long start) {
+    if (resourceLength == C.LENGTH_UNBOUNDED || dataSpec.length != C.LENGTH_UNBOUNDED) {
+      // Only sequential reads of a resource of known length are worth loading ahead for.
+      return;
+    }
+    for (int i = 0; i < PARALLEL_LOADS; i++) {
+      long rangeStart = start + i * RANGE_BYTES;
+      if (rangeStart >= resourceLength) {
+        return;
+      }
+      if (findLoader(rangeStart) == null) {
+        long rangeEnd = Math.min(rangeStart + RANGE_BYTES, resourceLength);
+        startLoader(RangeLoader.create(factory.createDataSource(), dataSpec, rangeStart, rangeEnd), false);
+      }
+    }
+  }
+
+  private void startLoader(RangeLoader rangeLoader, boolean pinned) {
+    rangeLoader.pinned = pinned;
+    synchronized (loaders) {
+      if (released) {
+        // Not opened yet; the run below returns right away.
+        rangeLoader.cancel();
+      } else {
+        loaders.add(rangeLoader);
+      }
+    }
+    PrefetchCache.execute(rangeLoader);
+  }
+
+  private RangeLoader findLoader(long position) {
+    synchronized (loaders) {
+      for (RangeLoader rangeLoader : loaders) {
+        if (rangeLoader.covers(position)) {
+          return rangeLoader;
+        }
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Counts an open that did not land on the pinned ranges other than {@code opened}, and unpins
+   * those passed over too often, so that pruning drops them.
+   */
+  private void unpinUnread(RangeLoader opened) {
+    synchronized (loaders) {
+      for (RangeLoader rangeLoader : loaders) {
+        if (rangeLoader.pinned && rangeLoader != opened && ++rangeLoader.unreadOpens >= MAX_UNREAD_OPENS) {
+          Log.d(TAG, "unpinUnread...dropping " + rangeLoader.start + "-" + rangeLoader.end + " of " + uri);
+          rangeLoader.pinned = false;
+        }
+      }
+    }
+  }
+
+  /**
+   * Drops ranges the read position has passed or moved away from, unless they are still waited for.
+   */
+  private void pruneLoaders() {
+    long aheadEnd = position + (PARALLEL_LOADS + 1) * RANGE_BYTES;
+    synchronized (loaders) {
+      Iterator<RangeLoader> iterator = loaders.iterator();
+      while (iterator.hasNext()) {
+        RangeLoader rangeLoader = iterator.next();
+        boolean useful = rangeLoader.end > position && rangeLoader.start < aheadEnd;
+        if (rangeLoader != loader && !rangeLoader.pinned && !useful) {
+          rangeLoader.cancel();
+          iterator.remove();
+        }
+      }
+    }
+  }
+
+  private void cancelLoaders() {
+    synchronized (loaders) {
+      for (RangeLoader rangeLoader : loaders) {
+        rangeLoader.cancel();
+      }
+      loaders.clear();
+    }
+  }
+
+  private void advance(int read) {
+    position += read;
+    if (bytesRemaining != C.LENGTH_UNBOUNDED) {
+      bytesRemaining -= read;
+    }
+  }
+
+  /**
+   * Loads {@code [start, end)} of a resource on its own connection, for a reader to pick up while
+   * or after it loads.
+   */
+  private static final class RangeLoader implements Runnable {
+    final long start;
+    final long end;
+    boolean pinned;
+    int unreadOpens;
+
+    private final UriDataSource dataSource;
+    private final DataSpec dataSpec;
+    private byte[] data = new byte[64 * 1024];
+    private int size;
+    private boolean finished;
+    private volatile boolean cancelled;
+
+    static RangeLoader create(UriDataSource dataSource, DataSpec dataSpec, long start, long end) {
+      DataSpec rangeSpec = new DataSpec(dataSpec.uri, dataSpec.absoluteStreamPosition + start - dataSpec.position,
+        start, end - start, dataSpec.key, dataSpec.flags);
+      return new RangeLoader(dataSource, rangeSpec, start, end);
+    }
+
+    /**
+     * @param dataSource An open data source positioned at {@code start}.
+     */
+    static RangeLoader resume(UriDataSource dataSource, long start, long end) {
+      return new RangeLoader(dataSource, null, start, end);
+    }
+
+    private RangeLoader(UriDataSource dataSource, DataSpec dataSpec, long start, long end) {
+      this.dataSource = dataSource;
+      this.dataSpec = dataSpec;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    public void run() {
+      try {
+        if (cancelled) {
+          return;
+        }
+        if (dataSpec != null) {
+          dataSource.open(dataSpec);
+        }
+        byte[] buffer = new byte[16 * 1024];
+        long remaining = end - start;
+        while (remaining > 0 && !cancelled) {
+          int read = dataSource.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+          if (read == C.RESULT_END_OF_INPUT) {
+            break;
+          }
+          append(buffer, read);
+          remaining -= read;
+        }
+      } catch (IOException e) {
+        Log.w(TAG, "load...failed at " + (start + size) + " of " + start + "-" + end, e);
+      } finally {
+        try {
+          dataSource.close();
+        } catch (IOException e) {
+          // Ignore.
+        }
+        synchronized (this) {
+          finished = true;
+          notifyAll();
+        }
+      }
+    }
+
+    private synchronized void append(byte[] buffer, int length) {
+      if (size + length > data.length) {
+        byte[] grown = new byte[(int) Math.min(Math.max(data.length * 2, size + length), end - start)];
+        System.arraycopy(data, 0, grown, 0, size);
+        data = grown;
+      }
+      System.arraycopy(buffer, 0, data, size, length);
+      size += length;
+      notifyAll();
+    }
+
+    synchronized boolean covers(long position) {
+      return position >= start && position < (finished ? start + size : end);
+    }
+
+    /**
+     * Copies bytes from {@code position}, waiting for them to load.
+     *
+     * @return The number of bytes copied, or 0 if the range ended before {@code position}.
+     */
+    synchronized int read(long position, byte[] buffer, int offset, int length) throws InterruptedIOException {
+      int from = (int) (position - start);
+      try {
+        while (from >= size && !finished) {
+          wait();
+        }
+      } catch (InterruptedException e) {
+        throw new InterruptedIOException();
+      }
+      if (from >= size) {
+        return 0;
+      }
+      int count = Math.min(length, size - from);
+      System.arraycopy(data, from, buffer, offset, count);
+      return count;
+    }
+
+    void cancel() {
+      cancelled = true;
+    }
+  }
+
+  /**
+   * Follows the top-level atoms of an MP4 file as its first bytes are read, to tell whether
+   * {@code moov} comes after {@code mdat}.
+   */
+  static final class AtomSniffer {
+    boolean finished;
+    boolean moovAtEnd;
+    long mdatOffset;
+    long mdatSize;
+
+    private final byte[] header = new byte[16];
+    private int headerLength;
+    private long atomOffset;
+
+    void feed(byte[] buffer, int offset, int length, long position) {
+      while (!finished && length > 0) {
+        long headerPosition = atomOffset + headerLength;
+        if (position + length <= headerPosition) {
+          return;
+        }
+        if (position < headerPosition) {
+          int skip = (int) (headerPosition - position);
+          offset += skip;
+          length -= skip;
+          position = headerPosition;
+        } else if (position > headerPosition) {
+          finished = true;
+          return;
+        }
+        int needed = headerLength < 8 || readInt(0) != 1 ? 8 : 16;
+        int count = Math.min(length, needed - headerLength);
+        System.arraycopy(buffer, offset, header, headerLength, count);
+        headerLength += count;
+        offset += count;
+        length -= count;
+        position += count;
+        if (headerLength == 8 && readInt(0) == 1) {
+          continue;
+        }
+        if (headerLength == needed) {
+          onAtomHeader();
+        }
+      }
+    }
+
+    private void onAtomHeader() {
+      long size = readInt(0) & 0xFFFFFFFFL;
+      if (size == 1) {
+        size = ((long) readInt(8) << 32) | (readInt(12) & 0xFFFFFFFFL);
+      }
+      String type = new String(header, 4, 4, ASCII);
+      if (atomOffset == 0 && !"ftyp".equals(type)) {
+        // Not an MP4 file.
+        finished = true;
+      } else if ("moov".equals(type) || size < headerLength) {
+        finished = true;
+      } else if ("mdat".equals(type)) {
+        finished = true;
+        moovAtEnd = true;
+        mdatOffset = atomOffset;
+        mdatSize = size;
+      } else {
+        atomOffset += size;
+        headerLength = 0;
+        finished = atomOffset > SNIFF_LIMIT;
+      }
+    }
+
+    private int readInt(int index) {
+      return (header[index] & 0xFF) << 24 | (header[index + 1] & 0xFF) << 16
+        | (header[index + 2] & 0xFF) << 8 | (header[index + 3] & 0xFF);
+    }
+  }
+}
@@ -0,0 +1,32 @@
+package com.greatdroid.reactnative.media;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Loads fixture files bundled under src/test/resources/fixtures.
+ */
+public final class Fixtures {
+
+  private Fixtures() {
+  }
+
+  public static byte[] load(String name) throws IOException {
+    InputStream in = Fixtures.class.getResourceAsStream("/fixtures/" + name);
+    if (in == null) {
+      throw new IOException("Missing fixture: " + name);
+    }
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[4096];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+      }
+      return out.toByteArray();
+    } finally {
+      in.close();
+    }
+  }
+}
@@ -0,0 +1,58 @@
+package com.greatdroid.reactnative.media.player;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Controller acquire/release churn, as seen when views in a list hand the shared controller over
+ * to each other.
+ * <p>
+ * {@link MediaPlayerController#release()} blocks until ExoPlayer's playback thread acknowledges
+ * the release, which never happens against the framework stubs, so only construction and the
+ * listener hand-over done on every ownership change are measured here.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ControllerChurnBenchmark {
+
+  @Param({"0", "8"})
+  public int otherListenerCount;
+
+  private MediaPlayerController controller;
+  private final MediaPlayerController.EventListener owner = new MediaPlayerController.BaseEventListener();
+
+  @Setup
+  public void setUp() {
+    controller = new MediaPlayerController(null);
+    for (int i = 0; i < otherListenerCount; i++) {
+      controller.addEventListener(new MediaPlayerController.BaseEventListener());
+    }
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public MediaPlayerController create() {
+    return new MediaPlayerController(null);
+  }
+
+  @Benchmark
+  public void ownershipHandOver() {
+    controller.addEventListener(owner);
+    controller.removeEventListener(owner);
+  }
+}
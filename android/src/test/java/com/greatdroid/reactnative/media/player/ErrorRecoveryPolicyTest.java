@@ -0,0 +1,131 @@
+package com.greatdroid.reactnative.media.player;
+
+import com.google.android.exoplayer.BehindLiveWindowException;
+import com.google.android.exoplayer.ParserException;
+import com.google.android.exoplayer.upstream.HttpDataSource;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks how {@link ErrorRecoveryPolicy} classifies errors and how long it waits between attempts.
+ */
+public class ErrorRecoveryPolicyTest {
+
+  private ErrorRecoveryPolicy policy;
+
+  @Before
+  public void setUp() {
+    policy = new ErrorRecoveryPolicy();
+  }
+
+  private static HttpDataSource.InvalidResponseCodeException response(int responseCode) {
+    return new HttpDataSource.InvalidResponseCodeException(responseCode,
+      Collections.<String, List<String>>emptyMap(), null);
+  }
+
+  @Test
+  public void classifiesByTheFirstKnownCause() {
+    assertEquals(ErrorRecoveryPolicy.CATEGORY_NETWORK, ErrorRecoveryPolicy.classify(new IOException()));
+    assertEquals(ErrorRecoveryPolicy.CATEGORY_NETWORK, ErrorRecoveryPolicy.classify(new RuntimeException(new IOException())));
+    assertEquals(ErrorRecoveryPolicy.CATEGORY_FATAL, ErrorRecoveryPolicy.classify(new ParserException()));
+    assertEquals(ErrorRecoveryPolicy.CATEGORY_BEHIND_LIVE_WINDOW,
+      ErrorRecoveryPolicy.classify(new RuntimeException(new BehindLiveWindowException())));
+    assertEquals(ErrorRecoveryPolicy.CATEGORY_DECODER, ErrorRecoveryPolicy.classify(new IllegalStateException()));
+    assertEquals(ErrorRecoveryPolicy.CATEGORY_FATAL, ErrorRecoveryPolicy.classify(new RuntimeException()));
+  }
+
+  @Test
+  public void clientErrorsAreFatal() {
+    assertEquals(ErrorRecoveryPolicy.CATEGORY_FATAL, ErrorRecoveryPolicy.classify(response(400)));
+    assertEquals(ErrorRecoveryPolicy.CATEGORY_FATAL, ErrorRecoveryPolicy.classify(response(403)));
+    assertEquals(ErrorRecoveryPolicy.CATEGORY_FATAL, ErrorRecoveryPolicy.classify(new IOException(response(404))));
+    assertEquals(ErrorRecoveryPolicy.CATEGORY_FATAL, ErrorRecoveryPolicy.classify(response(410)));
+  }
+
+  @Test
+  public void timeoutsRateLimitsAndServerErrorsAreRetried() {
+    assertEquals(ErrorRecoveryPolicy.CATEGORY_NETWORK, ErrorRecoveryPolicy.classify(response(408)));
+    assertEquals(ErrorRecoveryPolicy.CATEGORY_NETWORK, ErrorRecoveryPolicy.classify(response(429)));
+    assertEquals(ErrorRecoveryPolicy.CATEGORY_NETWORK, ErrorRecoveryPolicy.classify(response(500)));
+    assertEquals(ErrorRecoveryPolicy.CATEGORY_NETWORK, ErrorRecoveryPolicy.classify(response(503)));
+  }
+
+  @Test
+  public void networkBacksOffExponentiallyUpToTheCap() {
+    long[] expected = {1000, 2000, 4000, 8000, 16000, 30000, ErrorRecoveryPolicy.NO_RETRY};
+    for (int i = 0; i < expected.length; i++) {
+      assertEquals("attempt " + (i + 1), expected[i], policy.onError(ErrorRecoveryPolicy.CATEGORY_NETWORK, 0));
+    }
+  }
+
+  @Test
+  public void eachCategoryHasItsOwnTable() {
+    assertTable(ErrorRecoveryPolicy.CATEGORY_BEHIND_LIVE_WINDOW, 0, 0, 0, ErrorRecoveryPolicy.NO_RETRY);
+    assertTable(ErrorRecoveryPolicy.CATEGORY_DECODER, 500, 500, 500, ErrorRecoveryPolicy.NO_RETRY);
+    assertTable(ErrorRecoveryPolicy.CATEGORY_DRM, 2000, 4000, ErrorRecoveryPolicy.NO_RETRY);
+    assertTable(ErrorRecoveryPolicy.CATEGORY_AUDIO_OUTPUT, 500, 500, ErrorRecoveryPolicy.NO_RETRY);
+    assertTable(ErrorRecoveryPolicy.CATEGORY_FATAL, ErrorRecoveryPolicy.NO_RETRY);
+  }
+
+  private void assertTable(int category, long... delaysMs) {
+    policy.reset();
+    for (int i = 0; i < delaysMs.length; i++) {
+      assertEquals(ErrorRecoveryPolicy.describe(category) + " attempt " + (i + 1), delaysMs[i], policy.onError(category, 0));
+    }
+  }
+
+  @Test
+  public void decoderRetriesLowerResolutionAfterTheFirst() {
+    policy.onError(ErrorRecoveryPolicy.CATEGORY_DECODER, 0);
+    assertFalse(policy.shouldLowerResolution());
+    policy.onError(ErrorRecoveryPolicy.CATEGORY_DECODER, 0);
+    assertTrue(policy.shouldLowerResolution());
+  }
+
+  @Test
+  public void anotherCategoryStartsCountingAgain() {
+    policy.onError(ErrorRecoveryPolicy.CATEGORY_NETWORK, 0);
+    policy.onError(ErrorRecoveryPolicy.CATEGORY_NETWORK, 0);
+    assertEquals(500, policy.onError(ErrorRecoveryPolicy.CATEGORY_DECODER, 0));
+    assertEquals(1, policy.getAttempt());
+  }
+
+  @Test
+  public void attemptsAreForgottenAfterStablePlayback() {
+    policy.onError(ErrorRecoveryPolicy.CATEGORY_NETWORK, 60000);
+    policy.onError(ErrorRecoveryPolicy.CATEGORY_NETWORK, 60000);
+    policy.onPlaybackProgress(69999);
+    assertEquals(2, policy.getAttempt());
+
+    policy.onPlaybackProgress(70000);
+    assertEquals(0, policy.getAttempt());
+    assertEquals(1000, policy.onError(ErrorRecoveryPolicy.CATEGORY_NETWORK, 70000));
+  }
+
+  @Test
+  public void liveEdgeRecoveriesCountFromWherePlaybackResumed() {
+    policy.onError(ErrorRecoveryPolicy.CATEGORY_BEHIND_LIVE_WINDOW, ErrorRecoveryPolicy.UNKNOWN_POSITION);
+    policy.onError(ErrorRecoveryPolicy.CATEGORY_BEHIND_LIVE_WINDOW, ErrorRecoveryPolicy.UNKNOWN_POSITION);
+    // Hours into the stream, but only just resumed.
+    policy.onPlaybackProgress(3600000);
+    policy.onPlaybackProgress(3609999);
+    assertEquals(2, policy.getAttempt());
+    policy.onError(ErrorRecoveryPolicy.CATEGORY_BEHIND_LIVE_WINDOW, ErrorRecoveryPolicy.UNKNOWN_POSITION);
+    assertEquals(ErrorRecoveryPolicy.NO_RETRY, policy.onError(ErrorRecoveryPolicy.CATEGORY_BEHIND_LIVE_WINDOW, ErrorRecoveryPolicy.UNKNOWN_POSITION));
+
+    policy.reset();
+    policy.onError(ErrorRecoveryPolicy.CATEGORY_BEHIND_LIVE_WINDOW, ErrorRecoveryPolicy.UNKNOWN_POSITION);
+    policy.onPlaybackProgress(3600000);
+    policy.onPlaybackProgress(3610000);
+    assertEquals(0, policy.getAttempt());
+  }
+}
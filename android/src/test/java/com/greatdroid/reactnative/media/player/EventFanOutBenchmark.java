@@ -0,0 +1,85 @@
+package com.greatdroid.reactnative.media.player;
+
+import com.google.android.exoplayer.ExoPlayer;
+import com.google.android.exoplayer.text.Cue;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of fanning a player event out to the registered {@link MediaPlayerController.EventListener}s.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class EventFanOutBenchmark {
+
+  @Param({"1", "4", "16"})
+  public int listenerCount;
+
+  private MediaPlayerController controller;
+  private MediaPlayerController.InternalEventListener events;
+  private List<Cue> cues;
+  private List<Cue> otherCues;
+  private boolean flip;
+
+  @Setup
+  public void setUp(final Blackhole blackhole) {
+    controller = new MediaPlayerController(null);
+    events = controller.getInternalEventListener();
+    cues = Collections.singletonList(new Cue("benchmark"));
+    // Identical lists are filtered out before fan-out, so alternate between two.
+    otherCues = Collections.singletonList(new Cue("benchmark2"));
+    for (int i = 0; i < listenerCount; i++) {
+      controller.addEventListener(new MediaPlayerController.BaseEventListener() {
+        @Override
+        public void onPlayerStateChanged(boolean playWhenReady, int playbackState) {
+          blackhole.consume(playbackState);
+        }
+
+        @Override
+        public void onCues(List<Cue> cues) {
+          blackhole.consume(cues);
+        }
+
+        @Override
+        public void onVideoSizeChanged(int width, int height, int unappliedRotationDegrees, float pixelWidthHeightRatio) {
+          blackhole.consume(width);
+        }
+      });
+    }
+  }
+
+  @Benchmark
+  public void playerStateChanged() {
+    events.onPlayerStateChanged(true, ExoPlayer.STATE_READY);
+  }
+
+  @Benchmark
+  public void cues() {
+    flip = !flip;
+    events.onCues(flip ? cues : otherCues);
+  }
+
+  @Benchmark
+  public void videoSizeChanged() {
+    events.onVideoSizeChanged(1280, 720, 0, 1f);
+  }
+}
@@ -0,0 +1,140 @@
+package com.greatdroid.reactnative.media.player;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drives {@link QualityGovernor} with fake thermal and battery sources and an explicit clock.
+ */
+public class QualityGovernorTest {
+  private static final long START_MS = 1000000;
+
+  private int thermalStatus = QualityGovernor.THERMAL_NONE;
+  private int batteryPercent = 80;
+  private boolean charging = false;
+  private int statusReads = 0;
+  private final List<String> changes = new ArrayList<>();
+  private QualityGovernor governor;
+
+  @Before
+  public void setUp() {
+    governor = new QualityGovernor(new QualityGovernor.DeviceStatusSource() {
+      @Override
+      public QualityGovernor.DeviceStatus getDeviceStatus() {
+        statusReads++;
+        return new QualityGovernor.DeviceStatus(thermalStatus, batteryPercent, charging);
+      }
+    }, new QualityGovernor.Listener() {
+      @Override
+      public void onLevelChanged(int level, String reason) {
+        changes.add(QualityGovernor.describe(level) + ":" + reason);
+      }
+    });
+  }
+
+  @Test
+  public void steadyConditionsKeepFullQuality() {
+    for (long t = START_MS; t < START_MS + 120000; t += 500) {
+      governor.onPlaybackProgress(t);
+    }
+    assertEquals(QualityGovernor.LEVEL_FULL, governor.getLevel());
+    assertTrue(changes.isEmpty());
+  }
+
+  @Test
+  public void heatLowersAtOnceAndRecoversOneStepPerQuietPeriod() {
+    thermalStatus = QualityGovernor.THERMAL_SEVERE;
+    governor.evaluate(START_MS);
+    assertEquals(QualityGovernor.LEVEL_LOW, governor.getLevel());
+
+    thermalStatus = QualityGovernor.THERMAL_NONE;
+    governor.evaluate(START_MS + 30000);
+    assertEquals(QualityGovernor.LEVEL_LOW, governor.getLevel());
+    governor.evaluate(START_MS + 60000);
+    assertEquals(QualityGovernor.LEVEL_REDUCED, governor.getLevel());
+    governor.evaluate(START_MS + 90000);
+    assertEquals(QualityGovernor.LEVEL_REDUCED, governor.getLevel());
+    governor.evaluate(START_MS + 120000);
+    assertEquals(QualityGovernor.LEVEL_FULL, governor.getLevel());
+
+    assertEquals("low:thermal", changes.get(0));
+    assertEquals("reduced:recovered", changes.get(1));
+    assertEquals("full:recovered", changes.get(2));
+  }
+
+  @Test
+  public void lowBatteryOnlyCountsWhenNotCharging() {
+    batteryPercent = 10;
+    charging = true;
+    governor.evaluate(START_MS);
+    assertEquals(QualityGovernor.LEVEL_FULL, governor.getLevel());
+
+    charging = false;
+    governor.evaluate(START_MS + 5000);
+    assertEquals(QualityGovernor.LEVEL_REDUCED, governor.getLevel());
+    assertEquals("reduced:battery", changes.get(0));
+  }
+
+  @Test
+  public void droppedFrameBurstsStepDownWithSpacing() {
+    // 50 frames in 5s is 10 per second.
+    governor.onDroppedFrames(50, 5000, START_MS);
+    assertEquals(QualityGovernor.LEVEL_REDUCED, governor.getLevel());
+    governor.onDroppedFrames(50, 5000, START_MS + 5000);
+    assertEquals(QualityGovernor.LEVEL_REDUCED, governor.getLevel());
+    governor.onDroppedFrames(50, 5000, START_MS + 15000);
+    assertEquals(QualityGovernor.LEVEL_LOW, governor.getLevel());
+
+    // A trickle of drops is not throttling.
+    governor.onDroppedFrames(50, 60000, START_MS + 30000);
+    assertEquals(QualityGovernor.LEVEL_LOW, governor.getLevel());
+    assertEquals("droppedFrames", changes.get(0).split(":")[1]);
+  }
+
+  @Test
+  public void droppedFramesLevelNeverGoesPastMinimum() {
+    thermalStatus = QualityGovernor.THERMAL_CRITICAL;
+    governor.evaluate(START_MS);
+    governor.onDroppedFrames(50, 1000, START_MS + 20000);
+    assertEquals(QualityGovernor.LEVEL_MINIMUM, governor.getLevel());
+  }
+
+  @Test
+  public void disablingRestoresFullQuality() {
+    thermalStatus = QualityGovernor.THERMAL_CRITICAL;
+    governor.evaluate(START_MS);
+    governor.setEnabled(false);
+    assertEquals(QualityGovernor.LEVEL_FULL, governor.getLevel());
+    governor.evaluate(START_MS + 5000);
+    assertEquals(QualityGovernor.LEVEL_FULL, governor.getLevel());
+    assertEquals("full:disabled", changes.get(changes.size() - 1));
+  }
+
+  @Test
+  public void readsTheDeviceStatusOncePerEvaluation() {
+    for (long t = START_MS; t < START_MS + 20000; t += 500) {
+      governor.onPlaybackProgress(t);
+    }
+    assertEquals(4, statusReads);
+  }
+
+  @Test
+  public void withoutAContextOnlyDroppedFramesCount() {
+    QualityGovernor governor = QualityGovernor.create(null, new QualityGovernor.Listener() {
+      @Override
+      public void onLevelChanged(int level, String reason) {
+        changes.add(QualityGovernor.describe(level) + ":" + reason);
+      }
+    });
+    governor.evaluate(START_MS);
+    assertEquals(QualityGovernor.LEVEL_FULL, governor.getLevel());
+    governor.onDroppedFrames(50, 5000, START_MS);
+    assertEquals("reduced:droppedFrames", changes.get(0));
+  }
+}
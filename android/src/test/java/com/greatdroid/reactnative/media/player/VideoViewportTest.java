@@ -0,0 +1,117 @@
+package com.greatdroid.reactnative.media.player;
+
+import com.google.android.exoplayer.chunk.Format;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Checks which formats {@link VideoViewport#filter(Format[])} lets adaptive selection choose from.
+ */
+public class VideoViewportTest {
+
+  private static final Format SD = format("360p", 640, 360, 30, 800000);
+  private static final Format HD = format("720p", 1280, 720, 30, 2500000);
+  private static final Format FULL_HD = format("1080p", 1920, 1080, 60, 5000000);
+  private static final Format UHD = format("2160p", 3840, 2160, 60, 15000000);
+  private static final Format UNKNOWN = format("unknown", -1, -1, -1, 1500000);
+
+  private static final Format[] LADDER = {UHD, FULL_HD, HD, SD};
+
+  private VideoViewport viewport;
+
+  @Before
+  public void setUp() {
+    viewport = new VideoViewport();
+  }
+
+  private static Format format(String id, int width, int height, float frameRate, int bitrate) {
+    return new Format(id, "video/mp4", width, height, frameRate, -1, -1, bitrate);
+  }
+
+  @Test
+  public void unsizedViewKeepsEveryFormat() {
+    assertSame(LADDER, viewport.filter(LADDER));
+  }
+
+  @Test
+  public void keepsFormatsUpToTheSmallestCoveringTheView() {
+    viewport.setSize(1000, 560);
+
+    assertArrayEquals(new Format[] {HD, SD}, viewport.filter(LADDER));
+  }
+
+  @Test
+  public void coveringOneDimensionIsEnough() {
+    // A portrait view is covered by the width of a landscape format.
+    viewport.setSize(1280, 2000);
+
+    assertArrayEquals(new Format[] {HD, SD}, viewport.filter(LADDER));
+  }
+
+  @Test
+  public void scaleOverProvisionsTheView() {
+    viewport.setSize(1000, 560);
+    viewport.setScale(1.5f);
+
+    assertArrayEquals(new Format[] {FULL_HD, HD, SD}, viewport.filter(LADDER));
+  }
+
+  @Test
+  public void zeroScaleDisablesTheViewCap() {
+    viewport.setSize(100, 100);
+    viewport.setScale(0);
+
+    assertSame(LADDER, viewport.filter(LADDER));
+  }
+
+  @Test
+  public void noFormatCoveringTheViewKeepsEveryFormat() {
+    viewport.setSize(5000, 3000);
+
+    assertSame(LADDER, viewport.filter(LADDER));
+  }
+
+  @Test
+  public void pixelCapAppliesRegardlessOfTheView() {
+    viewport.setSize(5000, 3000);
+    viewport.setMaxPixels(1280L * 720);
+
+    assertArrayEquals(new Format[] {HD, SD}, viewport.filter(LADDER));
+  }
+
+  @Test
+  public void qualityCapLimitsPixelsAndFrameRate() {
+    viewport.setQualityCap(1920L * 1080, 30);
+
+    assertArrayEquals(new Format[] {HD, SD}, viewport.filter(LADDER));
+  }
+
+  @Test
+  public void smallestFormatIsKeptWhenNoneIsWithinTheCaps() {
+    viewport.setMaxPixels(320L * 180);
+
+    assertArrayEquals(new Format[] {SD}, viewport.filter(LADDER));
+  }
+
+  @Test
+  public void formatsOfUnknownSizePassTheChecks() {
+    Format[] formats = {UHD, UNKNOWN, SD};
+    viewport.setSize(640, 360);
+    viewport.setQualityCap(Long.MAX_VALUE, 30);
+
+    assertArrayEquals(new Format[] {UNKNOWN, SD}, viewport.filter(formats));
+  }
+
+  @Test
+  public void onlyUnknownSizesAreKept() {
+    Format[] formats = {UNKNOWN};
+    viewport.setSize(640, 360);
+    viewport.setMaxPixels(1);
+
+    assertSame(formats, viewport.filter(formats));
+  }
+}
@@ -0,0 +1,134 @@
+package com.greatdroid.reactnative.media.player.metadata;
+
+import com.google.android.exoplayer.metadata.id3.Id3Frame;
+import com.google.android.exoplayer.metadata.id3.PrivFrame;
+import com.google.android.exoplayer.metadata.id3.TxxxFrame;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drives {@link MetadataEventFilter} with a fake scheduler and an explicit clock.
+ */
+public class MetadataEventFilterTest {
+
+  private long nowMs;
+  private Runnable scheduled;
+  private long scheduledAtMs;
+  private final List<List<Id3Frame>> deliveries = new ArrayList<>();
+  private MetadataEventFilter filter;
+
+  @Before
+  public void setUp() {
+    filter = new MetadataEventFilter(new MetadataEventFilter.Scheduler() {
+      @Override
+      public void postDelayed(Runnable runnable, long delayMs) {
+        scheduled = runnable;
+        scheduledAtMs = nowMs + delayMs;
+      }
+
+      @Override
+      public void removeCallbacks(Runnable runnable) {
+        if (scheduled == runnable) {
+          scheduled = null;
+        }
+      }
+    }, new MetadataEventFilter.Output() {
+      @Override
+      public void onMetadata(List<Id3Frame> frames) {
+        deliveries.add(frames);
+      }
+    });
+  }
+
+  private void advanceTo(long timeMs) {
+    nowMs = timeMs;
+    if (scheduled != null && scheduledAtMs <= nowMs) {
+      Runnable runnable = scheduled;
+      scheduled = null;
+      runnable.run();
+    }
+  }
+
+  @Test
+  public void deliversEachBatchAtOnceWithoutWindow() {
+    filter.onMetadata(Collections.<Id3Frame>singletonList(new TxxxFrame("ad", "start")));
+    filter.onMetadata(Collections.<Id3Frame>singletonList(new TxxxFrame("ad", "end")));
+
+    assertEquals(2, deliveries.size());
+    assertEquals("end", ((TxxxFrame) deliveries.get(1).get(0)).value);
+  }
+
+  @Test
+  public void dropsFramesAlreadyDelivered() {
+    filter.onMetadata(Arrays.<Id3Frame>asList(new TxxxFrame("ad", "start"), new TxxxFrame("ad", "start")));
+    filter.onMetadata(Collections.<Id3Frame>singletonList(new TxxxFrame("ad", "start")));
+    filter.onMetadata(Collections.<Id3Frame>singletonList(new PrivFrame("owner", new byte[] {1, 2})));
+    filter.onMetadata(Collections.<Id3Frame>singletonList(new PrivFrame("owner", new byte[] {1, 2})));
+
+    assertEquals(2, deliveries.size());
+    assertEquals(1, deliveries.get(0).size());
+  }
+
+  @Test
+  public void resetForgetsDeliveredFrames() {
+    filter.onMetadata(Collections.<Id3Frame>singletonList(new TxxxFrame("ad", "start")));
+    filter.reset();
+    filter.onMetadata(Collections.<Id3Frame>singletonList(new TxxxFrame("ad", "start")));
+
+    assertEquals(2, deliveries.size());
+  }
+
+  @Test
+  public void coalescesFramesWithinTheWindow() {
+    filter.setOptions(500, null);
+    advanceTo(1000);
+    filter.onMetadata(Collections.<Id3Frame>singletonList(new TxxxFrame("ad", "1")));
+    advanceTo(1200);
+    filter.onMetadata(Collections.<Id3Frame>singletonList(new TxxxFrame("ad", "2")));
+    advanceTo(1499);
+    assertTrue(deliveries.isEmpty());
+
+    advanceTo(1500);
+    assertEquals(1, deliveries.size());
+    assertEquals(2, deliveries.get(0).size());
+
+    // The next window starts with the next frame, not on a fixed grid.
+    advanceTo(1700);
+    filter.onMetadata(Collections.<Id3Frame>singletonList(new TxxxFrame("ad", "3")));
+    advanceTo(2100);
+    assertEquals(1, deliveries.size());
+    advanceTo(2200);
+    assertEquals(2, deliveries.size());
+  }
+
+  @Test
+  public void resetDropsPendingFrames() {
+    filter.setOptions(500, null);
+    filter.onMetadata(Collections.<Id3Frame>singletonList(new TxxxFrame("ad", "1")));
+    filter.reset();
+    advanceTo(1000);
+
+    assertTrue(deliveries.isEmpty());
+  }
+
+  @Test
+  public void deliversOnlyTheWantedFrameIds() {
+    filter.setOptions(0, new HashSet<>(Collections.singletonList("PRIV")));
+    filter.onMetadata(Arrays.<Id3Frame>asList(new TxxxFrame("ad", "1"), new PrivFrame("owner", new byte[] {1})));
+    filter.onMetadata(Collections.<Id3Frame>singletonList(new TxxxFrame("ad", "2")));
+
+    assertEquals(1, deliveries.size());
+    assertEquals(1, deliveries.get(0).size());
+    assertEquals("PRIV", deliveries.get(0).get(0).id);
+  }
+}
@@ -0,0 +1,84 @@
+package com.greatdroid.reactnative.media.player.text;
+
+import com.google.android.exoplayer.text.Cue;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Feeds {@link CueDiffer} successive cue lists as a text renderer would.
+ */
+public class CueDifferTest {
+
+  private final CueDiffer differ = new CueDiffer();
+
+  @Test
+  public void firstListIsAllAdded() {
+    CueChange change = differ.update(Arrays.asList(new Cue("a"), new Cue("b")));
+
+    assertEquals(2, change.added.size());
+    assertEquals(2, change.addedIds.length);
+    assertNotEquals(change.addedIds[0], change.addedIds[1]);
+    assertEquals(0, change.removedIds.length);
+  }
+
+  @Test
+  public void sameContentInNewInstancesIsNoChange() {
+    differ.update(Collections.singletonList(new Cue("a")));
+
+    assertNull(differ.update(Collections.singletonList(new Cue("a"))));
+    assertEquals(1, differ.update(Collections.<Cue>emptyList()).removedIds.length);
+    assertNull(differ.update(Collections.<Cue>emptyList()));
+  }
+
+  @Test
+  public void reportsAddedAndRemovedCuesByStableId() {
+    CueChange first = differ.update(Arrays.asList(new Cue("a"), new Cue("b")));
+    int idA = "a".equals(first.added.get(0).text.toString()) ? first.addedIds[0] : first.addedIds[1];
+    int idB = idA == first.addedIds[0] ? first.addedIds[1] : first.addedIds[0];
+
+    CueChange second = differ.update(Arrays.asList(new Cue("b"), new Cue("c")));
+    assertEquals(1, second.added.size());
+    assertEquals("c", second.added.get(0).text.toString());
+    assertArrayEquals(new int[] {idA}, second.removedIds);
+
+    CueChange third = differ.update(Collections.<Cue>emptyList());
+    assertEquals(0, third.added.size());
+    assertEquals(2, third.removedIds.length);
+    assertTrue(contains(third.removedIds, idB));
+    assertTrue(contains(third.removedIds, second.addedIds[0]));
+  }
+
+  @Test
+  public void reappearingCueGetsANewId() {
+    int id = differ.update(Collections.singletonList(new Cue("a"))).addedIds[0];
+    differ.update(Collections.<Cue>emptyList());
+
+    assertNotEquals(id, differ.update(Collections.singletonList(new Cue("a"))).addedIds[0]);
+  }
+
+  @Test
+  public void duplicateCuesInAListCountOnce() {
+    CueChange change = differ.update(Arrays.asList(new Cue("a"), new Cue("a")));
+
+    assertEquals(1, change.added.size());
+    assertNull(differ.update(Collections.singletonList(new Cue("a"))));
+  }
+
+  private static boolean contains(int[] ids, int id) {
+    for (int value : ids) {
+      if (value == id) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
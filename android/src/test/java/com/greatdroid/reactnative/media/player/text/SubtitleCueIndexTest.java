@@ -0,0 +1,95 @@
+package com.greatdroid.reactnative.media.player.text;
+
+import com.google.android.exoplayer.text.Cue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Builds {@link SubtitleCueIndex}es from cue spans and looks positions up in them.
+ */
+public class SubtitleCueIndexTest {
+
+  private final Cue first = new Cue("first");
+  private final Cue second = new Cue("second");
+  private final Cue third = new Cue("third");
+
+  @Test
+  public void findsTheCuesOfEachInterval() {
+    SubtitleCueIndex index = SubtitleCueIndex.build(Arrays.asList(
+      new SubtitleCueIndex.TimedCue(first, 1000, 3000),
+      new SubtitleCueIndex.TimedCue(second, 2000, 4000)));
+
+    assertEquals(-1, index.indexOf(500));
+    assertTrue(index.getCues(index.indexOf(500)).isEmpty());
+    assertEquals(Collections.singletonList(first), index.getCues(index.indexOf(1000)));
+    assertEquals(Arrays.asList(first, second), index.getCues(index.indexOf(2500)));
+    assertEquals(Collections.singletonList(second), index.getCues(index.indexOf(3000)));
+    assertTrue(index.getCues(index.indexOf(4000)).isEmpty());
+    assertTrue(index.getCues(index.indexOf(Long.MAX_VALUE - 1)).isEmpty());
+  }
+
+  @Test
+  public void nextEventTimeIsTheNextBoundary() {
+    SubtitleCueIndex index = SubtitleCueIndex.build(Arrays.asList(
+      new SubtitleCueIndex.TimedCue(first, 1000, 3000),
+      new SubtitleCueIndex.TimedCue(second, 2000, 4000)));
+
+    assertEquals(1000, index.getNextEventTimeUs(index.indexOf(0)));
+    assertEquals(2000, index.getNextEventTimeUs(index.indexOf(1500)));
+    assertEquals(3000, index.getNextEventTimeUs(index.indexOf(2000)));
+    assertEquals(Long.MAX_VALUE, index.getNextEventTimeUs(index.indexOf(5000)));
+  }
+
+  @Test
+  public void unsortedSpansAreListedInStartOrder() {
+    SubtitleCueIndex index = SubtitleCueIndex.build(Arrays.asList(
+      new SubtitleCueIndex.TimedCue(third, 3000, 6000),
+      new SubtitleCueIndex.TimedCue(first, 1000, 5000),
+      new SubtitleCueIndex.TimedCue(second, 2000, 4000)));
+
+    assertEquals(Arrays.asList(first, second, third), index.getCues(index.indexOf(3500)));
+    assertEquals(Arrays.asList(first, third), index.getCues(index.indexOf(4500)));
+    assertEquals(Collections.singletonList(third), index.getCues(index.indexOf(5500)));
+  }
+
+  @Test
+  public void emptySpansAreDropped() {
+    SubtitleCueIndex index = SubtitleCueIndex.build(Arrays.asList(
+      new SubtitleCueIndex.TimedCue(first, 1000, 1000),
+      new SubtitleCueIndex.TimedCue(second, 2000, 3000)));
+
+    assertTrue(index.getCues(index.indexOf(1000)).isEmpty());
+    assertEquals(Collections.singletonList(second), index.getCues(index.indexOf(2000)));
+  }
+
+  @Test
+  public void openEndedSpanLastsForever() {
+    SubtitleCueIndex index = SubtitleCueIndex.build(Collections.singletonList(
+      new SubtitleCueIndex.TimedCue(first, 1000, Long.MAX_VALUE)));
+
+    assertSame(first, index.getCues(index.indexOf(Long.MAX_VALUE - 1)).get(0));
+    assertEquals(Long.MAX_VALUE, index.getNextEventTimeUs(index.indexOf(1000)));
+  }
+
+  @Test
+  public void largeFileKeepsEveryInterval() {
+    List<SubtitleCueIndex.TimedCue> timedCues = new ArrayList<>();
+    for (int i = 0; i < 20000; i++) {
+      timedCues.add(new SubtitleCueIndex.TimedCue(new Cue("cue " + i), i * 2000L, i * 2000L + 1500));
+    }
+    Collections.reverse(timedCues);
+    SubtitleCueIndex index = SubtitleCueIndex.build(timedCues);
+
+    assertEquals("cue 12345", index.getCues(index.indexOf(12345 * 2000L + 1000)).get(0).text);
+    assertTrue(index.getCues(index.indexOf(12345 * 2000L + 1800)).isEmpty());
+  }
+}
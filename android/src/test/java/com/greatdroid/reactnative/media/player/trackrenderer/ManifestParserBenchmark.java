@@ -0,0 +1,80 @@
+package com.greatdroid.reactnative.media.player.trackrenderer;
+
+import com.google.android.exoplayer.dash.mpd.MediaPresentationDescription;
+import com.google.android.exoplayer.dash.mpd.MediaPresentationDescriptionParser;
+import com.google.android.exoplayer.hls.HlsPlaylist;
+import com.google.android.exoplayer.hls.HlsPlaylistParser;
+import com.google.android.exoplayer.smoothstreaming.SmoothStreamingManifest;
+import com.google.android.exoplayer.smoothstreaming.SmoothStreamingManifestParser;
+import com.greatdroid.reactnative.media.Fixtures;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Manifest parsing as done by the renderers builders once their {@code ManifestFetcher} has loaded
+ * the bytes. The builders hand the same parsers to ExoPlayer, so this is the CPU part of each
+ * builder's startup path without the network round trip.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class ManifestParserBenchmark {
+  private static final String BASE_URL = "http://localhost/content/";
+
+  private byte[] mpd;
+  private byte[] hlsMaster;
+  private byte[] hlsMedia;
+  private byte[] ssManifest;
+
+  private MediaPresentationDescriptionParser dashParser;
+  private HlsPlaylistParser hlsParser;
+  private SmoothStreamingManifestParser ssParser;
+
+  @Setup
+  public void setUp() throws IOException {
+    mpd = Fixtures.load("manifest.mpd");
+    hlsMaster = Fixtures.load("master.m3u8");
+    hlsMedia = Fixtures.load("media.m3u8");
+    ssManifest = Fixtures.load("Manifest");
+
+    dashParser = new MediaPresentationDescriptionParser();
+    hlsParser = new HlsPlaylistParser();
+    ssParser = new SmoothStreamingManifestParser();
+  }
+
+  @Benchmark
+  public MediaPresentationDescription parseDash() throws IOException {
+    return dashParser.parse(BASE_URL + "manifest.mpd", new ByteArrayInputStream(mpd));
+  }
+
+  @Benchmark
+  public HlsPlaylist parseHlsMaster() throws IOException {
+    return hlsParser.parse(BASE_URL + "master.m3u8", new ByteArrayInputStream(hlsMaster));
+  }
+
+  @Benchmark
+  public HlsPlaylist parseHlsMedia() throws IOException {
+    return hlsParser.parse(BASE_URL + "720p/media.m3u8", new ByteArrayInputStream(hlsMedia));
+  }
+
+  @Benchmark
+  public SmoothStreamingManifest parseSmoothStreaming() throws IOException {
+    return ssParser.parse(BASE_URL + "Manifest", new ByteArrayInputStream(ssManifest));
+  }
+}
@@ -0,0 +1,59 @@
+package com.greatdroid.reactnative.media.player.upstream;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks how {@link OriginSet} splits source uris into origins and rewrites requests between them.
+ */
+public class OriginSetTest {
+
+  private static int suffixLength(String... uris) {
+    return OriginSet.commonSuffixLength(Arrays.asList(uris));
+  }
+
+  @Test
+  public void aSingleUriHasNoSharedPath() {
+    assertEquals(0, OriginSet.commonSuffixLength(Collections.singletonList("https://a.example.com/vod/1/master.m3u8")));
+  }
+
+  @Test
+  public void sharesThePathBelowDifferentHostsAndPrefixes() {
+    assertEquals("vod/1/master.m3u8".length(),
+      suffixLength("https://a.example.com/vod/1/master.m3u8", "https://b.example.net/cdn/vod/1/master.m3u8"));
+    assertEquals("vod/1/master.m3u8".length(),
+      suffixLength("https://a.example.com/vod/1/master.m3u8", "https://b.example.net/cdn/vod/1/master.m3u8",
+        "http://c.example.org/x/y/vod/1/master.m3u8"));
+  }
+
+  @Test
+  public void cutsBackToAPathSegmentBoundary() {
+    assertEquals(0, suffixLength("https://a.example.com/a-master.m3u8", "https://b.example.com/b-master.m3u8"));
+    assertEquals("master.m3u8".length(),
+      suffixLength("https://a.example.com/vod1/master.m3u8", "https://b.example.com/xvod1/master.m3u8"));
+  }
+
+  @Test
+  public void neverReachesIntoTheHost() {
+    // Hosts sharing a domain still differ.
+    assertEquals("m.mpd".length(), suffixLength("https://cdn1.example.com/m.mpd", "https://cdn2.example.com/m.mpd"));
+    assertEquals("p/m.mpd".length(), suffixLength("https://a.example.com/p/m.mpd", "https://a.example.com/p/m.mpd"));
+    assertEquals(0, suffixLength("https://a.example.com", "https://b.example.com"));
+  }
+
+  @Test
+  public void rewritesBelowTheOrigin() {
+    OriginSet.Origin a = new OriginSet.Origin("https://a.example.com/", "a.example.com", 1);
+    OriginSet.Origin b = new OriginSet.Origin("https://b.example.net/cdn/", "b.example.net", 1);
+    assertEquals("https://b.example.net/cdn/vod/1/seg-3.ts",
+      OriginSet.rewrite("https://a.example.com/vod/1/seg-3.ts", a, b));
+    assertEquals("https://a.example.com/vod/1/seg-3.ts",
+      OriginSet.rewrite("https://b.example.net/cdn/vod/1/seg-3.ts", b, a));
+    assertEquals("https://a.example.com/vod/1/seg-3.ts",
+      OriginSet.rewrite("https://a.example.com/vod/1/seg-3.ts", a, a));
+  }
+}
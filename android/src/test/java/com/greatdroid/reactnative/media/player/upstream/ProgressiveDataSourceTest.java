@@ -0,0 +1,273 @@
+package com.greatdroid.reactnative.media.player.upstream;
+
+import android.net.Uri;
+
+import com.google.android.exoplayer.C;
+import com.google.android.exoplayer.upstream.DataSpec;
+import com.google.android.exoplayer.upstream.UriDataSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks how {@link ProgressiveDataSource.AtomSniffer} walks the top-level atoms of an MP4 file, and
+ * which ranges {@link ProgressiveDataSource} loads for sequential reads and for files with
+ * {@code moov} at the end.
+ */
+public class ProgressiveDataSourceTest {
+  private static final Uri URI = Uri.parse("http://example.com/video.mp4");
+  private static final int RANGE_BYTES = 2 * 1024 * 1024;
+
+  private final List<DataSpec> opened = new ArrayList<>();
+  private int created;
+  private ProgressiveDataSource dataSource;
+
+  @Before
+  public void setUp() {
+    opened.clear();
+    created = 0;
+  }
+
+  @After
+  public void tearDown() {
+    if (dataSource != null) {
+      dataSource.release();
+    }
+  }
+
+  private static byte[] atom(String type, int size) {
+    return concat(header(type, size), new byte[size - 8]);
+  }
+
+  private static byte[] header(String type, int size) {
+    byte[] header = new byte[8];
+    header[0] = (byte) (size >>> 24);
+    header[1] = (byte) (size >>> 16);
+    header[2] = (byte) (size >>> 8);
+    header[3] = (byte) size;
+    for (int i = 0; i < 4; i++) {
+      header[4 + i] = (byte) type.charAt(i);
+    }
+    return header;
+  }
+
+  private static byte[] concat(byte[]... parts) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (byte[] part : parts) {
+      out.write(part, 0, part.length);
+    }
+    return out.toByteArray();
+  }
+
+  private static ProgressiveDataSource.AtomSniffer sniff(byte[] data) {
+    ProgressiveDataSource.AtomSniffer sniffer = new ProgressiveDataSource.AtomSniffer();
+    sniffer.feed(data, 0, data.length, 0);
+    return sniffer;
+  }
+
+  @Test
+  public void moovBeforeMdatIsNotFlagged() {
+    ProgressiveDataSource.AtomSniffer sniffer = sniff(concat(atom("ftyp", 24), atom("moov", 100), atom("mdat", 16)));
+    assertTrue(sniffer.finished);
+    assertFalse(sniffer.moovAtEnd);
+  }
+
+  @Test
+  public void mdatBeforeMoovIsFlagged() {
+    // Only the mdat header is there; its body is not needed to tell.
+    ProgressiveDataSource.AtomSniffer sniffer = sniff(concat(atom("ftyp", 24), atom("free", 16), header("mdat", 1000000)));
+    assertTrue(sniffer.finished);
+    assertTrue(sniffer.moovAtEnd);
+    assertEquals(40, sniffer.mdatOffset);
+    assertEquals(1000000, sniffer.mdatSize);
+  }
+
+  @Test
+  public void headersSplitAcrossReadsAreReassembled() {
+    byte[] data = concat(atom("ftyp", 24), atom("free", 16), header("mdat", 1000000));
+    ProgressiveDataSource.AtomSniffer sniffer = new ProgressiveDataSource.AtomSniffer();
+    for (int i = 0; i < data.length && !sniffer.finished; i++) {
+      sniffer.feed(data, i, 1, i);
+    }
+    assertTrue(sniffer.moovAtEnd);
+    assertEquals(40, sniffer.mdatOffset);
+    assertEquals(1000000, sniffer.mdatSize);
+  }
+
+  @Test
+  public void readsLargeSizes() {
+    byte[] largeHeader = concat(header("mdat", 1), new byte[8]);
+    long size = 5000000000L;
+    for (int i = 0; i < 8; i++) {
+      largeHeader[8 + i] = (byte) (size >>> (56 - 8 * i));
+    }
+    ProgressiveDataSource.AtomSniffer sniffer = sniff(concat(atom("ftyp", 24), largeHeader));
+    assertTrue(sniffer.moovAtEnd);
+    assertEquals(24, sniffer.mdatOffset);
+    assertEquals(size, sniffer.mdatSize);
+  }
+
+  @Test
+  public void otherFilesAreLeftAlone() {
+    ProgressiveDataSource.AtomSniffer sniffer = sniff(concat(header("mdat", 1000000)));
+    assertTrue(sniffer.finished);
+    assertFalse(sniffer.moovAtEnd);
+
+    sniffer = sniff("#EXTM3U\n#EXT-X-VERSION:3\n".getBytes());
+    assertTrue(sniffer.finished);
+    assertFalse(sniffer.moovAtEnd);
+  }
+
+  @Test
+  public void stopsAfterTheFirstBytes() {
+    // An mdat starting past the sniff limit is not looked at.
+    ProgressiveDataSource.AtomSniffer sniffer = sniff(concat(atom("ftyp", 24), atom("free", 128 * 1024), header("mdat", 1000000)));
+    assertTrue(sniffer.finished);
+    assertFalse(sniffer.moovAtEnd);
+  }
+
+  @Test
+  public void sequentialReadsLoadRangesAhead() throws IOException {
+    byte[] data = concat(atom("ftyp", 24), atom("moov", 1000), random(5 * 1024 * 1024 + 123));
+    dataSource = new ProgressiveDataSource(factory(data));
+
+    assertEquals(data.length, dataSource.open(new DataSpec(URI)));
+    assertArrayEquals(data, readToEnd(dataSource));
+    dataSource.close();
+
+    List<DataSpec> ranges = opened();
+    assertTrue(ranges.size() + " connections", ranges.size() >= 3);
+    assertEquals(0, ranges.get(0).position);
+    for (DataSpec range : ranges.subList(1, ranges.size())) {
+      assertTrue("bounded range: " + range.position + "+" + range.length,
+        range.length > 0 && range.length <= RANGE_BYTES && range.position + range.length <= data.length);
+    }
+  }
+
+  @Test
+  public void moovAtEndLoadsTheTailAndTheFirstSamplesRightAway() throws IOException {
+    int mdatSize = 1024 * 1024;
+    byte[] data = concat(atom("ftyp", 24), concat(header("mdat", mdatSize), random(mdatSize - 8)), atom("moov", 1000));
+    long tailStart = 24 + mdatSize;
+    dataSource = new ProgressiveDataSource(factory(data));
+
+    // The extractor reads the first atoms, then seeks to moov, then back to the first samples.
+    dataSource.open(new DataSpec(URI));
+    byte[] head = new byte[4096];
+    readFully(dataSource, head);
+    dataSource.close();
+    assertEquals("the tail is requested while the head is read", 2, created);
+
+    dataSource.open(new DataSpec(URI, tailStart, C.LENGTH_UNBOUNDED, null));
+    assertArrayEquals(Arrays.copyOfRange(data, (int) tailStart, data.length), readToEnd(dataSource));
+    dataSource.close();
+    assertEquals(tailStart, opened().get(1).position);
+
+    dataSource.open(new DataSpec(URI, head.length, C.LENGTH_UNBOUNDED, null));
+    byte[] samples = new byte[64 * 1024];
+    readFully(dataSource, samples);
+    dataSource.close();
+    assertArrayEquals(Arrays.copyOfRange(data, head.length, head.length + samples.length), samples);
+    // Neither seek opened a connection of its own; later ones only load ahead of the samples.
+    for (DataSpec connection : opened()) {
+      assertTrue("opened at " + connection.position, connection.position == 0 || connection.length != C.LENGTH_UNBOUNDED);
+    }
+  }
+
+  private List<DataSpec> opened() {
+    synchronized (opened) {
+      return new ArrayList<>(opened);
+    }
+  }
+
+  private static byte[] random(int length) {
+    byte[] data = new byte[length];
+    new Random(length).nextBytes(data);
+    return data;
+  }
+
+  private static byte[] readToEnd(UriDataSource source) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[64 * 1024];
+    int read;
+    while ((read = source.read(buffer, 0, buffer.length)) != C.RESULT_END_OF_INPUT) {
+      out.write(buffer, 0, read);
+    }
+    return out.toByteArray();
+  }
+
+  private static void readFully(UriDataSource source, byte[] target) throws IOException {
+    int offset = 0;
+    while (offset < target.length) {
+      int read = source.read(target, offset, target.length - offset);
+      assertTrue("ended early at " + offset, read != C.RESULT_END_OF_INPUT);
+      offset += read;
+    }
+  }
+
+  private ProgressiveDataSource.Factory factory(final byte[] data) {
+    return new ProgressiveDataSource.Factory() {
+      @Override
+      public UriDataSource createDataSource() {
+        created++;
+        return new ByteArraySource(data);
+      }
+    };
+  }
+
+  /**
+   * Serves ranges of a byte array, recording every open.
+   */
+  private final class ByteArraySource implements UriDataSource {
+    private final byte[] data;
+    private int position;
+    private int end;
+
+    ByteArraySource(byte[] data) {
+      this.data = data;
+    }
+
+    @Override
+    public long open(DataSpec dataSpec) {
+      synchronized (opened) {
+        opened.add(dataSpec);
+      }
+      position = (int) dataSpec.position;
+      end = dataSpec.length == C.LENGTH_UNBOUNDED ? data.length : (int) (dataSpec.position + dataSpec.length);
+      return end - position;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int readLength) {
+      if (position >= end) {
+        return C.RESULT_END_OF_INPUT;
+      }
+      int count = Math.min(readLength, end - position);
+      System.arraycopy(data, position, buffer, offset, count);
+      position += count;
+      return count;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public String getUri() {
+      return URI.toString();
+    }
+  }
+}
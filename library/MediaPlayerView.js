@@ -4,6 +4,7 @@ import ReactNative, {
   StyleSheet,
   View,
   NativeModules,
+  Platform,
   requireNativeComponent,
   Image
 } from 'react-native';
@@ -17,10 +18,43 @@ const RCTMediaPlayerView = requireNativeComponent('RCTMediaPlayerView', {
   propTypes: {
     ...View.propTypes,
     src: PropTypes.string,
+    sources: PropTypes.arrayOf(PropTypes.oneOfType([
+      PropTypes.string,
+      PropTypes.shape({
+        uri: PropTypes.string.isRequired,
+        weight: PropTypes.number
+      })
+    ])),
+    type: PropTypes.oneOf(['hls', 'dash', 'smoothstreaming', 'progressive']),
+    container: PropTypes.string,
     autoplay: PropTypes.bool,
     preload: PropTypes.string,
     loop: PropTypes.bool,
     muted: PropTypes.bool,
+    audioOnly: PropTypes.bool,
+    resolutionScale: PropTypes.number,
+    qualityGovernor: PropTypes.bool,
+    resizeMode: PropTypes.oneOf(['contain', 'cover', 'stretch', 'none']),
+    renderTarget: PropTypes.oneOf(['textureView', 'surfaceView']),
+    startPosition: PropTypes.number,
+    resumeKey: PropTypes.string,
+    backBuffer: PropTypes.shape({
+      durationMs: PropTypes.number,
+      maxBytes: PropTypes.number
+    }),
+    drm: PropTypes.shape({
+      type: PropTypes.oneOf(['widevine', 'playready', 'clearkey']),
+      licenseServer: PropTypes.string,
+      headers: PropTypes.object
+    }),
+    subtitles: PropTypes.shape({
+      src: PropTypes.string,
+      type: PropTypes.oneOf(['vtt', 'srt', 'ttml'])
+    }),
+    metadata: PropTypes.shape({
+      coalesceMs: PropTypes.number,
+      frameIds: PropTypes.arrayOf(PropTypes.string)
+    }),
 
     onPlayerPaused: PropTypes.func,
     onPlayerPlaying: PropTypes.func,
@@ -28,7 +62,11 @@ const RCTMediaPlayerView = requireNativeComponent('RCTMediaPlayerView', {
     onPlayerBuffering: PropTypes.func,
     onPlayerBufferOK: PropTypes.func,
     onPlayerProgress: PropTypes.func,
-    onPlayerBufferChange: PropTypes.func
+    onPlayerBufferChange: PropTypes.func,
+    onPlayerCuesChange: PropTypes.func,
+    onPlayerMetadata: PropTypes.func,
+    onPlayerError: PropTypes.func,
+    onPlayerQualityChange: PropTypes.func
   }
 });
 
@@ -112,6 +150,7 @@ export default class MediaPlayerView extends React.Component {
 
         <RCTMediaPlayerView
           {...this.props}
+          src={this._getSrc()}
           style={{flex: 1, alignSelf: 'stretch'}}
           ref={RCT_MEDIA_PLAYER_VIEW_REF}
           onPlayerPlaying={this._onPlayerPlaying.bind(this)}
@@ -129,6 +168,14 @@ export default class MediaPlayerView extends React.Component {
     );
   }
 
+  _getSrc() {
+    const {src, sources} = this.props;
+    if (src || !sources || !sources.length) {
+      return src;
+    }
+    return typeof sources[0] === 'string' ? sources[0] : sources[0].uri;
+  }
+
   _onLayout(e) {
     const {width, height} = e.nativeEvent.layout;
     this.setState({width, height});
@@ -171,6 +218,24 @@ export default class MediaPlayerView extends React.Component {
     );
   }
 
+  /**
+   * The tag to address this player with in executeCommands. Android only.
+   */
+  getPlayerTag() {
+    return this._getMediaPlayerViewHandle();
+  }
+
+  /**
+   * Resolves with {state, playWhenReady, playing, current, total, buffered, bitrate, videoWidth,
+   * videoHeight, age} without waiting for the next progress event. Android only.
+   */
+  getPlaybackState() {
+    if (Platform.OS !== 'android') {
+      return Promise.reject(new Error('getPlaybackState is only supported on Android'));
+    }
+    return NativeModules.MediaKit.getPlaybackState(this._getMediaPlayerViewHandle());
+  }
+
   _getMediaPlayerViewHandle() {
     return ReactNative.findNodeHandle(this.refs[RCT_MEDIA_PLAYER_VIEW_REF]);
   }
@@ -1,8 +1,38 @@
 'use strict';
 
+import {NativeModules, Platform} from 'react-native';
+
 import MediaPlayerView from './MediaPlayerView';
 
 const Video = MediaPlayerView;
 const Audio = MediaPlayerView;
 
-export {Video, Audio};
\ No newline at end of file
+function getPosterFrame(src, options) {
+  if (Platform.OS !== 'android') {
+    return Promise.reject(new Error('getPosterFrame is only supported on Android'));
+  }
+  return NativeModules.MediaKit.getPosterFrame(src, options || {});
+}
+
+function setHlsKeyPersistence(persistent) {
+  if (Platform.OS === 'android') {
+    NativeModules.MediaKit.setHlsKeyPersistence(!!persistent);
+  }
+}
+
+/**
+ * Runs [{tag, command, position}] in order in a single hop to the player thread, where command is
+ * 'play', 'pause', 'stop', 'seekTo' or 'pauseAllExcept' and tag comes from getPlayerTag().
+ */
+function executeCommands(commands) {
+  if (Platform.OS !== 'android') {
+    return Promise.reject(new Error('executeCommands is only supported on Android'));
+  }
+  return NativeModules.MediaKit.execute(commands);
+}
+
+function pauseAllExcept(player) {
+  return executeCommands([{tag: player.getPlayerTag(), command: 'pauseAllExcept'}]);
+}
+
+export {Video, Audio, getPosterFrame, setHlsKeyPersistence, executeCommands, pauseAllExcept};
\ No newline at end of file